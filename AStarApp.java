@@ -1,6 +1,9 @@
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -12,6 +15,12 @@ import javax.swing.*;
  **/
 public class AStarApp {
 
+    /**
+     * Задержка перепланирования в «живом» режиме, в миллисекундах. Изменения,
+     * сделанные за это время, сливаются в один поиск.
+     **/
+    private static final long LIVE_REPLAN_DELAY = 150;
+
     /** Количество ячеек сетки по оси X. **/
     private int width;
     
@@ -24,76 +33,20 @@ public class AStarApp {
     /** Место, где путь должен закончиться. **/
     private Location finishLoc;
     
-    /**
-     * Это двухмерный массив компонентов пользовательского интерфейса,
-     * которые обеспечивают отображение ячеек на карте и управление ими.
-     ***/
-    private JMapCell[][] mapCells;
+    /** Карта, которую редактирует пользователь и по которой ищется путь. **/
+    private Map2D map;
 
-    /**
-     * Этот внутренний класс обрабатывает события мыши в основной сетке ячеек карты,
-     * изменяя ячейки на основе состояния кнопки мыши и начального редактирования,
-     * которое было выполнено.
-     **/
-    private class MapCellHandler implements MouseListener
-    {
-        /**
-         * Это значение будет истинным, если была нажата кнопка мыши,
-         * и в настоящее время мы находимся в процессе модификации.
-         **/
-        private boolean modifying;
-        
-        /**
-         * Это значение фиксирует, делаем ли мы клетки проходимыми или непроходимыми.
-         * Это зависит от исходного состояния ячейки, в которой была запущена операция.
-         **/
-        private boolean makePassable;
-        
-        /** Запускает операцию модификации. **/
-        public void mousePressed(MouseEvent e)
-        {
-            modifying = true;
-            
-            JMapCell cell = (JMapCell) e.getSource();
-            
-            // Если текущая ячейка проходима, то делаем их
-            // непроходимый; если непроходимо, то делаем их проходимыми.
-            
-            makePassable = !cell.isPassable();
-            
-            cell.setPassable(makePassable);
-        }
+    /** Компонент, который отображает карту и позволяет ее редактировать. **/
+    private JMapView mapView;
 
-        /** Завершает операцию модификации. **/
-        public void mouseReleased(MouseEvent e)
-        {
-            modifying = false;
-        }
-        
-        /**
-         * Если была нажата мышь, это продолжит операцию модификации в новой ячейке.
-         **/
-        public void mouseEntered(MouseEvent e)
-        {
-            if (modifying)
-            {
-                JMapCell cell = (JMapCell) e.getSource();
-                cell.setPassable(makePassable);
-            }
-        }
+    /** Выполняет поиск пути в фоновом потоке, чтобы интерфейс не замирал. **/
+    private PathPlanner planner = new PathPlanner(SwingUtilities::invokeLater);
 
-        /** Не требуется для этого обработчика **/
-        public void mouseExited(MouseEvent e)
-        {
-            // Это мы игнорируем.
-        }
-        
-        /** Не требуется для этого обработчика. **/
-        public void mouseClicked(MouseEvent e)
-        {
-            // И этот тоже.
-        }
-    }
+    /** Флажок «живого» режима: путь перестраивается при каждом изменении карты. **/
+    private JCheckBox liveBox;
+
+    /** Строка состояния поиска. **/
+    private JLabel statusLabel;
     
     
     /**
@@ -111,6 +64,10 @@ public class AStarApp {
         
         startLoc = new Location(2, h / 2);
         finishLoc = new Location(w - 3, h / 2);
+
+        map = new Map2D(width, height);
+        map.setStart(startLoc);
+        map.setFinish(finishLoc);
     }
     
     
@@ -126,53 +83,45 @@ public class AStarApp {
 
         contentPane.setLayout(new BorderLayout());
 
-        // Используйте GridBagLayout, потому что он действительно учитывает предпочтительный размер
-        // определяется компонентами, которые он выкладывает.
-        
-        GridBagLayout gbLayout = new GridBagLayout();
-        GridBagConstraints gbConstraints = new GridBagConstraints();
-        gbConstraints.fill = GridBagConstraints.BOTH;
-        gbConstraints.weightx = 1;
-        gbConstraints.weighty = 1;
-        gbConstraints.insets.set(0, 0, 1, 1);
-
-        JPanel mapPanel = new JPanel(gbLayout);
-        mapPanel.setBackground(Color.GRAY);
-        
-        mapCells = new JMapCell[width][height];
+        // Вся карта рисуется одним компонентом, поэтому большие карты
+        // открываются и перерисовываются быстро.
+        mapView = new JMapView(map);
+        contentPane.add(mapView, BorderLayout.CENTER);
         
-        MapCellHandler cellHandler = new MapCellHandler();
-        
-        for (int y = 0; y < height; y++)
-        {
-            for (int x = 0; x < width; x++)
+        JButton findPathButton = new JButton("Find Path");
+        findPathButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) { findAndShowPath(); }
+        });
+
+        liveBox = new JCheckBox("Live");
+        liveBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e)
             {
-                mapCells[x][y] = new JMapCell();
+                if (liveBox.isSelected())
+                    findAndShowPath();
+            }
+        });
 
-                gbConstraints.gridx = x;
-                gbConstraints.gridy = y;
+        statusLabel = new JLabel(" ");
 
-                gbLayout.setConstraints(mapCells[x][y], gbConstraints);
-                
-                mapPanel.add(mapCells[x][y]);
-                mapCells[x][y].addMouseListener(cellHandler);
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(findPathButton);
+        controls.add(liveBox);
+        controls.add(statusLabel);
+        contentPane.add(controls, BorderLayout.SOUTH);
+
+        // В «живом» режиме каждое изменение карты запрашивает новый путь;
+        // запросы, пришедшие во время рисования, отменяют предыдущие.
+        map.addChangeListener(new MapChangeListener() {
+            public void cellChanged(Map2D m, int x, int y, int oldValue, int newValue)
+            {
+                if (liveBox.isSelected())
+                    requestPath(LIVE_REPLAN_DELAY);
             }
-        }
-        
-        contentPane.add(mapPanel, BorderLayout.CENTER);
-        
-        JButton findPathButton = new JButton("Find Path");
-        findPathButton.addActionListener(new ActionListener() {
-            public void actionPerformed(ActionEvent e) { findAndShowPath(); }
         });
         
-        contentPane.add(findPathButton, BorderLayout.SOUTH);
-        
         frame.pack();
         frame.setVisible(true);
-
-        mapCells[startLoc.xCoord][startLoc.yCoord].setEndpoint(true);
-        mapCells[finishLoc.xCoord][finishLoc.yCoord].setEndpoint(true);
     }
 
     
@@ -186,53 +135,75 @@ public class AStarApp {
     
 
     /**
-     Этот вспомогательный метод пытается вычислить путь, используя текущее состояние карты.
-     Реализация довольно медленная; создается новый объект {@link Map2D}, который инициализируется из текущего состояния приложения.
-     Затем вызывается средство поиска пути A *, и, если путь найден, дисплей обновляется, чтобы показать найденный путь.
-     (Лучшее решение - использовать шаблон проектирования Model View Controller.)
+     * Этот вспомогательный метод запрашивает путь по текущему состоянию карты.
+     * Карта и ее отображение разделены: редактор изменяет ячейки {@link Map2D},
+     * поэтому карту не нужно собирать заново перед каждым поиском.
+     * Поиск выполняется в фоновом потоке; когда путь найден, он показывается на карте.
      **/
     private void findAndShowPath()
     {
-        // Создайте объект Map2D, содержащий текущее состояние пользовательского ввода.
+        requestPath(0);
+    }
 
-        Map2D map = new Map2D(width, height);
-        map.setStart(startLoc);
-        map.setFinish(finishLoc);
-        
-        for (int y = 0; y < height; y++)
-        {
-            for (int x = 0; x < width; x++)
-            {
-                mapCells[x][y].setPath(false);
+    /** Запрашивает путь через указанное время, отменяя предыдущий запрос. **/
+    private void requestPath(long delayMillis)
+    {
+        statusLabel.setText("Searching...");
+        planner.request(map, delayMillis, this::showPath);
+    }
 
-                if (mapCells[x][y].isPassable())
-                    map.setCellValue(x, y, 0);
-                else
-                    map.setCellValue(x, y, Integer.MAX_VALUE);
-            }
-        }
-        
-        // Попробуйте вычислить путь. Если можно вычислить, отметьте все ячейки
-        // на пути
-        
-        Waypoint wp = AStarPathfinder.computePath(map);
-        
-        while (wp != null)
-        {
-            Location loc = wp.getLocation();
-            mapCells[loc.xCoord][loc.yCoord].setPath(true);
-            
-            wp = wp.getPrevious();
-        }
+    /** Показывает найденный путь. Вызывается в потоке обработки событий Swing. **/
+    private void showPath(Waypoint path)
+    {
+        mapView.setPath(path);
+        statusLabel.setText(path != null
+                ? String.format("Path cost: %.2f", path.getPreviousCost())
+                : "No path");
     }
     
     
     /**
      * Точка входа в приложение.
-     * В настоящее время аргументы командной строки не распознаются..
+     * Необязательные аргументы командной строки - ширина и высота карты (по умолчанию 40x30).
+     * С ключом <code>--server</code> окно не открывается, а запускается {@link PathServer}:
+     * <pre>
+     *   java AStarApp --server [port] map-file...
+     * </pre>
+     * Файлы карт (см. {@link MapFile}) получают номера в порядке перечисления, начиная с 0.
      **/
-    public static void main(String[] args) {
-        AStarApp app = new AStarApp(40, 30);
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--server")) {
+            runServer(args);
+            return;
+        }
+
+        int w = args.length >= 2 ? Integer.parseInt(args[0]) : 40;
+        int h = args.length >= 2 ? Integer.parseInt(args[1]) : 30;
+        AStarApp app = new AStarApp(w, h);
         app.start();
+    }
+
+    /** Загружает карты и запускает сервер поиска путей, который работает до завершения процесса. **/
+    private static void runServer(String[] args) throws Exception {
+        int first = 1;
+        int port = PathServer.DEFAULT_PORT;
+        if (args.length > 1 && args[1].matches("\\d+")) {
+            port = Integer.parseInt(args[1]);
+            first = 2;
+        }
+
+        if (first >= args.length) {
+            System.err.println("Usage: AStarApp --server [port] map-file...");
+            System.exit(2);
+        }
+
+        List<Map2D> maps = new ArrayList<>();
+        for (int i = first; i < args.length; i++)
+            maps.add(MapFile.load(Paths.get(args[i])));
+
+        PathServer server = new PathServer(maps, port,
+                Runtime.getRuntime().availableProcessors());
+        System.out.println("Serving " + maps.size() + " map(s) on localhost:" + server.getPort());
+        server.join();
     }   
 }
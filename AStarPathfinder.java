@@ -1,5 +1,6 @@
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.CancellationException;
 
 
 /**
@@ -16,29 +17,123 @@ public class AStarPathfinder
      **/
     public static final float COST_LIMIT = 1e6f;
 
+    /**
+     * Количество раскрытий вершин между проверками прерывания потока.
+     * Должно быть степенью двойки.
+     **/
+    private static final int INTERRUPT_CHECK_INTERVAL = 256;
+
     
     /**
      * Пытается вычислить путь, который перемещается между начальным и конечным местоположениями указанной карты.
      * Если путь может быть найден, возвращается путевая точка <em> последнего </em> шага пути;
      * эту путевую точку можно использовать для обратного хода к начальной точке.
      * Если путь не может быть найден, возвращается <code> null </code>.
+     * <p>
+     * Поиск можно отменить, прервав поток, в котором он выполняется
+     * (например, методом {@link java.util.concurrent.Future#cancel Future.cancel(true)}):
+     * поиск периодически проверяет флаг прерывания и в этом случае выбрасывает
+     * {@link CancellationException}, оставляя флаг установленным.
      **/
     public static Waypoint computePath(Map2D map)
     {
+        return computePath(map, map.getStart(), map.getFinish());
+    }
+
+    /**
+     * Пытается вычислить путь между указанными местоположениями, а не между
+     * начальным и конечным местоположениями карты. Карта при этом не изменяется.
+     **/
+    public static Waypoint computePath(Map2D map, Location startLoc, Location finishLoc)
+    {
+        return computePath(map, startLoc, finishLoc, SearchMode.UNIDIRECTIONAL, null);
+    }
+
+    /**
+     * Пытается вычислить путь между начальным и конечным местоположениями карты в указанном режиме.
+     * Если <code>stats</code> не равен <code>null</code>, в него записывается статистика поиска.
+     **/
+    public static Waypoint computePath(Map2D map, SearchMode mode, SearchStats stats)
+    {
+        return computePath(map, map.getStart(), map.getFinish(), mode, stats);
+    }
+
+    /**
+     * Пытается вычислить путь между указанными местоположениями в указанном режиме.
+     * Оба режима находят путь одинаковой стоимости и возвращают цепочку путевых точек
+     * одного и того же вида; отличается только количество раскрытых вершин.
+     * Если <code>stats</code> не равен <code>null</code>, в него записывается статистика поиска.
+     **/
+    public static Waypoint computePath(Map2D map, Location startLoc, Location finishLoc,
+                                       SearchMode mode, SearchStats stats)
+    {
+        return computePath(map, startLoc, finishLoc, mode, Heuristic.EUCLIDEAN, stats);
+    }
+
+    /**
+     * Пытается вычислить путь между указанными местоположениями в указанном режиме,
+     * оценивая оставшуюся стоимость пути указанной оценкой, например {@link LandmarkHeuristic}.
+     * Если оценка допустима и согласована, стоимость найденного пути такая же,
+     * как с оценкой по прямой; отличается только количество раскрытых вершин.
+     **/
+    public static Waypoint computePath(Map2D map, Location startLoc, Location finishLoc,
+                                       SearchMode mode, Heuristic heuristic, SearchStats stats)
+    {
+        return computePath(map, startLoc, finishLoc, mode, heuristic, stats, null);
+    }
+
+    /**
+     * Пытается вычислить путь так же, как предыдущий метод, и уведомляет <code>listener</code>
+     * о каждой созданной и раскрытой путевой точке (см. {@link SearchListener}).
+     * Статистика каждого поиска, включая время и стоимость пути, также добавляется
+     * в сводную статистику {@link SearchMetrics}.
+     **/
+    public static Waypoint computePath(Map2D map, Location startLoc, Location finishLoc,
+                                       SearchMode mode, Heuristic heuristic, SearchStats stats,
+                                       SearchListener listener)
+    {
+        if (heuristic == null)
+            throw new NullPointerException("heuristic cannot be null");
+
+        SearchStats query = new SearchStats();
+        long startTime = System.nanoTime();
+        Waypoint path = search(map, startLoc, finishLoc, mode, heuristic, query, listener);
+        query.searchFinished(System.nanoTime() - startTime, path);
+
+        SearchMetrics.getInstance().record(query);
+        if (stats != null)
+            stats.add(query);
+        return path;
+    }
+
+    /** Выполняет поиск в указанном режиме, записывая статистику в <code>stats</code>. **/
+    private static Waypoint search(Map2D map, Location startLoc, Location finishLoc,
+                                   SearchMode mode, Heuristic heuristic, SearchStats stats,
+                                   SearchListener listener)
+    {
+        // Если финиш отрезан от начала, это видно по разметке связных областей.
+        if (!map.isReachable(startLoc, finishLoc))
+            return null;
+
+        if (mode == SearchMode.BIDIRECTIONAL)
+            return computeBidirectionalPath(map, startLoc, finishLoc, heuristic, stats, listener);
+
         // Переменные, необходимые для поиска A *.
-        AStarState state = new AStarState(map);
-        Location finishLoc = map.getFinish();
+        AStarState state = new AStarState(map, stats, listener);
 
         // Установите начальную путевую точку, чтобы начать поиск A *.
-        Waypoint start = new Waypoint(map.getStart(), null);
-        start.setCosts(0, estimateTravelCost(start.getLocation(), finishLoc));
+        Waypoint start = new Waypoint(startLoc, null);
+        start.setCosts(0, estimate(heuristic, startLoc, finishLoc));
         state.addOpenWaypoint(start);
 
         Waypoint finalWaypoint = null;
         boolean foundPath = false;
+        int iterations = 0;
         
         while (!foundPath && state.numOpenWaypoints() > 0)
         {
+            checkInterrupted(++iterations);
+
             // найти "лучшую" (то есть самую дешевую) путевую точку на данный момент.
             Waypoint best = state.getMinOpenWaypoint();
             
@@ -51,7 +146,7 @@ public class AStarPathfinder
             
             // Добавить / обновить всех соседей текущего лучшего местоположения.
             // Это эквивалентно выполнению всех «следующих шагов» из этого места.
-            takeNextStep(best, state);
+            takeNextStep(best, finishLoc, heuristic, state);
             
             // Наконец, переместите это место из «открытого» списка в «закрытый».
             state.closeWaypoint(best.getLocation());
@@ -60,12 +155,145 @@ public class AStarPathfinder
         return finalWaypoint;
     }
 
+    /**
+     * Двунаправленный поиск A *. Прямой поиск идет от начала к финишу, обратный -
+     * от финиша к началу по обращенным ребрам (стоимость шага по-прежнему включает
+     * стоимость ячейки, в которую делается шаг). Каждый раз, когда один поиск достигает
+     * места, уже достигнутого другим, запоминается лучший найденный путь.
+     * Поскольку оценка стоимости согласована, поиск можно остановить, как только
+     * наименьшая общая стоимость в открытом наборе любого из направлений станет не меньше
+     * стоимости лучшего пути: ни один путь через оставшиеся вершины не будет дешевле.
+     * Обратный поиск оценивает стоимость пути от начала до вершины.
+     **/
+    private static Waypoint computeBidirectionalPath(Map2D map, Location startLoc,
+                                                     Location finishLoc, Heuristic heuristic,
+                                                     SearchStats stats, SearchListener listener)
+    {
+        if (startLoc.equals(finishLoc))
+        {
+            Waypoint only = new Waypoint(startLoc, null);
+            only.setCosts(0, 0);
+            return only;
+        }
+
+        // Путевые точки обратного поиска хранят стоимость пути до финиша,
+        // а их "предыдущая" точка находится ближе к финишу.
+        AStarState forward = new AStarState(map, stats, listener);
+        AStarState backward = new AStarState(map, stats, listener);
+
+        Waypoint start = new Waypoint(startLoc, null);
+        start.setCosts(0, estimate(heuristic, startLoc, finishLoc));
+        forward.addOpenWaypoint(start);
+
+        Waypoint finish = new Waypoint(finishLoc, null);
+        finish.setCosts(0, estimate(heuristic, startLoc, finishLoc));
+        backward.addOpenWaypoint(finish);
+
+        // Лучшая найденная точка встречи: пара путевых точек обоих поисков для одного места.
+        Waypoint[] meeting = new Waypoint[2];
+        float bestCost = COST_LIMIT;
+        int iterations = 0;
+
+        while (forward.numOpenWaypoints() > 0 && backward.numOpenWaypoints() > 0)
+        {
+            // Счетчик общий для обоих направлений: количество закрытых вершин одного
+            // направления перестает меняться, пока раскрывается другое.
+            checkInterrupted(++iterations);
+
+            float forwardMin = forward.getMinOpenWaypoint().getTotalCost();
+            float backwardMin = backward.getMinOpenWaypoint().getTotalCost();
+            if (Math.max(forwardMin, backwardMin) >= bestCost)
+                break;
+
+            // Раскрываем направление с меньшим открытым набором.
+            boolean isForward = forward.numOpenWaypoints() <= backward.numOpenWaypoints();
+            AStarState state = isForward ? forward : backward;
+            AStarState other = isForward ? backward : forward;
+            Location target = isForward ? finishLoc : startLoc;
+
+            Waypoint best = state.getMinOpenWaypoint();
+            state.closeWaypoint(best.getLocation());
+
+            bestCost = takeBidirectionalStep(best, isForward, target, heuristic, state, other,
+                                             meeting, bestCost);
+        }
+
+        if (meeting[0] == null)
+            return null;
+
+        // Продолжаем прямую цепочку путевыми точками обратного поиска.
+        Waypoint wp = meeting[0];
+        for (Waypoint b = meeting[1].getPrevious(); b != null; b = b.getPrevious())
+        {
+            wp = new Waypoint(b.getLocation(), wp);
+            wp.setCosts(bestCost - b.getPreviousCost(),
+                        estimate(heuristic, b.getLocation(), finishLoc));
+        }
+
+        return wp;
+    }
+
+    /**
+     * Генерирует все «следующие шаги» из путевой точки для одного направления двунаправленного поиска
+     * и проверяет, не встретились ли поиски. Точка встречи записывается в <code>meeting</code>
+     * (прямая путевая точка, затем обратная). Возвращает стоимость лучшего найденного пути.
+     **/
+    private static float takeBidirectionalStep(Waypoint currWP, boolean isForward, Location target,
+                                               Heuristic heuristic, AStarState state, AStarState other,
+                                               Waypoint[] meeting, float bestCost)
+    {
+        Location loc = currWP.getLocation();
+        Map2D map = state.getMap();
+
+        for (int y = loc.yCoord - 1; y <= loc.yCoord + 1; y++)
+        {
+            for (int x = loc.xCoord - 1; x <= loc.xCoord + 1; x++)
+            {
+                if (!map.contains(x, y) || (x == loc.xCoord && y == loc.yCoord))
+                    continue;
+
+                Location nextLoc = new Location(x, y);
+                if (state.isLocationClosed(nextLoc))
+                    continue;
+
+                // Прямой шаг входит в nextLoc, а обратный шаг ведет из nextLoc в loc,
+                // поэтому учитывается стоимость той ячейки, в которую входит путь.
+                float prevCost = currWP.getPreviousCost() + estimateTravelCost(loc, nextLoc);
+                prevCost += map.getCellValue(isForward ? nextLoc : loc);
+
+                if (prevCost >= COST_LIMIT)
+                    continue;
+
+                Waypoint nextWP = new Waypoint(nextLoc, currWP);
+                nextWP.setCosts(prevCost, isForward ? estimate(heuristic, nextLoc, target)
+                                                    : estimate(heuristic, target, nextLoc));
+                if (!state.addOpenWaypoint(nextWP))
+                    continue;
+
+                Waypoint otherWP = other.getWaypoint(nextLoc);
+                if (otherWP == null)
+                    continue;
+
+                float total = prevCost + otherWP.getPreviousCost();
+                if (total < bestCost)
+                {
+                    bestCost = total;
+                    meeting[0] = isForward ? nextWP : otherWP;
+                    meeting[1] = isForward ? otherWP : nextWP;
+                }
+            }
+        }
+
+        return bestCost;
+    }
+
     /**
      *Этот статический вспомогательный метод принимает путевую точку и
      * генерирует все допустимые «следующие шаги» из этой путевой точки.
      * Новые путевые точки добавляются в коллекцию «открытых путевых точек» переданного объекта состояния A *.
      **/
-    private static void takeNextStep(Waypoint currWP, AStarState state)
+    private static void takeNextStep(Waypoint currWP, Location finishLoc, Heuristic heuristic,
+                                     AStarState state)
     {
         Location loc = currWP.getLocation();
         Map2D map = state.getMap();
@@ -107,7 +335,7 @@ public class AStarPathfinder
                     continue;
                 
                 nextWP.setCosts(prevCost,
-                    estimateTravelCost(nextLoc, map.getFinish()));
+                    estimate(heuristic, nextLoc, finishLoc));
 
                 // Добавьте путевую точку в набор открытых путевых точек.
                 // Если для этого местоположения уже есть путевая точка,
@@ -124,9 +352,38 @@ public class AStarPathfinder
      **/
     private static float estimateTravelCost(Location currLoc, Location destLoc)
     {
-        int dx = destLoc.xCoord - currLoc.xCoord;
-        int dy = destLoc.yCoord - currLoc.yCoord;
+        return estimateTravelCost(currLoc.xCoord, currLoc.yCoord,
+                                  destLoc.xCoord, destLoc.yCoord);
+    }
+
+    /**
+     * Время от времени проверяет, не прерван ли текущий поток, и если прерван,
+     * выбрасывает {@link CancellationException}. Поток проверяется на каждой
+     * {@link #INTERRUPT_CHECK_INTERVAL}-й итерации цикла поиска, поэтому проверка
+     * почти ничего не стоит.
+     **/
+    private static void checkInterrupted(int iteration)
+    {
+        if ((iteration & (INTERRUPT_CHECK_INTERVAL - 1)) == 0 &&
+            Thread.currentThread().isInterrupted())
+            throw new CancellationException("path search was interrupted");
+    }
+
+    /** Оценивает стоимость пути между двумя местоположениями указанной оценкой. **/
+    private static float estimate(Heuristic heuristic, Location currLoc, Location destLoc)
+    {
+        return heuristic.estimate(currLoc.xCoord, currLoc.yCoord, destLoc.xCoord, destLoc.yCoord);
+    }
+
+    /**
+     То же самое, что и {@link #estimateTravelCost(Location, Location)}, но принимает координаты напрямую,
+     чтобы другие реализации поиска не создавали объекты {@link Location}.
+     **/
+    static float estimateTravelCost(int currX, int currY, int destX, int destY)
+    {
+        int dx = destX - currX;
+        int dy = destY - currY;
         
-        return (float) Math.sqrt(dx * dx + dy * dy);
+        return (float) Math.sqrt((double) dx * dx + (double) dy * dy);
     }
 }
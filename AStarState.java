@@ -9,17 +9,42 @@ public class AStarState
     /** Это ссылка на карту, по которой перемещается алгоритм A * **/
     private Map2D map;
     private HashMap <Location, Waypoint> openWaypoints=new HashMap<>();//Нестатическое поле для открытых вершин
+    /**
+     * Открытые вершины, упорядоченные по общей стоимости. Сначала это очередь
+     * с корзинами {@link BucketWaypointQueue}; если стоимость новой вершины оказывается
+     * меньше уже извлеченного минимума (отрицательные стоимости ячеек или несогласованная
+     * оценка), вершины переносятся в двоичную кучу, которая такой порядок допускает.
+     **/
+    private OpenSet openHeap=new BucketWaypointQueue();
     private HashMap <Location, Waypoint> closedWaypoints=new HashMap<>();//Нестатическое поле для закрытых вершин
 
+    /** Статистика поиска, которую заполняет это состояние, или <code>null</code>. **/
+    private final SearchStats stats;
+
+    /** Объект, получающий уведомления о ходе поиска, или <code>null</code>. **/
+    private final SearchListener listener;
+
 
     /**
      * Инициализировать новый объект состояния для использования алгоритма поиска пути A *.
      **/
     public AStarState(Map2D map)
+    {
+        this(map, null, null);
+    }
+
+    /**
+     * Инициализировать новый объект состояния, который записывает статистику в <code>stats</code>
+     * и уведомляет <code>listener</code> о каждой созданной и закрытой путевой точке.
+     * Оба аргумента могут быть равны <code>null</code>.
+     **/
+    public AStarState(Map2D map, SearchStats stats, SearchListener listener)
     {
         if (map == null)
             throw new NullPointerException("map cannot be null");
         this.map = map;
+        this.stats = stats;
+        this.listener = listener;
     }
     /** Возвращает кол-во точек в наборе открытых вершин  **/
     public int numOpenWaypoints()
@@ -27,6 +52,12 @@ public class AStarState
         return openWaypoints.size();
     }//№1
 
+    /** Возвращает кол-во точек в наборе закрытых вершин. **/
+    public int numClosedWaypoints()
+    {
+        return closedWaypoints.size();
+    }
+
     /** Возвращает карту, по которой перемещается поисковик A *. **/
     public Map2D getMap()
     {
@@ -34,28 +65,13 @@ public class AStarState
     }
 
     /**
-     Функция, которая проверяет все вершины в наборе открытых вершин и после этого возвращает ссылку на вершину с
-     наименьшей общей стоимостью.
+     Функция, которая возвращает ссылку на вершину с наименьшей общей стоимостью из набора открытых вершин.
+     Вершины хранятся в индексированной куче, поэтому линейный просмотр не требуется.
      **/
 
     public Waypoint getMinOpenWaypoint()//№2
     {
-        if (numOpenWaypoints()==0)
-            return null;
-        else {
-            Waypoint minCostWaypoint = null;
-            float minCost = Float.MAX_VALUE;
-            for (Waypoint wp : openWaypoints.values()) /**Возвращает множество элементов коллекции **/
-            {
-                float totalCost = wp.getTotalCost();
-                if (totalCost < minCost)
-                {
-                    minCostWaypoint = wp;
-                    minCost = totalCost;
-                }
-            }
-            return minCostWaypoint;
-        }
+        return openHeap.peek();
     }
 
     /**
@@ -69,22 +85,55 @@ public class AStarState
      **/
     public boolean addOpenWaypoint(Waypoint newWP)//№3
     {
+        boolean added = putOpenWaypoint(newWP);
+        if (listener != null)
+            listener.waypointGenerated(newWP, added);
+        return added;
+    }
+
+    /** Добавляет или обновляет открытую путевую точку и учитывает это в статистике. **/
+    private boolean putOpenWaypoint(Waypoint newWP)
+    {
+        if (stats != null)
+            stats.nodeGenerated();
+
+        if (openHeap instanceof BucketWaypointQueue &&
+            !((BucketWaypointQueue) openHeap).accepts(newWP.getTotalCost()))
+        {
+            switchToHeap();
+        }
+
         Location loc = newWP.getLocation();
         if (!openWaypoints.containsKey(loc))/**Проверяет наличие ключа в коллекции**/
         {
             openWaypoints.put(loc, newWP);/**Добавляет в коллекцию пару (key, value)**/
+            openHeap.add(newWP);
+            if (stats != null)
+                stats.openSize(openHeap.size());
             return true;
         }
         else {
 
             Waypoint oldWP = openWaypoints.get(loc);/**Возвращает значение по ключу.**/
             if (newWP.getPreviousCost() < oldWP.getPreviousCost()) {//Проверяет стоимость пути
-                openWaypoints.put(loc, oldWP);
+                openWaypoints.put(loc, newWP);
+                openHeap.replace(oldWP, newWP);//Уменьшение ключа в куче
+                if (stats != null)
+                    stats.decreaseKey();
                 return true;
             }
             return false;
         }
     }
+
+    /** Переносит открытые вершины из очереди с корзинами в двоичную кучу. **/
+    private void switchToHeap()
+    {
+        openHeap.clear();
+        openHeap = new OpenWaypointHeap();
+        for (Waypoint wp : openWaypoints.values())
+            openHeap.add(wp);
+    }
     /**
      * Возвращает true, если набор закрытых путевых точек содержит путевую точку для указанного местоположения.
      **/
@@ -92,13 +141,32 @@ public class AStarState
     {
         return closedWaypoints.containsKey(loc);
     }//№4
+    /**
+     * Возвращает открытую или закрытую путевую точку для указанного местоположения
+     * или <code>null</code>, если поиск еще не достиг этого места.
+     **/
+    public Waypoint getWaypoint(Location loc)
+    {
+        Waypoint wp = openWaypoints.get(loc);
+        return wp != null ? wp : closedWaypoints.get(loc);
+    }
+
     /**
      * Этот метод перемещает путевую точку в указанном месте из открытого списка в закрытый.
      **/
     public void closeWaypoint(Location loc)//№5
     {
         Waypoint wp = openWaypoints.remove(loc);//Удаляем вершину из набора открытых вершин
+        if (wp != null)
+            openHeap.remove(wp);
         closedWaypoints.put(loc, wp);//Добавляем её в закрытый набор
+
+        if (wp == null)
+            return;
+        if (stats != null)
+            stats.nodeExpanded();
+        if (listener != null)
+            listener.waypointClosed(wp);
     }
 }
 
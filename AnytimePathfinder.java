@@ -0,0 +1,295 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+
+/**
+ * Поиск пути «в любое время» (ARA*, Anytime Repairing A *). Сначала выполняется
+ * поиск A * с завышенной в <i>w</i> раз оценкой оставшейся стоимости: он раскрывает
+ * намного меньше вершин и быстро находит путь, который дороже кратчайшего не
+ * больше чем в <i>w</i> раз. Затем вес уменьшается, и поиск продолжается с уже
+ * найденными стоимостями: заново раскрываются только вершины, стоимость пути
+ * до которых за это время уменьшилась. Так путь улучшается, пока вес не станет
+ * равен 1 (тогда путь кратчайший) или не наступит крайний срок.
+ * <p>
+ * После каждой итерации вычисляется граница неоптимальности найденного пути
+ * (она бывает меньше текущего веса), и, если указан обработчик, ему передается
+ * очередной {@link AnytimeResult}. Поиск никогда не возвращает путь хуже
+ * уже найденного. Время проверяется через каждые 256 раскрытых вершин.
+ * <p>
+ * Рабочие массивы берутся на время запроса из общего пула контекстов поиска
+ * (см. {@link PathfinderContext#borrow}), а сам объект хранит только параметры,
+ * поэтому им могут одновременно пользоваться несколько потоков.
+ **/
+public class AnytimePathfinder
+{
+    /** Начальный вес оценки по умолчанию. **/
+    public static final float DEFAULT_INITIAL_WEIGHT = 3;
+
+    /** Шаг уменьшения веса по умолчанию. **/
+    public static final float DEFAULT_WEIGHT_STEP = 0.5f;
+
+    /** Через сколько раскрытых вершин проверяется крайний срок. **/
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    /** Карта, по которой ищутся пути. **/
+    private final Map2D map;
+
+    /** Оценка оставшейся стоимости пути. **/
+    private final Heuristic heuristic;
+
+    /** Вес оценки на первой итерации. **/
+    private final float initialWeight;
+
+    /** Величина, на которую вес уменьшается после каждой итерации. **/
+    private final float weightStep;
+
+
+    /** Создает объект для указанной карты с оценкой по прямой и весами по умолчанию. **/
+    public AnytimePathfinder(Map2D map)
+    {
+        this(map, Heuristic.EUCLIDEAN, DEFAULT_INITIAL_WEIGHT, DEFAULT_WEIGHT_STEP);
+    }
+
+    /**
+     * Создает объект для указанной карты с указанной оценкой, начальным весом
+     * (не меньше 1) и шагом его уменьшения (больше 0).
+     **/
+    public AnytimePathfinder(Map2D map, Heuristic heuristic, float initialWeight, float weightStep)
+    {
+        if (map == null)
+            throw new NullPointerException("map cannot be null");
+        if (heuristic == null)
+            throw new NullPointerException("heuristic cannot be null");
+        if (!(initialWeight >= 1))
+            throw new IllegalArgumentException("initialWeight must be >= 1; got " + initialWeight);
+        if (!(weightStep > 0))
+            throw new IllegalArgumentException("weightStep must be > 0; got " + weightStep);
+
+        this.map = map;
+        this.heuristic = heuristic;
+        this.initialWeight = initialWeight;
+        this.weightStep = weightStep;
+    }
+
+    /**
+     * Ищет путь между начальным и конечным местоположениями карты до крайнего срока
+     * <code>deadlineNanos</code> (значение {@link System#nanoTime()}).
+     **/
+    public AnytimeResult computePath(long deadlineNanos)
+    {
+        return computePath(map.getStart(), map.getFinish(), deadlineNanos, null);
+    }
+
+    /**
+     * Ищет путь между указанными местоположениями до крайнего срока
+     * <code>deadlineNanos</code> (значение {@link System#nanoTime()}).
+     * Возвращает лучший путь, найденный к крайнему сроку; если к этому времени
+     * не найден ни один путь, {@link AnytimeResult#getPath()} вернет <code>null</code>.
+     * Если <code>onImproved</code> не равен <code>null</code>, он вызывается в этом
+     * же потоке после каждой итерации с очередным результатом.
+     **/
+    public AnytimeResult computePath(Location startLoc, Location finishLoc, long deadlineNanos,
+                                     Consumer<AnytimeResult> onImproved)
+    {
+        if (!map.contains(startLoc) || !map.contains(finishLoc))
+            throw new IllegalArgumentException("start and finish must be inside the map");
+
+        // Построение разметки просматривает всю карту и не следит за крайним сроком,
+        // поэтому готовой разметкой запрос пользуется, а строить ее не станет.
+        if (map.isConnectivityBuilt() && !map.isReachable(startLoc, finishLoc))
+            return new AnytimeResult(null, Float.POSITIVE_INFINITY, 0, 0);
+
+        PathfinderContext ctx = PathfinderContext.borrow(map);
+        try
+        {
+            return new Search(ctx, startLoc, finishLoc, deadlineNanos).run(onImproved);
+        }
+        finally
+        {
+            PathfinderContext.release(ctx);
+        }
+    }
+
+
+    /** Состояние одного запроса. **/
+    private class Search
+    {
+        private final PathfinderContext ctx;
+        private final CellHeap open;
+        private final CellStorage cells = map.getStorage();
+        private final int width = map.getWidth();
+        private final int height = map.getHeight();
+
+        private final Location finishLoc;
+        private final int start;
+        private final int finish;
+        private final long deadlineNanos;
+
+        /**
+         * Закрытые ячейки, стоимость пути до которых уменьшилась на текущей итерации
+         * (INCONS). Они раскрываются заново на следующей итерации; повторы допустимы.
+         **/
+        private int[] incons = new int[64];
+        private int numIncons;
+
+        /** Текущий вес оценки. **/
+        private float weight = initialWeight;
+
+        private int iterations;
+        private long expanded;
+
+        Search(PathfinderContext ctx, Location startLoc, Location finishLoc, long deadlineNanos)
+        {
+            this.ctx = ctx;
+            this.open = ctx.open;
+            this.finishLoc = finishLoc;
+            this.start = startLoc.yCoord * width + startLoc.xCoord;
+            this.finish = finishLoc.yCoord * width + finishLoc.xCoord;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        AnytimeResult run(Consumer<AnytimeResult> onImproved)
+        {
+            ctx.reset();
+            ctx.setPrevCost(start, 0, -1);
+            open.insertOrUpdate(start, weight * estimate(start));
+
+            AnytimeResult best = new AnytimeResult(null, Float.POSITIVE_INFINITY, 0, 0);
+            while (improvePath())
+            {
+                iterations++;
+                float finishCost = ctx.getPrevCost(finish);
+                if (finishCost == Float.POSITIVE_INFINITY)
+                {
+                    // Открытый набор исчерпан, а путь не найден.
+                    best = new AnytimeResult(null, Float.POSITIVE_INFINITY, iterations, expanded);
+                    break;
+                }
+
+                // Стоимость кратчайшего пути не меньше наименьшего g + h среди
+                // открытых и несогласованных вершин.
+                float lowerBound = minUnweightedKey();
+                float bound = finishCost <= lowerBound ? 1 : Math.min(weight, finishCost / lowerBound);
+
+                best = new AnytimeResult(
+                    GridPathfinder.buildPath(map, finishLoc, finish, ctx.prevCost, ctx.previous),
+                    bound, iterations, expanded);
+                if (onImproved != null)
+                    onImproved.accept(best);
+
+                if (bound <= 1)
+                    break;
+
+                weight = Math.max(1, Math.min(weight - weightStep, bound));
+                rebuildOpen();
+            }
+
+            open.clear();
+
+            // Если время вышло до первого пути, результат все равно сообщает объем работы.
+            if (best.getPath() == null)
+                best = new AnytimeResult(null, Float.POSITIVE_INFINITY, iterations, expanded);
+            return best;
+        }
+
+        /**
+         * Раскрывает вершины, пока ключ лучшей открытой вершины меньше стоимости
+         * пути до финиша. Возвращает false, если наступил крайний срок.
+         **/
+        private boolean improvePath()
+        {
+            while (!open.isEmpty() && ctx.getPrevCost(finish) > open.peekKey())
+            {
+                if (++expanded % DEADLINE_CHECK_INTERVAL == 0 &&
+                    System.nanoTime() - deadlineNanos >= 0)
+                {
+                    return false;
+                }
+
+                int best = open.poll();
+                ctx.close(best);
+
+                int x = best % width;
+                int y = best / width;
+                float bestCost = ctx.prevCost[best];
+
+                for (int i = 0; i < 8; i++)
+                {
+                    int nx = x + GridPathfinder.NEIGHBOUR_DX[i];
+                    int ny = y + GridPathfinder.NEIGHBOUR_DY[i];
+                    if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+                        continue;
+
+                    int next = ny * width + nx;
+                    float cost = bestCost + GridPathfinder.NEIGHBOUR_COST[i];
+                    cost += cells.get(next);
+
+                    if (cost >= AStarPathfinder.COST_LIMIT || cost >= ctx.getPrevCost(next))
+                        continue;
+
+                    ctx.setPrevCost(next, cost, best);
+
+                    // Закрытая вершина на этой итерации заново не раскрывается.
+                    if (ctx.isClosed(next))
+                        addIncons(next);
+                    else
+                        open.insertOrUpdate(next, cost + weight * estimate(next));
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Готовит следующую итерацию: переносит несогласованные вершины
+         * в открытый набор, пересчитывает ключи с новым весом и очищает закрытый набор.
+         **/
+        private void rebuildOpen()
+        {
+            int size = open.size();
+            int[] pending = Arrays.copyOf(incons, Math.max(numIncons + size, 1));
+            for (int i = 0; i < size; i++)
+                pending[numIncons + i] = open.cellAt(i);
+
+            open.clear();
+            for (int i = 0; i < numIncons + size; i++)
+            {
+                int cell = pending[i];
+                open.insertOrUpdate(cell, ctx.prevCost[cell] + weight * estimate(cell));
+            }
+
+            numIncons = 0;
+            ctx.clearClosed();
+        }
+
+        /** Возвращает наименьшее g + h среди открытых и несогласованных вершин. **/
+        private float minUnweightedKey()
+        {
+            float min = Float.POSITIVE_INFINITY;
+            for (int i = 0; i < open.size(); i++)
+            {
+                int cell = open.cellAt(i);
+                min = Math.min(min, ctx.prevCost[cell] + estimate(cell));
+            }
+            for (int i = 0; i < numIncons; i++)
+            {
+                int cell = incons[i];
+                min = Math.min(min, ctx.prevCost[cell] + estimate(cell));
+            }
+            return min;
+        }
+
+        private void addIncons(int cell)
+        {
+            if (numIncons == incons.length)
+                incons = Arrays.copyOf(incons, numIncons * 2);
+            incons[numIncons++] = cell;
+        }
+
+        private float estimate(int cell)
+        {
+            return heuristic.estimate(cell % width, cell / width,
+                                      finishLoc.xCoord, finishLoc.yCoord);
+        }
+    }
+}
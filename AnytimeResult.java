@@ -0,0 +1,72 @@
+/**
+ * Результат поиска {@link AnytimePathfinder}: лучший путь, найденный к моменту
+ * окончания поиска, и гарантированная граница его неоптимальности.
+ **/
+public class AnytimeResult
+{
+    /** Путевая точка последнего шага пути или <code>null</code>. **/
+    private final Waypoint path;
+
+    /** Граница неоптимальности пути. **/
+    private final float bound;
+
+    /** Количество завершенных итераций поиска. **/
+    private final int iterations;
+
+    /** Количество раскрытых вершин за все итерации. **/
+    private final long nodesExpanded;
+
+
+    AnytimeResult(Waypoint path, float bound, int iterations, long nodesExpanded)
+    {
+        this.path = path;
+        this.bound = bound;
+        this.iterations = iterations;
+        this.nodesExpanded = nodesExpanded;
+    }
+
+    /**
+     * Возвращает путевую точку последнего шага найденного пути или <code>null</code>,
+     * если путь не найден (его нет или время вышло раньше, чем он был найден).
+     **/
+    public Waypoint getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Возвращает границу неоптимальности: стоимость найденного пути не больше
+     * стоимости кратчайшего пути, умноженной на это число. Значение 1 означает,
+     * что путь кратчайший; если путь не найден, возвращается бесконечность.
+     **/
+    public float getBound()
+    {
+        return bound;
+    }
+
+    /** Возвращает true, если найденный путь кратчайший. **/
+    public boolean isOptimal()
+    {
+        return bound <= 1;
+    }
+
+    /** Возвращает количество завершенных итераций поиска. **/
+    public int getIterations()
+    {
+        return iterations;
+    }
+
+    /** Возвращает количество раскрытых вершин за все итерации. **/
+    public long getNodesExpanded()
+    {
+        return nodesExpanded;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "AnytimeResult[cost=" + (path != null ? path.getPreviousCost() : Float.POSITIVE_INFINITY) +
+               ", bound=" + bound + ", iterations=" + iterations +
+               ", nodesExpanded=" + nodesExpanded + "]";
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Этот класс решает пакет запросов {@link PathQuery} по одной карте параллельно
+ * в пуле {@link ForkJoinPool}. Каждая задача берет на время работы свой
+ * {@link PathfinderContext} из общего пула, а карта только читается, поэтому ее нельзя
+ * изменять, пока пакет не будет решен.
+ **/
+public class BatchPathfinder
+{
+    /**
+     * Количество запросов, ниже которого задача больше не делится
+     * и решается в одном потоке.
+     **/
+    private static final int SEQUENTIAL_THRESHOLD = 16;
+
+    /** Пул, в котором выполняются запросы. **/
+    private final ForkJoinPool pool;
+
+
+    /** Создает объект, использующий общий пул {@link ForkJoinPool#commonPool()}. **/
+    public BatchPathfinder()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /** Создает объект, выполняющий запросы в указанном пуле. **/
+    public BatchPathfinder(ForkJoinPool pool)
+    {
+        if (pool == null)
+            throw new NullPointerException("pool cannot be null");
+        this.pool = pool;
+    }
+
+    /**
+     * Решает все запросы по указанной карте и возвращает массив результатов в том же порядке.
+     * Каждый результат - путевая точка последнего шага пути или <code>null</code>,
+     * если путь не найден (см. {@link GridPathfinder#computePath}).
+     **/
+    public Waypoint[] computePaths(Map2D map, List<PathQuery> queries)
+    {
+        if (map == null)
+            throw new NullPointerException("map cannot be null");
+
+        PathQuery[] batch = queries.toArray(new PathQuery[0]);
+        for (PathQuery query : batch)
+        {
+            if (!map.contains(query.getStart()) || !map.contains(query.getFinish()))
+                throw new IllegalArgumentException("query endpoints must be inside the map");
+        }
+
+        Waypoint[] results = new Waypoint[batch.length];
+        pool.invoke(new BatchTask(map, batch, results, 0, batch.length));
+        return results;
+    }
+
+    /**
+     * Задача, которая решает запросы в диапазоне [from, to), разделяя его пополам,
+     * пока он не станет достаточно маленьким.
+     **/
+    private static class BatchTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Map2D map;
+        private final PathQuery[] batch;
+        private final Waypoint[] results;
+        private final int from;
+        private final int to;
+
+        BatchTask(Map2D map, PathQuery[] batch, Waypoint[] results, int from, int to)
+        {
+            this.map = map;
+            this.batch = batch;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= SEQUENTIAL_THRESHOLD)
+            {
+                PathfinderContext ctx = PathfinderContext.borrow(map);
+                try
+                {
+                    for (int i = from; i < to; i++)
+                    {
+                        PathQuery query = batch[i];
+                        results[i] = GridPathfinder.computePath(map, query.getStart(),
+                                query.getFinish(), ctx);
+                    }
+                }
+                finally
+                {
+                    PathfinderContext.release(ctx);
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(map, batch, results, from, mid),
+                      new BatchTask(map, batch, results, mid, to));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+import java.util.Arrays;
+
+/**
+ * Открытый набор путевых точек в виде поразрядной очереди с корзинами (radix heap).
+ * Ключ путевой точки - двоичное представление ее общей стоимости: у неотрицательных
+ * чисел <code>float</code> оно упорядочено так же, как сами числа, поэтому
+ * стоимости переводятся в целые ключи без потери точности.
+ * <p>
+ * Очередь монотонна: ключ новой точки не должен быть меньше ключа последнего
+ * найденного минимума. При согласованной оценке стоимость вершин, раскрываемых
+ * поиском A *, не убывает, поэтому для A * это условие выполняется; ключи, которые
+ * меньше минимума лишь из-за погрешности округления, считаются равными ему.
+ * Корзина k содержит точки, ключ которых отличается от минимума в старшем бите k - 1
+ * (корзина 0 - точки с ключом, равным минимуму). Каждая точка переходит только
+ * в корзины с меньшими номерами, поэтому добавление, удаление и извлечение
+ * минимума выполняются в среднем за O(1), без сравнений между точками.
+ **/
+public class BucketWaypointQueue implements OpenSet
+{
+    /** Количество корзин: по одной на каждый бит неотрицательного ключа и корзина 0. **/
+    private static final int NUM_BUCKETS = 32;
+
+    /** Количество младших бит {@link Waypoint#heapIndex}, в которых хранится номер корзины. **/
+    private static final int BUCKET_BITS = 5;
+
+    /** Начальная емкость корзины. **/
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Относительная погрешность, в пределах которой ключ меньше минимума
+     * считается равным ему, см. {@link #accepts(float)}.
+     **/
+    private static final float TOLERANCE = 1e-5f;
+
+    /** Корзины путевых точек. **/
+    private final Waypoint[][] buckets = new Waypoint[NUM_BUCKETS][];
+
+    /** Количество точек в каждой корзине. **/
+    private final int[] sizes = new int[NUM_BUCKETS];
+
+    /** Общее количество точек. **/
+    private int size;
+
+    /** Ключ последнего найденного минимума. **/
+    private int last;
+
+
+    /** Создает пустую очередь. **/
+    public BucketWaypointQueue()
+    {
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            buckets[i] = new Waypoint[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Возвращает true, если точку с указанной общей стоимостью можно добавить,
+     * не нарушая порядка: стоимость не меньше последнего найденного минимума
+     * (с учетом погрешности округления).
+     **/
+    public boolean accepts(float totalCost)
+    {
+        float min = Float.intBitsToFloat(last);
+        return totalCost >= min - min * TOLERANCE;
+    }
+
+    @Override
+    public Waypoint peek()
+    {
+        if (size == 0)
+            return null;
+
+        if (sizes[0] == 0)
+        {
+            // Минимум лежит в первой непустой корзине; ее точки
+            // распределяются по корзинам относительно нового минимума.
+            int b = 1;
+            while (sizes[b] == 0)
+                b++;
+
+            Waypoint[] bucket = buckets[b];
+            int n = sizes[b];
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < n; i++)
+                min = Math.min(min, key(bucket[i]));
+
+            last = min;
+            sizes[b] = 0;
+            for (int i = 0; i < n; i++)
+            {
+                Waypoint wp = bucket[i];
+                bucket[i] = null;
+                push(wp);
+            }
+        }
+
+        return buckets[0][0];
+    }
+
+    @Override
+    public Waypoint poll()
+    {
+        Waypoint min = peek();
+        if (min != null)
+            remove(min);
+        return min;
+    }
+
+    @Override
+    public void add(Waypoint wp)
+    {
+        if (wp.heapIndex >= 0)
+            throw new IllegalArgumentException("waypoint is already in a heap");
+
+        push(wp);
+        size++;
+    }
+
+    @Override
+    public void replace(Waypoint oldWP, Waypoint newWP)
+    {
+        if (newWP.heapIndex >= 0)
+            throw new IllegalArgumentException("waypoint is already in a heap");
+
+        remove(oldWP);
+        add(newWP);
+    }
+
+    @Override
+    public void remove(Waypoint wp)
+    {
+        int index = wp.heapIndex;
+        int b = index & (NUM_BUCKETS - 1);
+        int i = index >>> BUCKET_BITS;
+        if (index < 0 || i >= sizes[b] || buckets[b][i] != wp)
+            throw new IllegalArgumentException("waypoint is not in this heap");
+
+        // На место удаленной точки ставится последняя точка корзины.
+        Waypoint[] bucket = buckets[b];
+        int lastIndex = --sizes[b];
+        Waypoint moved = bucket[lastIndex];
+        bucket[i] = moved;
+        moved.heapIndex = index;
+        bucket[lastIndex] = null;
+
+        wp.heapIndex = -1;
+        size--;
+    }
+
+    @Override
+    public void clear()
+    {
+        for (int b = 0; b < NUM_BUCKETS; b++)
+        {
+            Waypoint[] bucket = buckets[b];
+            for (int i = 0; i < sizes[b]; i++)
+            {
+                bucket[i].heapIndex = -1;
+                bucket[i] = null;
+            }
+            sizes[b] = 0;
+        }
+        size = 0;
+        last = 0;
+    }
+
+    /** Помещает точку в корзину, соответствующую ее ключу. **/
+    private void push(Waypoint wp)
+    {
+        int key = key(wp);
+        int b = key == last ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(key ^ last);
+
+        int n = sizes[b];
+        if (n == buckets[b].length)
+            buckets[b] = Arrays.copyOf(buckets[b], n * 2);
+
+        buckets[b][n] = wp;
+        wp.heapIndex = (n << BUCKET_BITS) | b;
+        sizes[b] = n + 1;
+    }
+
+    /**
+     * Возвращает ключ точки: двоичное представление ее общей стоимости,
+     * но не меньше ключа последнего найденного минимума.
+     **/
+    private int key(Waypoint wp)
+    {
+        return Math.max(Float.floatToIntBits(wp.getTotalCost()), last);
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Способы хранения ячеек карты {@link Map2D}, из которых можно выбрать при создании
+ * карты конструктором {@link Map2D#Map2D(int, int, CellEncoding)}. Компактные способы
+ * ограничивают допустимые значения ячеек, зато занимают в 4-32 раза меньше памяти.
+ * Готовую карту, которая больше не изменяется, можно также сжать
+ * {@link RunLengthCellStorage#compress}.
+ * <p>
+ * Для карт с компактными способами хранения (всеми, кроме {@link #INT})
+ * {@link Map2D#isReachable} не строит разметку связных областей
+ * ({@link ConnectivityIndex}): она занимает четыре байта на ячейку и свела бы
+ * экономию памяти на нет. Поэтому поиск до недостижимого финиша на таких картах
+ * не отбрасывается заранее, а просматривает всю область начала.
+ **/
+public enum CellEncoding
+{
+    /** Четыре байта на ячейку, любые значения ({@link HeapCellStorage}). **/
+    INT
+    {
+        @Override
+        public CellStorage create(long size)
+        {
+            return new HeapCellStorage(size);
+        }
+    },
+
+    /** Один байт на ячейку, до 256 разных значений ({@link PaletteCellStorage}). **/
+    PALETTE_8
+    {
+        @Override
+        public CellStorage create(long size)
+        {
+            return new PaletteCellStorage(size, 8);
+        }
+    },
+
+    /** Половина байта на ячейку, до 16 разных значений ({@link PaletteCellStorage}). **/
+    PALETTE_4
+    {
+        @Override
+        public CellStorage create(long size)
+        {
+            return new PaletteCellStorage(size, 4);
+        }
+    },
+
+    /**
+     * Один бит на ячейку: только свободные ячейки и препятствия ({@link BitmapCellStorage}).
+     * Поиск {@link GridPathfinder} проверяет проходимость соседей по битовой карте.
+     **/
+    BITMAP
+    {
+        @Override
+        public CellStorage create(long size)
+        {
+            return new BitmapCellStorage(size);
+        }
+    };
+
+
+    /** Создает пустое хранилище с этим способом хранения для указанного количества ячеек. **/
+    public abstract CellStorage create(long size);
+
+    /**
+     * Создает хранилище с этим способом хранения и копирует в него все ячейки
+     * указанного хранилища. Если значение какой-либо ячейки нельзя сохранить
+     * этим способом, выбрасывается {@link IllegalArgumentException}.
+     **/
+    public CellStorage copyOf(CellStorage cells)
+    {
+        if (cells == null)
+            throw new NullPointerException("cells cannot be null");
+
+        long size = cells.size();
+        CellStorage copy = create(size);
+        for (long i = 0; i < size; i++)
+        {
+            int value = cells.get(i);
+            if (value != 0)
+                copy.set(i, value);
+        }
+
+        return copy;
+    }
+}
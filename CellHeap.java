@@ -0,0 +1,206 @@
+import java.util.Arrays;
+
+/**
+ * Индексированная двоичная мин-куча над целочисленными индексами ячеек
+ * с ключами типа float. Все данные хранятся в примитивных массивах,
+ * поэтому операции с кучей не создают объектов.
+ * Индексы ячеек должны находиться в диапазоне [0, capacity).
+ **/
+public class CellHeap
+{
+    /** Индексы ячеек в порядке кучи. **/
+    private int[] cells;
+
+    /** Ключи, соответствующие элементам массива {@link #cells}. **/
+    private float[] keys;
+
+    /** Позиция каждой ячейки в куче или -1, если ячейки в куче нет. **/
+    private final int[] pos;
+
+    /** Количество элементов в куче. **/
+    private int size;
+
+
+    /** Создает пустую кучу для индексов ячеек в диапазоне [0, capacity). **/
+    public CellHeap(int capacity)
+    {
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity must be >= 0; got " + capacity);
+
+        int initial = Math.max(16, Math.min(capacity, 1024));
+        cells = new int[initial];
+        keys = new float[initial];
+        pos = new int[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    /** Возвращает количество элементов в куче. **/
+    public int size()
+    {
+        return size;
+    }
+
+    /** Возвращает true, если куча пуста. **/
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /** Возвращает true, если указанная ячейка находится в куче. **/
+    public boolean contains(int cell)
+    {
+        return pos[cell] >= 0;
+    }
+
+    /**
+     * Возвращает ячейку, находящуюся в позиции <code>i</code> массива кучи
+     * (0 &lt;= i &lt; size()). Позволяет перебрать все ячейки кучи в произвольном порядке.
+     **/
+    int cellAt(int i)
+    {
+        return cells[i];
+    }
+
+    /** Возвращает ячейку с наименьшим ключом. Куча не должна быть пустой. **/
+    public int peek()
+    {
+        return cells[0];
+    }
+
+    /** Возвращает наименьший ключ в куче. Куча не должна быть пустой. **/
+    public float peekKey()
+    {
+        return keys[0];
+    }
+
+    /** Возвращает текущий ключ ячейки, находящейся в куче. **/
+    public float getKey(int cell)
+    {
+        return keys[pos[cell]];
+    }
+
+    /**
+     * Добавляет ячейку с указанным ключом или, если ячейка уже находится в куче,
+     * изменяет ее ключ (в любую сторону).
+     **/
+    public void insertOrUpdate(int cell, float key)
+    {
+        int i = pos[cell];
+        if (i >= 0)
+        {
+            float old = keys[i];
+            keys[i] = key;
+            if (key < old)
+                siftUp(i);
+            else
+                siftDown(i);
+            return;
+        }
+
+        if (size == cells.length)
+        {
+            int newLength = size + (size >>> 1) + 1;
+            cells = Arrays.copyOf(cells, newLength);
+            keys = Arrays.copyOf(keys, newLength);
+        }
+
+        cells[size] = cell;
+        keys[size] = key;
+        pos[cell] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /** Удаляет и возвращает ячейку с наименьшим ключом. Куча не должна быть пустой. **/
+    public int poll()
+    {
+        int min = cells[0];
+        removeAt(0);
+        return min;
+    }
+
+    /** Удаляет ячейку из кучи, если она там есть. **/
+    public void remove(int cell)
+    {
+        int i = pos[cell];
+        if (i >= 0)
+            removeAt(i);
+    }
+
+    /**
+     * Удаляет все элементы из кучи. Время работы пропорционально количеству
+     * элементов в куче, а не емкости.
+     **/
+    public void clear()
+    {
+        for (int i = 0; i < size; i++)
+            pos[cells[i]] = -1;
+        size = 0;
+    }
+
+    /** Удаляет элемент в позиции i и восстанавливает порядок кучи. **/
+    private void removeAt(int i)
+    {
+        pos[cells[i]] = -1;
+        size--;
+        if (i != size)
+        {
+            cells[i] = cells[size];
+            keys[i] = keys[size];
+            pos[cells[i]] = i;
+            siftUp(i);
+            siftDown(pos[cells[i]]);
+        }
+    }
+
+    /** Поднимает элемент в позиции i, пока он меньше своего родителя. **/
+    private void siftUp(int i)
+    {
+        int cell = cells[i];
+        float key = keys[i];
+
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key)
+                break;
+
+            cells[i] = cells[parent];
+            keys[i] = keys[parent];
+            pos[cells[i]] = i;
+            i = parent;
+        }
+
+        cells[i] = cell;
+        keys[i] = key;
+        pos[cell] = i;
+    }
+
+    /** Опускает элемент в позиции i, пока он больше одного из своих потомков. **/
+    private void siftDown(int i)
+    {
+        int cell = cells[i];
+        float key = keys[i];
+        int half = size >>> 1;
+
+        while (i < half)
+        {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && keys[right] < keys[child])
+                child = right;
+
+            if (key <= keys[child])
+                break;
+
+            cells[i] = cells[child];
+            keys[i] = keys[child];
+            pos[cells[i]] = i;
+            i = child;
+        }
+
+        cells[i] = cell;
+        keys[i] = key;
+        pos[cell] = i;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Этот интерфейс описывает хранилище значений стоимости ячеек карты {@link Map2D}.
+ * Ячейки хранятся построчно: ячейка (x, y) имеет индекс <code>y * width + x</code>.
+ * Реализации не проверяют координаты; это делает {@link Map2D}.
+ **/
+public interface CellStorage
+{
+    /** Возвращает количество ячеек в хранилище. **/
+    long size();
+
+    /** Возвращает значение стоимости ячейки с указанным индексом. **/
+    int get(long index);
+
+    /** Устанавливает значение стоимости ячейки с указанным индексом. **/
+    void set(long index, int value);
+
+    /**
+     * Возвращает true, если ячейки подгружаются по требованию (см. {@link TiledCellStorage}).
+     * Для таких хранилищ не следует выполнять действия, просматривающие всю карту.
+     **/
+    default boolean isPaged()
+    {
+        return false;
+    }
+
+    /**
+     * Возвращает true, если хранилище тратит на ячейку меньше четырех байт
+     * (см. {@link CellEncoding}). Для таких хранилищ {@link Map2D} не строит разметку
+     * связных областей: она хранит номер области в <code>int</code> на каждую ячейку
+     * и заняла бы больше памяти, чем сама карта.
+     **/
+    default boolean isCompact()
+    {
+        return false;
+    }
+
+    /**
+     * Возвращает true, если ячейки хранятся вне кучи Java (см. {@link DirectCellStorage}),
+     * в том числе в отображенном в память файле {@link MapFile}. Для таких хранилищ
+     * {@link Map2D} не строит разметку связных областей: она заняла бы в куче
+     * <code>int</code> на каждую ячейку, а ее построение прочитало бы весь файл.
+     **/
+    default boolean isOffHeap()
+    {
+        return false;
+    }
+}
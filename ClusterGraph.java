@@ -0,0 +1,523 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+
+/**
+ * Абстрактный граф для иерархического поиска пути (HPA*). Карта делится на
+ * квадратные кластеры; на границах соседних кластеров выбираются входы - пары
+ * проходимых ячеек по обе стороны границы. Вершины графа - ячейки входов,
+ * ребра - переходы через границу и пути внутри кластера между входами,
+ * стоимость которых вычисляется заранее поиском Дейкстры внутри кластера.
+ * Входами также становятся диагональные переходы через границы и углы кластеров,
+ * которые нельзя пересечь прямым шагом.
+ * <p>
+ * Граф строится один раз для карты и может быть сохранен в файл и загружен
+ * из него. После изменения ячеек карты граф нужно построить заново.
+ * Запросы к графу выполняет {@link HierarchicalPathfinder}.
+ **/
+public class ClusterGraph
+{
+    /** Сигнатура файла графа. **/
+    private static final int MAGIC = 0x48504131;
+
+    /**
+     * Наименьшая длина участка границы, на котором создаются два входа
+     * (по краям участка) вместо одного посередине.
+     **/
+    private static final int WIDE_ENTRANCE = 6;
+
+    /** Ширина карты, для которой построен граф. **/
+    private final int width;
+
+    /** Высота карты, для которой построен граф. **/
+    private final int height;
+
+    /** Размер стороны кластера в ячейках. **/
+    private final int clusterSize;
+
+    /** Индекс ячейки карты для каждой вершины графа. **/
+    private final int[] nodeCells;
+
+    /** Начало списка ребер каждой вершины в массивах edgeTargets и edgeCosts. **/
+    private final int[] edgeStart;
+
+    /** Вершины, в которые ведут ребра. **/
+    private final int[] edgeTargets;
+
+    /** Стоимости ребер. **/
+    private final float[] edgeCosts;
+
+    /** Вершины каждого кластера. **/
+    private final int[][] clusterNodes;
+
+
+    /** Создает граф из уже вычисленных массивов. **/
+    private ClusterGraph(int width, int height, int clusterSize, int[] nodeCells,
+                         int[] edgeStart, int[] edgeTargets, float[] edgeCosts)
+    {
+        this.width = width;
+        this.height = height;
+        this.clusterSize = clusterSize;
+        this.nodeCells = nodeCells;
+        this.edgeStart = edgeStart;
+        this.edgeTargets = edgeTargets;
+        this.edgeCosts = edgeCosts;
+
+        int[] counts = new int[getNumClusters()];
+        for (int cell : nodeCells)
+            counts[clusterOf(cell % width, cell / width)]++;
+
+        clusterNodes = new int[counts.length][];
+        for (int i = 0; i < counts.length; i++)
+            clusterNodes[i] = new int[counts[i]];
+
+        Arrays.fill(counts, 0);
+        for (int node = 0; node < nodeCells.length; node++)
+        {
+            int c = clusterOf(nodeCells[node] % width, nodeCells[node] / width);
+            clusterNodes[c][counts[c]++] = node;
+        }
+    }
+
+    /**
+     * Строит абстрактный граф для указанной карты с кластерами указанного размера.
+     **/
+    public static ClusterGraph build(Map2D map, int clusterSize)
+    {
+        if (clusterSize < 2)
+            throw new IllegalArgumentException("clusterSize must be >= 2; got " + clusterSize);
+
+        int width = map.getWidth();
+        int height = map.getHeight();
+        Builder builder = new Builder(map, clusterSize);
+
+        // Вертикальные границы между кластерами, соседними по оси X.
+        for (int x = clusterSize; x < width; x += clusterSize)
+        {
+            for (int y0 = 0; y0 < height; y0 += clusterSize)
+                builder.addEntrances(x - 1, y0, x, y0, 0, 1, Math.min(clusterSize, height - y0));
+        }
+
+        // Горизонтальные границы между кластерами, соседними по оси Y.
+        for (int y = clusterSize; y < height; y += clusterSize)
+        {
+            for (int x0 = 0; x0 < width; x0 += clusterSize)
+                builder.addEntrances(x0, y - 1, x0, y, 1, 0, Math.min(clusterSize, width - x0));
+        }
+
+        // Углы, в которых сходятся четыре кластера.
+        for (int y = clusterSize; y < height; y += clusterSize)
+        {
+            for (int x = clusterSize; x < width; x += clusterSize)
+                builder.addCorner(x, y);
+        }
+
+        return builder.finish();
+    }
+
+    /** Возвращает размер стороны кластера в ячейках. **/
+    public int getClusterSize()
+    {
+        return clusterSize;
+    }
+
+    /** Возвращает количество вершин графа. **/
+    public int getNumNodes()
+    {
+        return nodeCells.length;
+    }
+
+    /** Возвращает количество ребер графа. **/
+    public int getNumEdges()
+    {
+        return edgeTargets.length;
+    }
+
+    /** Возвращает true, если граф построен для карты такого же размера. **/
+    public boolean fits(Map2D map)
+    {
+        return map.getWidth() == width && map.getHeight() == height;
+    }
+
+    /** Записывает граф в указанный файл. **/
+    public void save(Path file) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(clusterSize);
+            out.writeInt(nodeCells.length);
+            out.writeInt(edgeTargets.length);
+
+            for (int cell : nodeCells)
+                out.writeInt(cell);
+            for (int start : edgeStart)
+                out.writeInt(start);
+            for (int i = 0; i < edgeTargets.length; i++)
+            {
+                out.writeInt(edgeTargets[i]);
+                out.writeFloat(edgeCosts[i]);
+            }
+        }
+    }
+
+    /** Загружает граф, ранее записанный методом {@link #save}. **/
+    public static ClusterGraph load(Path file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + ": not a cluster graph file");
+
+            int width = in.readInt();
+            int height = in.readInt();
+            int clusterSize = in.readInt();
+            int numNodes = in.readInt();
+            int numEdges = in.readInt();
+
+            int[] nodeCells = new int[numNodes];
+            for (int i = 0; i < numNodes; i++)
+                nodeCells[i] = in.readInt();
+
+            int[] edgeStart = new int[numNodes + 1];
+            for (int i = 0; i <= numNodes; i++)
+                edgeStart[i] = in.readInt();
+
+            int[] edgeTargets = new int[numEdges];
+            float[] edgeCosts = new float[numEdges];
+            for (int i = 0; i < numEdges; i++)
+            {
+                edgeTargets[i] = in.readInt();
+                edgeCosts[i] = in.readFloat();
+            }
+
+            return new ClusterGraph(width, height, clusterSize, nodeCells,
+                                    edgeStart, edgeTargets, edgeCosts);
+        }
+    }
+
+    /** Возвращает количество кластеров. **/
+    int getNumClusters()
+    {
+        return clustersPerRow() * ((height + clusterSize - 1) / clusterSize);
+    }
+
+    /** Возвращает номер кластера, содержащего ячейку (x, y). **/
+    int clusterOf(int x, int y)
+    {
+        return (y / clusterSize) * clustersPerRow() + x / clusterSize;
+    }
+
+    /** Возвращает вершины указанного кластера. **/
+    int[] getClusterNodes(int cluster)
+    {
+        return clusterNodes[cluster];
+    }
+
+    /** Возвращает индекс ячейки карты для вершины. **/
+    int getNodeCell(int node)
+    {
+        return nodeCells[node];
+    }
+
+    /** Возвращает начало списка ребер вершины; конец - начало списка следующей вершины. **/
+    int getEdgeStart(int node)
+    {
+        return edgeStart[node];
+    }
+
+    /** Возвращает вершину, в которую ведет ребро. **/
+    int getEdgeTarget(int edge)
+    {
+        return edgeTargets[edge];
+    }
+
+    /** Возвращает стоимость ребра. **/
+    float getEdgeCost(int edge)
+    {
+        return edgeCosts[edge];
+    }
+
+    /** Возвращает количество кластеров в одном ряду. **/
+    private int clustersPerRow()
+    {
+        return (width + clusterSize - 1) / clusterSize;
+    }
+
+    /**
+     * Вычисляет стоимости путей внутри кластера поиском Дейкстры.
+     * Если <code>reverse</code> равно false, вычисляются стоимости путей из ячейки
+     * <code>source</code> до каждой ячейки кластера, иначе - стоимости путей
+     * от каждой ячейки кластера до <code>source</code>. Результат записывается
+     * в массив <code>dist</code>, индексированный ячейками кластера построчно.
+     **/
+    static void searchCluster(Map2D map, int clusterSize, int cluster, int source,
+                              boolean reverse, float[] dist, CellHeap heap)
+    {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int perRow = (width + clusterSize - 1) / clusterSize;
+        int x0 = (cluster % perRow) * clusterSize;
+        int y0 = (cluster / perRow) * clusterSize;
+        int x1 = Math.min(x0 + clusterSize, width);
+        int y1 = Math.min(y0 + clusterSize, height);
+        CellStorage cells = map.getStorage();
+
+        Arrays.fill(dist, Float.POSITIVE_INFINITY);
+        heap.clear();
+
+        int local = (source / width - y0) * clusterSize + (source % width - x0);
+        dist[local] = 0;
+        heap.insertOrUpdate(local, 0);
+
+        while (!heap.isEmpty())
+        {
+            int curr = heap.poll();
+            int x = x0 + curr % clusterSize;
+            int y = y0 + curr / clusterSize;
+            int currValue = cells.get((long) y * width + x);
+
+            for (int i = 0; i < 8; i++)
+            {
+                int nx = x + GridPathfinder.NEIGHBOUR_DX[i];
+                int ny = y + GridPathfinder.NEIGHBOUR_DY[i];
+                if (nx < x0 || nx >= x1 || ny < y0 || ny >= y1)
+                    continue;
+
+                // При обратном поиске шаг ведет из соседа в текущую ячейку.
+                int entered = reverse ? currValue : cells.get((long) ny * width + nx);
+                float cost = dist[curr] + GridPathfinder.NEIGHBOUR_COST[i];
+                cost += entered;
+                if (cost >= AStarPathfinder.COST_LIMIT)
+                    continue;
+
+                int next = (ny - y0) * clusterSize + (nx - x0);
+                if (cost < dist[next])
+                {
+                    dist[next] = cost;
+                    heap.insertOrUpdate(next, cost);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Вспомогательный класс, который собирает вершины и ребра графа
+     * во время построения.
+     **/
+    private static class Builder
+    {
+        private final Map2D map;
+        private final int clusterSize;
+        private final int width;
+        private final HashMap<Integer, Integer> nodeByCell = new HashMap<>();
+        private final List<Integer> nodeCells = new ArrayList<>();
+        private final List<List<Long>> edges = new ArrayList<>();
+
+        Builder(Map2D map, int clusterSize)
+        {
+            this.map = map;
+            this.clusterSize = clusterSize;
+            this.width = map.getWidth();
+        }
+
+        /**
+         * Находит входы вдоль участка границы длиной <code>length</code>. Ячейка
+         * (ax, ay) лежит по одну сторону границы, (bx, by) - по другую;
+         * (dx, dy) - направление вдоль границы.
+         **/
+        void addEntrances(int ax, int ay, int bx, int by, int dx, int dy, int length)
+        {
+            int runStart = -1;
+            for (int i = 0; i <= length; i++)
+            {
+                boolean open = i < length && isOpen(ax, ay, bx, by, dx, dy, i, i);
+
+                if (open && runStart < 0)
+                    runStart = i;
+
+                if (!open && runStart >= 0)
+                {
+                    int runEnd = i - 1;
+                    if (runEnd - runStart + 1 >= WIDE_ENTRANCE)
+                    {
+                        addTransition(ax + runStart * dx, ay + runStart * dy,
+                                      bx + runStart * dx, by + runStart * dy);
+                        addTransition(ax + runEnd * dx, ay + runEnd * dy,
+                                      bx + runEnd * dx, by + runEnd * dy);
+                    }
+                    else
+                    {
+                        int mid = (runStart + runEnd) / 2;
+                        addTransition(ax + mid * dx, ay + mid * dy, bx + mid * dx, by + mid * dy);
+                    }
+                    runStart = -1;
+                }
+
+                // Граница, закрытая для прямых шагов, может быть открыта для диагонального шага.
+                if (i + 1 < length && !open && !isOpen(ax, ay, bx, by, dx, dy, i + 1, i + 1))
+                {
+                    if (isOpen(ax, ay, bx, by, dx, dy, i, i + 1))
+                    {
+                        addTransition(ax + i * dx, ay + i * dy,
+                                      bx + (i + 1) * dx, by + (i + 1) * dy);
+                    }
+                    if (isOpen(ax, ay, bx, by, dx, dy, i + 1, i))
+                    {
+                        addTransition(ax + (i + 1) * dx, ay + (i + 1) * dy,
+                                      bx + i * dx, by + i * dy);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Добавляет диагональные переходы через угол, в котором сходятся
+         * четыре кластера; (x, y) - ячейка справа внизу от угла.
+         **/
+        void addCorner(int x, int y)
+        {
+            if (isPassable(x - 1, y - 1) && isPassable(x, y))
+                addTransition(x - 1, y - 1, x, y);
+            if (isPassable(x, y - 1) && isPassable(x - 1, y))
+                addTransition(x, y - 1, x - 1, y);
+        }
+
+        /**
+         * Возвращает true, если проходимы ячейка номер i вдоль границы с одной стороны
+         * и ячейка номер j с другой стороны.
+         **/
+        private boolean isOpen(int ax, int ay, int bx, int by, int dx, int dy, int i, int j)
+        {
+            return isPassable(ax + i * dx, ay + i * dy) && isPassable(bx + j * dx, by + j * dy);
+        }
+
+        /** Добавляет переход между двумя соседними ячейками в обе стороны. **/
+        private void addTransition(int ax, int ay, int bx, int by)
+        {
+            int a = nodeFor(ay * width + ax);
+            int b = nodeFor(by * width + bx);
+            float step = (ax != bx && ay != by) ? GridPathfinder.DIAGONAL_COST : 1;
+            addEdge(a, b, step + map.getCellValue(bx, by));
+            addEdge(b, a, step + map.getCellValue(ax, ay));
+        }
+
+        /** Возвращает true, если в ячейку можно сделать хотя бы прямой шаг. **/
+        private boolean isPassable(int x, int y)
+        {
+            return 1 + (float) map.getCellValue(x, y) < AStarPathfinder.COST_LIMIT;
+        }
+
+        /** Возвращает вершину для ячейки, создавая ее при необходимости. **/
+        private int nodeFor(int cell)
+        {
+            Integer node = nodeByCell.get(cell);
+            if (node == null)
+            {
+                node = nodeCells.size();
+                nodeByCell.put(cell, node);
+                nodeCells.add(cell);
+                edges.add(new ArrayList<>());
+            }
+            return node;
+        }
+
+        /** Добавляет ребро; вершина и стоимость упаковываются в одно число. **/
+        private void addEdge(int from, int to, float cost)
+        {
+            edges.get(from).add(pack(to, cost));
+        }
+
+        private static long pack(int to, float cost)
+        {
+            return ((long) to << 32) | (Float.floatToRawIntBits(cost) & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Вычисляет ребра внутри кластеров и создает граф. Кластеры не зависят
+         * друг от друга, поэтому обрабатываются параллельно.
+         **/
+        ClusterGraph finish()
+        {
+            int numNodes = nodeCells.size();
+            int[] cells = new int[numNodes];
+            for (int i = 0; i < numNodes; i++)
+                cells[i] = nodeCells.get(i);
+
+            // Предварительный граф без внутренних ребер нужен только для списков вершин кластеров.
+            ClusterGraph shape = new ClusterGraph(width, map.getHeight(), clusterSize, cells,
+                    new int[numNodes + 1], new int[0], new float[0]);
+
+            // Для каждой вершины - упакованные внутренние ребра (см. pack).
+            long[][] inner = new long[numNodes][];
+            ThreadLocal<float[]> dists = ThreadLocal.withInitial(
+                    () -> new float[clusterSize * clusterSize]);
+            ThreadLocal<CellHeap> heaps = ThreadLocal.withInitial(
+                    () -> new CellHeap(clusterSize * clusterSize));
+
+            IntStream.range(0, shape.getNumClusters()).parallel().forEach(c -> {
+                float[] dist = dists.get();
+                CellHeap heap = heaps.get();
+                int[] nodes = shape.getClusterNodes(c);
+                int x0 = (c % shape.clustersPerRow()) * clusterSize;
+                int y0 = (c / shape.clustersPerRow()) * clusterSize;
+
+                for (int from : nodes)
+                {
+                    searchCluster(map, clusterSize, c, cells[from], false, dist, heap);
+
+                    long[] found = new long[nodes.length];
+                    int count = 0;
+                    for (int to : nodes)
+                    {
+                        int local = (cells[to] / width - y0) * clusterSize + (cells[to] % width - x0);
+                        if (to != from && dist[local] < Float.POSITIVE_INFINITY)
+                            found[count++] = pack(to, dist[local]);
+                    }
+                    inner[from] = Arrays.copyOf(found, count);
+                }
+            });
+
+            int[] edgeStart = new int[numNodes + 1];
+            for (int i = 0; i < numNodes; i++)
+                edgeStart[i + 1] = edgeStart[i] + edges.get(i).size() + inner[i].length;
+
+            int[] targets = new int[edgeStart[numNodes]];
+            float[] costs = new float[targets.length];
+            for (int i = 0; i < numNodes; i++)
+            {
+                int e = edgeStart[i];
+                for (long edge : edges.get(i))
+                {
+                    targets[e] = (int) (edge >>> 32);
+                    costs[e] = Float.intBitsToFloat((int) edge);
+                    e++;
+                }
+                for (long edge : inner[i])
+                {
+                    targets[e] = (int) (edge >>> 32);
+                    costs[e] = Float.intBitsToFloat((int) edge);
+                    e++;
+                }
+            }
+
+            return new ClusterGraph(width, map.getHeight(), clusterSize, cells,
+                                    edgeStart, targets, costs);
+        }
+    }
+}
@@ -0,0 +1,515 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.IntStream;
+
+
+/**
+ * Разметка связных областей проходимых ячеек карты. Ячейка считается проходимой,
+ * если шаг в нее из соседней ячейки не превышает {@link AStarPathfinder#COST_LIMIT};
+ * соседство - восьмисвязное, как и у шагов поиска. Если начало и финиш лежат
+ * в разных областях, пути между ними нет, и поиск можно не запускать.
+ * <p>
+ * Разметка строится при первом запросе параллельно: карта делится на полосы строк,
+ * каждая полоса размечается системой непересекающихся множеств в своем потоке,
+ * затем множества на границах полос объединяются, и каждая ячейка получает номер
+ * своей области. Дальше индекс обновляется при каждом изменении карты и больше
+ * не перестраивается целиком:
+ * <ul>
+ * <li>ячейка, ставшая проходимой, объединяет области соседей: ячейкам меньших
+ * областей присваивается номер самой большой;</li>
+ * <li>ячейка, ставшая непроходимой, не может разделить область, если ее проходимые
+ * соседи связаны друг с другом в кольце вокруг нее, - это проверяется за O(1)
+ * и так бывает почти всегда. Иначе заново размечается только ее область.</li>
+ * </ul>
+ * Запросы не берут блокировку: они читают номера оптимистично ({@link StampedLock})
+ * и повторяют чтение под блокировкой, только если в это время карта изменялась.
+ * Объект создается методом {@link Map2D#getConnectivity()}; все методы потокобезопасны.
+ **/
+public class ConnectivityIndex implements MapChangeListener
+{
+    /** Наименьшее значение непроходимой ячейки. **/
+    static final int BLOCKED_CELL_VALUE = (int) AStarPathfinder.COST_LIMIT - 1;
+
+    /** Метка непроходимой ячейки. **/
+    private static final int NO_COMPONENT = -1;
+
+    /** Количество строк в полосе при параллельной разметке. **/
+    private static final int STRIP_HEIGHT = 64;
+
+    /** Смещения восьми соседей ячейки по оси X в порядке обхода кольца вокруг нее. **/
+    private static final int[] RING_DX = { -1, 0, 1, 1, 1, 0, -1, -1 };
+
+    /** Смещения восьми соседей ячейки по оси Y в порядке обхода кольца вокруг нее. **/
+    private static final int[] RING_DY = { -1, -1, -1, 0, 1, 1, 1, 0 };
+
+    /**
+     * Для каждой маски проходимых соседей (бит i - сосед i кольца) - true,
+     * если эти соседи связаны друг с другом, не проходя через центральную ячейку.
+     **/
+    private static final boolean[] RING_CONNECTED = ringConnectivity();
+
+    /** Хранилище ячеек карты. **/
+    private final CellStorage cells;
+
+    /** Ширина карты. **/
+    private final int width;
+
+    /** Высота карты. **/
+    private final int height;
+
+    /** Номер области каждой ячейки или {@link #NO_COMPONENT} для непроходимой. **/
+    private final int[] labels;
+
+    /** Количество ячеек в каждой области по ее номеру. **/
+    private int[] sizes;
+
+    /** Количество выданных номеров областей. **/
+    private int numLabels;
+
+    /** Очередь обхода при перенумерации области. **/
+    private int[] queue = new int[64];
+
+    /** Блокировка: изменения берут ее на запись, запросы читают оптимистично. **/
+    private final StampedLock lock = new StampedLock();
+
+    /** true, когда разметка построена. **/
+    private volatile boolean built;
+
+
+    /** Создает индекс для карты и подписывается на ее изменения. **/
+    ConnectivityIndex(Map2D map)
+    {
+        this.cells = map.getStorage();
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.labels = new int[Math.multiplyExact(width, height)];
+        map.addChangeListener(this);
+    }
+
+    /** Возвращает true, если в ячейку с таким значением можно шагнуть. **/
+    static boolean isPassable(int value)
+    {
+        return value < BLOCKED_CELL_VALUE;
+    }
+
+    /**
+     * Возвращает true, если разметка уже построена и запросы к индексу
+     * выполняются за O(1), без просмотра всей карты.
+     **/
+    public boolean isBuilt()
+    {
+        return built;
+    }
+
+    /**
+     * Возвращает false, если пути между указанными местоположениями точно нет.
+     * Стоимость начальной ячейки не учитывается, поэтому начало может быть
+     * непроходимым; тогда проверяются области его соседей. Результат true
+     * не гарантирует, что путь будет найден: его стоимость все еще может
+     * превысить {@link AStarPathfinder#COST_LIMIT}. Для местоположений вне карты
+     * возвращается true.
+     **/
+    public boolean isReachable(Location startLoc, Location finishLoc)
+    {
+        int sx = startLoc.xCoord;
+        int sy = startLoc.yCoord;
+        int fx = finishLoc.xCoord;
+        int fy = finishLoc.yCoord;
+
+        if (!inside(sx, sy) || !inside(fx, fy) || (sx == fx && sy == fy))
+            return true;
+
+        ensureBuilt();
+
+        long stamp = lock.tryOptimisticRead();
+        boolean reachable = sameComponent(sx, sy, fx, fy);
+        if (lock.validate(stamp))
+            return reachable;
+
+        stamp = lock.readLock();
+        try
+        {
+            return sameComponent(sx, sy, fx, fy);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Возвращает номер связной области ячейки или -1, если ячейка непроходима.
+     * Номера действительны только до следующего изменения карты.
+     **/
+    public int getComponent(int x, int y)
+    {
+        if (!inside(x, y))
+            throw new IllegalArgumentException("coordinates out of range: " + x + ", " + y);
+
+        ensureBuilt();
+
+        long stamp = lock.tryOptimisticRead();
+        int label = labels[y * width + x];
+        if (lock.validate(stamp))
+            return label;
+
+        stamp = lock.readLock();
+        try
+        {
+            return labels[y * width + x];
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void cellChanged(Map2D map, int x, int y, int oldValue, int newValue)
+    {
+        if (isPassable(oldValue) == isPassable(newValue))
+            return;
+
+        long stamp = lock.writeLock();
+        try
+        {
+            // Разметка, которая еще не построена или построена уже после изменения,
+            // его учитывает.
+            if (!built)
+                return;
+
+            int cell = y * width + x;
+            boolean passable = isPassable(newValue);
+            if ((labels[cell] != NO_COMPONENT) == passable)
+                return;
+
+            if (passable)
+                join(cell, x, y);
+            else
+                detach(cell, x, y);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Возвращает true, если финиш лежит в одной области с началом
+     * или, если начало непроходимо, с одним из его соседей.
+     **/
+    private boolean sameComponent(int sx, int sy, int fx, int fy)
+    {
+        int target = labels[fy * width + fx];
+        if (target == NO_COMPONENT)
+            return false;
+
+        int start = labels[sy * width + sx];
+        if (start != NO_COMPONENT)
+            return start == target;
+
+        for (int i = 0; i < 8; i++)
+        {
+            int nx = sx + GridPathfinder.NEIGHBOUR_DX[i];
+            int ny = sy + GridPathfinder.NEIGHBOUR_DY[i];
+            if (inside(nx, ny) && labels[ny * width + nx] == target)
+                return true;
+        }
+        return false;
+    }
+
+    /** Строит разметку, если она еще не построена. **/
+    private void ensureBuilt()
+    {
+        if (built)
+            return;
+
+        long stamp = lock.writeLock();
+        try
+        {
+            if (!built)
+            {
+                build();
+                built = true;
+            }
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Ячейка стала проходимой: объединяет области ее соседей. **/
+    private void join(int cell, int x, int y)
+    {
+        // Самая большая из соседних областей сохраняет свой номер.
+        int largest = NO_COMPONENT;
+        for (int i = 0; i < 8; i++)
+        {
+            int label = neighbourLabel(x, y, i);
+            if (label != NO_COMPONENT && (largest == NO_COMPONENT || sizes[label] > sizes[largest]))
+                largest = label;
+        }
+
+        if (largest == NO_COMPONENT)
+            largest = newLabel();
+
+        for (int i = 0; i < 8; i++)
+        {
+            int label = neighbourLabel(x, y, i);
+            if (label != NO_COMPONENT && label != largest)
+            {
+                int neighbour = (y + RING_DY[i]) * width + x + RING_DX[i];
+                sizes[largest] += relabel(neighbour, largest);
+                sizes[label] = 0;
+            }
+        }
+
+        labels[cell] = largest;
+        sizes[largest]++;
+    }
+
+    /**
+     * Ячейка стала непроходимой. Если ее соседи связаны в кольце вокруг нее,
+     * область не разделилась; иначе каждая часть области получает новый номер.
+     **/
+    private void detach(int cell, int x, int y)
+    {
+        int label = labels[cell];
+        labels[cell] = NO_COMPONENT;
+        sizes[label]--;
+
+        int mask = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            if (neighbourLabel(x, y, i) != NO_COMPONENT)
+                mask |= 1 << i;
+        }
+
+        if (RING_CONNECTED[mask])
+            return;
+
+        sizes[label] = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            if (neighbourLabel(x, y, i) == label)
+            {
+                int part = newLabel();
+                sizes[part] = relabel((y + RING_DY[i]) * width + x + RING_DX[i], part);
+            }
+        }
+    }
+
+    /** Возвращает номер области соседа i кольца вокруг ячейки (x, y). **/
+    private int neighbourLabel(int x, int y, int i)
+    {
+        int nx = x + RING_DX[i];
+        int ny = y + RING_DY[i];
+        return inside(nx, ny) ? labels[ny * width + nx] : NO_COMPONENT;
+    }
+
+    /** Выдает новый номер области. **/
+    private int newLabel()
+    {
+        if (numLabels == sizes.length)
+            sizes = Arrays.copyOf(sizes, numLabels * 2);
+        sizes[numLabels] = 0;
+        return numLabels++;
+    }
+
+    /**
+     * Присваивает номер <code>to</code> всем ячейкам области, в которой лежит
+     * указанная ячейка, и возвращает их количество.
+     **/
+    private int relabel(int first, int to)
+    {
+        int from = labels[first];
+        labels[first] = to;
+        queue[0] = first;
+        int head = 0;
+        int tail = 1;
+        int count = 1;
+
+        while (head < tail)
+        {
+            int cell = queue[head++];
+            int x = cell % width;
+            int y = cell / width;
+            for (int i = 0; i < 8; i++)
+            {
+                int nx = x + RING_DX[i];
+                int ny = y + RING_DY[i];
+                if (!inside(nx, ny) || labels[ny * width + nx] != from)
+                    continue;
+
+                labels[ny * width + nx] = to;
+                if (tail == queue.length)
+                {
+                    // Обработанную часть очереди можно отбросить.
+                    System.arraycopy(queue, head, queue, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                    if (tail == queue.length)
+                        queue = Arrays.copyOf(queue, queue.length * 2);
+                }
+                queue[tail++] = ny * width + nx;
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /** Строит разметку заново по текущим ячейкам карты. **/
+    private void build()
+    {
+        int[] parent = labels;
+        int strips = (height + STRIP_HEIGHT - 1) / STRIP_HEIGHT;
+
+        // Полосы размечаются независимо: объединения внутри полосы
+        // затрагивают только ее собственные ячейки.
+        IntStream.range(0, strips).parallel().forEach(strip ->
+        {
+            int y0 = strip * STRIP_HEIGHT;
+            int y1 = Math.min(height, y0 + STRIP_HEIGHT);
+            for (int y = y0; y < y1; y++)
+            {
+                for (int x = 0; x < width; x++)
+                {
+                    int cell = y * width + x;
+                    if (!isPassable(cells.get(cell)))
+                    {
+                        parent[cell] = NO_COMPONENT;
+                        continue;
+                    }
+
+                    parent[cell] = cell;
+                    if (x > 0)
+                        union(parent, cell, cell - 1);
+                    if (y > y0)
+                    {
+                        if (x > 0)
+                            union(parent, cell, cell - width - 1);
+                        union(parent, cell, cell - width);
+                        if (x + 1 < width)
+                            union(parent, cell, cell - width + 1);
+                    }
+                }
+            }
+        });
+
+        // Объединяем области через границы полос.
+        for (int y = STRIP_HEIGHT; y < height; y += STRIP_HEIGHT)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                int cell = y * width + x;
+                if (parent[cell] == NO_COMPONENT)
+                    continue;
+
+                if (x > 0)
+                    union(parent, cell, cell - width - 1);
+                union(parent, cell, cell - width);
+                if (x + 1 < width)
+                    union(parent, cell, cell - width + 1);
+            }
+        }
+
+        // Каждая ячейка указывает прямо на корень. Корни уже не меняются,
+        // а промежуточные ссылки, которые видит другой поток, тоже ведут к корню.
+        IntStream.range(0, parent.length).parallel().forEach(cell ->
+        {
+            int root = parent[cell];
+            if (root == NO_COMPONENT)
+                return;
+            while (parent[root] != root)
+                root = parent[root];
+            parent[cell] = root;
+        });
+
+        // Корень множества - его наименьшая ячейка, поэтому при просмотре по порядку
+        // он встречается раньше остальных ячеек множества и уже получил номер области.
+        numLabels = 0;
+        for (int cell = 0; cell < parent.length; cell++)
+        {
+            int root = parent[cell];
+            if (root == cell)
+                labels[cell] = numLabels++;
+            else if (root != NO_COMPONENT)
+                labels[cell] = labels[root];
+        }
+
+        sizes = new int[Math.max(16, numLabels)];
+        for (int label : labels)
+        {
+            if (label != NO_COMPONENT)
+                sizes[label]++;
+        }
+    }
+
+    /** Объединяет множества двух ячеек, если обе проходимы. Корнем становится меньший индекс. **/
+    private static void union(int[] parent, int a, int b)
+    {
+        if (parent[b] == NO_COMPONENT)
+            return;
+
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra < rb)
+            parent[rb] = ra;
+        else if (rb < ra)
+            parent[ra] = rb;
+    }
+
+    /** Возвращает корень множества проходимой ячейки, сокращая путь. **/
+    private static int find(int[] parent, int cell)
+    {
+        while (parent[cell] != cell)
+        {
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+
+    /** Возвращает true, если ячейка лежит на карте. **/
+    private boolean inside(int x, int y)
+    {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /** Строит таблицу {@link #RING_CONNECTED}. **/
+    private static boolean[] ringConnectivity()
+    {
+        boolean[] table = new boolean[256];
+        int[] parent = new int[8];
+        for (int mask = 0; mask < 256; mask++)
+        {
+            for (int i = 0; i < 8; i++)
+                parent[i] = i;
+
+            // Соседи кольца связаны, если они соседние клетки и оба проходимы.
+            for (int i = 0; i < 8; i++)
+            {
+                for (int j = i + 1; j < 8; j++)
+                {
+                    if ((mask & (1 << i)) != 0 && (mask & (1 << j)) != 0 &&
+                        Math.abs(RING_DX[i] - RING_DX[j]) <= 1 &&
+                        Math.abs(RING_DY[i] - RING_DY[j]) <= 1)
+                    {
+                        parent[find(parent, i)] = find(parent, j);
+                    }
+                }
+            }
+
+            int roots = 0;
+            for (int i = 0; i < 8; i++)
+            {
+                if ((mask & (1 << i)) != 0 && find(parent, i) == i)
+                    roots++;
+            }
+            table[mask] = roots <= 1;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,82 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+
+/**
+ * Хранилище ячеек вне кучи Java, в прямых буферах {@link ByteBuffer}.
+ * Такие карты не нагружают сборщик мусора, а их размер ограничен только
+ * доступной памятью. Один буфер не может быть больше 2 ГБ, поэтому
+ * ячейки разбиты на блоки по {@link #CHUNK_CELLS} штук.
+ * Блоками также могут быть отображенные в память участки файла (см. {@link MapFile}).
+ **/
+public class DirectCellStorage implements CellStorage
+{
+    /** Двоичный логарифм количества ячеек в одном блоке. **/
+    static final int CHUNK_SHIFT = 28;
+
+    /** Количество ячеек в одном блоке (1 ГБ памяти). **/
+    public static final int CHUNK_CELLS = 1 << CHUNK_SHIFT;
+
+    /** Маска для получения индекса ячейки внутри блока. **/
+    private static final long CHUNK_MASK = CHUNK_CELLS - 1;
+
+    /** Количество ячеек в хранилище. **/
+    private final long size;
+
+    /** Блоки ячеек. **/
+    private final IntBuffer[] chunks;
+
+
+    /** Создает хранилище для указанного количества ячеек, заполненное нулями. **/
+    public DirectCellStorage(long size)
+    {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be > 0; got " + size);
+
+        this.size = size;
+
+        int numChunks = (int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT);
+        chunks = new IntBuffer[numChunks];
+        for (int i = 0; i < numChunks; i++)
+        {
+            long cells = Math.min(CHUNK_CELLS, size - ((long) i << CHUNK_SHIFT));
+            chunks[i] = ByteBuffer.allocateDirect((int) cells * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+
+    /**
+     * Создает хранилище поверх уже существующих блоков. Все блоки, кроме последнего,
+     * должны содержать ровно {@link #CHUNK_CELLS} ячеек.
+     **/
+    DirectCellStorage(long size, IntBuffer[] chunks)
+    {
+        this.size = size;
+        this.chunks = chunks;
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+
+    @Override
+    public int get(long index)
+    {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    @Override
+    public void set(long index, int value)
+    {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    @Override
+    public boolean isOffHeap()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,546 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+
+/**
+ * Поле расстояний до одной цели: для каждой ячейки карты хранится стоимость пути
+ * от нее до цели и направление первого шага этого пути (поле потока).
+ * Поле вычисляется одним поиском Дейкстры от цели по всей карте, поэтому
+ * сотни агентов, идущих к одной цели, не ищут путь каждый по отдельности:
+ * следующий шаг любого агента читается из массива за время O(1).
+ * Стоимости совпадают со стоимостями путей {@link AStarPathfinder#computePath}.
+ * <p>
+ * На больших картах поле вычисляется параллельно волнами: все ячейки текущего
+ * фронта со стоимостью ниже текущего порога обрабатываются одновременно, а ячейки,
+ * стоимость которых уменьшилась, образуют следующий фронт. Порог растет полосами
+ * ширины {@link #WAVE_WIDTH}, поэтому на картах с весами ячейки редко
+ * обрабатываются повторно. Стоимости уменьшаются атомарно, поэтому результат
+ * не зависит от порядка обработки.
+ * <p>
+ * Объект подписывается на изменения ячеек карты; метод {@link #update()}
+ * пересчитывает только ячейки, на стоимость пути от которых повлияли изменения.
+ * Между вызовами {@link #update()} поле читают любые потоки, но обновлять его
+ * и изменять карту нужно в одном потоке. Когда поле больше не нужно,
+ * следует вызвать {@link #close()}, чтобы отписаться от изменений карты.
+ **/
+public class DistanceField implements AutoCloseable
+{
+    /** Направление ячейки, из которой шагать некуда: цели или недостижимой ячейки. **/
+    public static final int NO_DIRECTION = -1;
+
+    /** Количество ячеек, начиная с которого поле вычисляется параллельно. **/
+    private static final int PARALLEL_THRESHOLD = 1 << 18;
+
+    /** Ширина полосы стоимостей, которые обрабатываются в одной параллельной волне. **/
+    private static final float WAVE_WIDTH = 4;
+
+    /** Доступ к элементам массивов int с атомарными операциями. **/
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /** Карта, для которой вычислено поле. **/
+    private final Map2D map;
+
+    /** Хранилище ячеек карты. **/
+    private final CellStorage cells;
+
+    /** Ширина карты. **/
+    private final int width;
+
+    /** Высота карты. **/
+    private final int height;
+
+    /** Индекс ячейки цели. **/
+    private final int goal;
+
+    /** Стоимость пути от каждой ячейки до цели или бесконечность. **/
+    private final float[] dist;
+
+    /**
+     * Направление первого шага из каждой ячейки: номер соседа в порядке
+     * {@link GridPathfinder#NEIGHBOUR_DX} или {@link #NO_DIRECTION}.
+     **/
+    private final byte[] direction;
+
+    /** Ячейки, измененные с момента последнего обновления. **/
+    private int[] changed = new int[16];
+
+    /** Количество ячеек в массиве {@link #changed}. **/
+    private int numChanged;
+
+    /**
+     * Отметки измененных ячеек: 1 - ячейка в массиве {@link #changed},
+     * 2 - кроме того, ее стоимость хотя бы раз увеличилась.
+     **/
+    private final byte[] changeFlags;
+
+    /** Рабочие массивы обновления; создаются при первом обновлении. **/
+    private CellHeap heap;
+    private int[] affected;
+
+    /** Подписка на изменения ячеек карты. **/
+    private final MapChangeListener listener = new MapChangeListener()
+    {
+        public void cellChanged(Map2D m, int x, int y, int oldValue, int newValue)
+        {
+            int cell = y * width + x;
+            if (changeFlags[cell] == 0)
+            {
+                if (numChanged == changed.length)
+                    changed = Arrays.copyOf(changed, numChanged * 2);
+                changed[numChanged++] = cell;
+                changeFlags[cell] = 1;
+            }
+
+            if (newValue > oldValue)
+                changeFlags[cell] = 2;
+        }
+    };
+
+
+    private DistanceField(Map2D map, Location goalLoc)
+    {
+        if (!map.contains(goalLoc))
+            throw new IllegalArgumentException("goal must be inside the map");
+
+        this.map = map;
+        this.cells = map.getStorage();
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.goal = goalLoc.yCoord * width + goalLoc.xCoord;
+
+        int numCells = Math.multiplyExact(width, height);
+        dist = new float[numCells];
+        direction = new byte[numCells];
+        changeFlags = new byte[numCells];
+    }
+
+    /** Вычисляет поле расстояний до конечного местоположения карты. **/
+    public static DistanceField compute(Map2D map)
+    {
+        return compute(map, map.getFinish());
+    }
+
+    /**
+     * Вычисляет поле расстояний до указанного местоположения
+     * и подписывается на изменения ячеек карты.
+     **/
+    public static DistanceField compute(Map2D map, Location goalLoc)
+    {
+        DistanceField field = new DistanceField(map, goalLoc);
+        map.addChangeListener(field.listener);
+
+        if (field.dist.length >= PARALLEL_THRESHOLD)
+            field.computeParallel();
+        else
+            field.computeSequential();
+
+        return field;
+    }
+
+    /** Возвращает местоположение цели. **/
+    public Location getGoal()
+    {
+        return new Location(goal % width, goal / width);
+    }
+
+    /**
+     * Возвращает стоимость пути от ячейки (x, y) до цели или
+     * {@link Float#POSITIVE_INFINITY}, если цель из этой ячейки недостижима.
+     **/
+    public float getDistance(int x, int y)
+    {
+        return dist[index(x, y)];
+    }
+
+    /**
+     * Возвращает направление первого шага из ячейки (x, y) к цели: номер соседа
+     * в порядке «влево-вверх, вверх, вправо-вверх, влево, вправо, влево-вниз, вниз,
+     * вправо-вниз» или {@link #NO_DIRECTION}, если ячейка - цель или цель недостижима.
+     **/
+    public int getDirection(int x, int y)
+    {
+        return direction[index(x, y)];
+    }
+
+    /**
+     * Возвращает индекс <code>y * width + x</code> ячейки, в которую нужно шагнуть
+     * из ячейки (x, y), или -1, если ячейка - цель или цель недостижима.
+     **/
+    public int getNextCell(int x, int y)
+    {
+        int cell = index(x, y);
+        int dir = direction[cell];
+        return dir == NO_DIRECTION ? -1 : neighbour(cell, dir);
+    }
+
+    /**
+     * Возвращает местоположение, в которое нужно шагнуть из указанного,
+     * или <code>null</code>, если это цель или цель недостижима.
+     **/
+    public Location getNextStep(Location loc)
+    {
+        int next = getNextCell(loc.xCoord, loc.yCoord);
+        return next < 0 ? null : new Location(next % width, next / width);
+    }
+
+    /**
+     * Строит путь от указанного местоположения до цели, следуя по полю потока.
+     * Возвращает путевую точку последнего шага пути (в цели) или <code>null</code>,
+     * если цель недостижима; результат совместим с {@link AStarPathfinder#computePath}.
+     **/
+    public Waypoint getPath(Location from)
+    {
+        int cell = index(from.xCoord, from.yCoord);
+        if (dist[cell] == Float.POSITIVE_INFINITY)
+            return null;
+
+        Location goalLoc = getGoal();
+        Waypoint wp = null;
+        float prevCost = 0;
+        for (int steps = 0; ; steps++)
+        {
+            int x = cell % width;
+            int y = cell / width;
+            wp = new Waypoint(new Location(x, y), wp);
+            wp.setCosts(prevCost,
+                        AStarPathfinder.estimateTravelCost(x, y, goalLoc.xCoord, goalLoc.yCoord));
+
+            int dir = direction[cell];
+            if (dir == NO_DIRECTION || steps == dist.length)
+                break;
+            cell = neighbour(cell, dir);
+            prevCost += GridPathfinder.NEIGHBOUR_COST[dir] + cells.get(cell);
+        }
+
+        return cell == goal ? wp : null;
+    }
+
+    /**
+     * Учитывает все изменения ячеек карты с момента вычисления поля или прошлого
+     * обновления. Если стоимость ячейки увеличилась, заново вычисляются только
+     * стоимости ячеек, чей путь проходил через нее; если уменьшилась - уменьшение
+     * распространяется от нее поиском Дейкстры. Возвращает количество ячеек,
+     * стоимость которых была вычислена заново.
+     **/
+    public int update()
+    {
+        if (numChanged == 0)
+            return 0;
+
+        if (heap == null)
+        {
+            heap = new CellHeap(dist.length);
+            affected = new int[dist.length];
+        }
+
+        // Ячейки, чей путь входил в подорожавшую ячейку, теряют стоимость.
+        int numAffected = 0;
+        for (int i = 0; i < numChanged; i++)
+        {
+            int cell = changed[i];
+            if (changeFlags[cell] == 2)
+                numAffected = collectDescendants(cell, numAffected);
+        }
+
+        // Каждая такая ячейка получает лучшую стоимость через незатронутых соседей.
+        for (int i = 0; i < numAffected; i++)
+        {
+            int cell = affected[i];
+            relaxFromNeighbours(cell);
+            if (dist[cell] != Float.POSITIVE_INFINITY)
+                heap.insertOrUpdate(cell, dist[cell]);
+        }
+
+        // Через подешевевшие ячейки соседи могут получить более дешевый путь.
+        for (int i = 0; i < numChanged; i++)
+        {
+            int cell = changed[i];
+            changeFlags[cell] = 0;
+            if (dist[cell] != Float.POSITIVE_INFINITY)
+                heap.insertOrUpdate(cell, dist[cell]);
+        }
+        numChanged = 0;
+
+        int updated = numAffected;
+        while (!heap.isEmpty())
+            updated += relaxNeighbours(heap.poll(), heap);
+
+        return updated;
+    }
+
+    /** Отписывается от изменений ячеек карты. **/
+    @Override
+    public void close()
+    {
+        map.removeChangeListener(listener);
+    }
+
+    /** Вычисляет поле одним поиском Дейкстры от цели. **/
+    private void computeSequential()
+    {
+        Arrays.fill(dist, Float.POSITIVE_INFINITY);
+        Arrays.fill(direction, (byte) NO_DIRECTION);
+        dist[goal] = 0;
+
+        CellHeap open = new CellHeap(dist.length);
+        open.insertOrUpdate(goal, 0);
+        while (!open.isEmpty())
+            relaxNeighbours(open.poll(), open);
+    }
+
+    /**
+     * Вычисляет поле параллельными волнами. Стоимости хранятся как двоичные
+     * представления чисел <code>float</code>: у неотрицательных чисел они
+     * упорядочены так же, как сами числа, поэтому уменьшение стоимости -
+     * это атомарный минимум над <code>int</code>. Каждая ячейка попадает
+     * в следующий фронт не больше одного раза за волну.
+     **/
+    private void computeParallel()
+    {
+        int numCells = dist.length;
+        int[] bits = new int[numCells];
+        Arrays.fill(bits, Float.floatToIntBits(Float.POSITIVE_INFINITY));
+        bits[goal] = Float.floatToIntBits(0);
+        Arrays.fill(direction, (byte) NO_DIRECTION);
+
+        int[] queuedWave = new int[numCells];
+        int[][] frontier = { new int[numCells], new int[numCells] };
+        frontier[0][0] = goal;
+        int size = 1;
+        AtomicInteger nextSize = new AtomicInteger();
+        AtomicInteger processed = new AtomicInteger();
+        int[] minDeferred = new int[1];
+        float threshold = WAVE_WIDTH;
+
+        for (int wave = 1; size > 0; wave++)
+        {
+            int[] current = frontier[wave & 1 ^ 1];
+            int[] next = frontier[wave & 1];
+            int w = wave;
+            float limit = threshold;
+            nextSize.set(0);
+            processed.set(0);
+            minDeferred[0] = Float.floatToIntBits(Float.POSITIVE_INFINITY);
+
+            IntStream.range(0, size).parallel().forEach(i ->
+            {
+                int cell = current[i];
+                int baseBits = (int) INT_ARRAY.getVolatile(bits, cell);
+                float base = Float.intBitsToFloat(baseBits);
+
+                // Дальние ячейки откладываются до следующих волн: их стоимость
+                // еще может уменьшиться, и тогда работа пропала бы зря.
+                if (base > limit)
+                {
+                    lowerBits(minDeferred, 0, baseBits);
+                    if (markQueued(queuedWave, cell, w))
+                        next[nextSize.getAndIncrement()] = cell;
+                    return;
+                }
+                processed.incrementAndGet();
+
+                int value = cells.get(cell);
+                int x = cell % width;
+                int y = cell / width;
+
+                for (int dir = 0; dir < 8; dir++)
+                {
+                    int nx = x + GridPathfinder.NEIGHBOUR_DX[dir];
+                    int ny = y + GridPathfinder.NEIGHBOUR_DY[dir];
+                    if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+                        continue;
+
+                    float cost = base + (GridPathfinder.NEIGHBOUR_COST[dir] + value);
+                    if (cost >= AStarPathfinder.COST_LIMIT)
+                        continue;
+
+                    int nb = ny * width + nx;
+                    if (lowerBits(bits, nb, Float.floatToIntBits(cost)) &&
+                        markQueued(queuedWave, nb, w))
+                    {
+                        next[nextSize.getAndIncrement()] = nb;
+                    }
+                }
+            });
+
+            size = nextSize.get();
+            if (processed.get() == 0)
+                threshold = Float.intBitsToFloat(minDeferred[0]) + WAVE_WIDTH;
+        }
+
+        IntStream.range(0, numCells).parallel().forEach(cell ->
+            dist[cell] = Float.intBitsToFloat(bits[cell]));
+        IntStream.range(0, height).parallel().forEach(y ->
+        {
+            for (int cell = y * width, end = cell + width; cell < end; cell++)
+            {
+                if (dist[cell] != Float.POSITIVE_INFINITY)
+                    direction[cell] = (byte) bestDirection(cell);
+            }
+        });
+    }
+
+    /** Атомарно уменьшает значение элемента массива; возвращает true, если оно уменьшилось. **/
+    private static boolean lowerBits(int[] bits, int cell, int value)
+    {
+        int old = (int) INT_ARRAY.getVolatile(bits, cell);
+        while (value < old)
+        {
+            int witness = (int) INT_ARRAY.compareAndExchange(bits, cell, old, value);
+            if (witness == old)
+                return true;
+            old = witness;
+        }
+        return false;
+    }
+
+    /** Отмечает, что ячейка попала во фронт волны; возвращает false, если она уже там. **/
+    private static boolean markQueued(int[] queuedWave, int cell, int wave)
+    {
+        int old = (int) INT_ARRAY.getVolatile(queuedWave, cell);
+        while (old != wave)
+        {
+            int witness = (int) INT_ARRAY.compareAndExchange(queuedWave, cell, old, wave);
+            if (witness == old)
+                return true;
+            old = witness;
+        }
+        return false;
+    }
+
+    /**
+     * Пытается уменьшить стоимости соседей ячейки путем через нее; соседи,
+     * стоимость которых уменьшилась, помещаются в кучу. Возвращает их количество.
+     **/
+    private int relaxNeighbours(int cell, CellHeap open)
+    {
+        float base = dist[cell];
+        int value = cells.get(cell);
+        int x = cell % width;
+        int y = cell / width;
+        int updated = 0;
+
+        for (int dir = 0; dir < 8; dir++)
+        {
+            int nx = x + GridPathfinder.NEIGHBOUR_DX[dir];
+            int ny = y + GridPathfinder.NEIGHBOUR_DY[dir];
+            if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+                continue;
+
+            // Шаг из соседа ведет в эту ячейку, поэтому платится ее стоимость.
+            float cost = base + (GridPathfinder.NEIGHBOUR_COST[dir] + value);
+            int nb = ny * width + nx;
+            if (cost >= AStarPathfinder.COST_LIMIT || cost >= dist[nb])
+                continue;
+
+            dist[nb] = cost;
+            direction[nb] = (byte) (7 - dir);
+            open.insertOrUpdate(nb, cost);
+            updated++;
+        }
+
+        return updated;
+    }
+
+    /**
+     * Выбирает для ячейки соседа, через которого путь до цели дешевле всего.
+     * Возвращает номер направления или {@link #NO_DIRECTION}, если ячейка - цель
+     * или ни у одного соседа нет известной стоимости.
+     **/
+    private int bestDirection(int cell)
+    {
+        if (cell == goal)
+            return NO_DIRECTION;
+
+        int x = cell % width;
+        int y = cell / width;
+        float min = Float.POSITIVE_INFINITY;
+        int best = NO_DIRECTION;
+
+        for (int dir = 0; dir < 8; dir++)
+        {
+            int nx = x + GridPathfinder.NEIGHBOUR_DX[dir];
+            int ny = y + GridPathfinder.NEIGHBOUR_DY[dir];
+            if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+                continue;
+
+            int nb = ny * width + nx;
+            float cost = dist[nb] + (GridPathfinder.NEIGHBOUR_COST[dir] + cells.get(nb));
+            if (cost < min)
+            {
+                min = cost;
+                best = dir;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Делает недействительными стоимости всех ячеек, чей путь проходит через
+     * указанную (кроме нее самой), и добавляет их в массив {@link #affected}.
+     * Возвращает новое количество ячеек в нем.
+     **/
+    private int collectDescendants(int root, int numAffected)
+    {
+        int next = numAffected;
+        int cell = root;
+        while (true)
+        {
+            int x = cell % width;
+            int y = cell / width;
+            for (int dir = 0; dir < 8; dir++)
+            {
+                int nx = x + GridPathfinder.NEIGHBOUR_DX[dir];
+                int ny = y + GridPathfinder.NEIGHBOUR_DY[dir];
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+                    continue;
+
+                int nb = ny * width + nx;
+                if (direction[nb] == 7 - dir)
+                {
+                    direction[nb] = NO_DIRECTION;
+                    dist[nb] = Float.POSITIVE_INFINITY;
+                    affected[numAffected++] = nb;
+                }
+            }
+
+            if (next == numAffected)
+                return numAffected;
+            cell = affected[next++];
+        }
+    }
+
+    /** Вычисляет стоимость ячейки через соседей, стоимость которых известна. **/
+    private void relaxFromNeighbours(int cell)
+    {
+        int dir = bestDirection(cell);
+        if (dir == NO_DIRECTION)
+            return;
+
+        int nb = neighbour(cell, dir);
+        float cost = dist[nb] + (GridPathfinder.NEIGHBOUR_COST[dir] + cells.get(nb));
+        if (cost < AStarPathfinder.COST_LIMIT)
+        {
+            dist[cell] = cost;
+            direction[cell] = (byte) dir;
+        }
+    }
+
+    /** Возвращает индекс соседа ячейки в указанном направлении. **/
+    private int neighbour(int cell, int dir)
+    {
+        return cell + GridPathfinder.NEIGHBOUR_DY[dir] * width + GridPathfinder.NEIGHBOUR_DX[dir];
+    }
+
+    /** Проверяет координаты и возвращает индекс ячейки. **/
+    private int index(int x, int y)
+    {
+        if (!map.contains(x, y))
+            throw new IllegalArgumentException("(" + x + ", " + y + ") is outside the map");
+        return y * width + x;
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+
+/**
+ * Хранилище плиток карты в одном файле на локальном диске.
+ * Файл состоит из заголовка и плиток фиксированного размера:
+ * <pre>
+ *   int magic          'T' 'I' 'L' 'E'
+ *   int version        1
+ *   int width, height
+ *   int tileShift
+ *   int reserved[3]
+ *   int tiles[numTiles][tileSize * tileSize]
+ * </pre>
+ * Все числа записываются в порядке little-endian. Плитка с номером t лежит
+ * по смещению <code>HEADER_SIZE + t * tileBytes</code>, поэтому ее можно прочитать
+ * одним обращением к диску. Незаписанные плитки файл не занимают: он растет
+ * только до последней записанной плитки, а на большинстве файловых систем
+ * пропуски внутри файла тоже не занимают места, поэтому даже карта в сотни
+ * миллиардов ячеек, у которой изменена лишь малая часть, помещается на диск.
+ * Методы потокобезопасны.
+ **/
+public class FileTileStore implements TileStore
+{
+    /** Сигнатура файла плиток. **/
+    public static final int MAGIC = 0x454C4954;
+
+    /** Версия формата, которую понимает этот класс. **/
+    public static final int VERSION = 1;
+
+    /** Размер заголовка в байтах. **/
+    public static final int HEADER_SIZE = 8 * Integer.BYTES;
+
+    /** Наименьший и наибольший двоичный логарифм стороны плитки. **/
+    private static final int MIN_TILE_SHIFT = 2;
+    private static final int MAX_TILE_SHIFT = 12;
+
+    /** Файл плиток. **/
+    private final FileChannel channel;
+
+    private final int width;
+    private final int height;
+    private final int tileShift;
+
+    /** Буфер для чтения и записи одной плитки. **/
+    private final ByteBuffer buffer;
+
+
+    private FileTileStore(FileChannel channel, int width, int height, int tileShift)
+    {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.tileShift = tileShift;
+        this.buffer = ByteBuffer.allocateDirect(Integer.BYTES << (2 * tileShift))
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Создает новый файл плиток для карты указанного размера, заполненной нулями,
+     * заменяя существующий файл. Сторона плитки равна <code>1 &lt;&lt; tileShift</code>
+     * ячеек, например 256 при <code>tileShift</code> = 8.
+     **/
+    public static FileTileStore create(Path file, int width, int height, int tileShift)
+        throws IOException
+    {
+        if (width <= 0 || height <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "width and height must be positive values; got " + width +
+                    "x" + height);
+        }
+        if (tileShift < MIN_TILE_SHIFT || tileShift > MAX_TILE_SHIFT)
+        {
+            throw new IllegalArgumentException("tileShift must be in range [" +
+                    MIN_TILE_SHIFT + ", " + MAX_TILE_SHIFT + "]; got " + tileShift);
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(tileShift);
+            header.position(HEADER_SIZE).flip();
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+        }
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+
+        return new FileTileStore(channel, width, height, tileShift);
+    }
+
+    /** Открывает существующий файл плиток для чтения и записи. **/
+    public static FileTileStore open(Path file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining())
+            {
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException(file + ": truncated header");
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC)
+                throw new IOException(file + ": not a tile file");
+
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException(file + ": unsupported version " + version);
+
+            int width = header.getInt();
+            int height = header.getInt();
+            int tileShift = header.getInt();
+            if (width <= 0 || height <= 0)
+                throw new IOException(file + ": bad size " + width + "x" + height);
+            if (tileShift < MIN_TILE_SHIFT || tileShift > MAX_TILE_SHIFT)
+                throw new IOException(file + ": bad tile shift " + tileShift);
+
+            return new FileTileStore(channel, width, height, tileShift);
+        }
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public int getTileShift()
+    {
+        return tileShift;
+    }
+
+    @Override
+    public synchronized void readTile(long tile, int[] cells) throws IOException
+    {
+        long position = offset(tile);
+        buffer.clear();
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                break;
+        }
+
+        // Часть плитки за концом файла еще не записывалась и состоит из нулей.
+        int read = buffer.position() / Integer.BYTES;
+        buffer.flip();
+        buffer.asIntBuffer().get(cells, 0, read);
+        Arrays.fill(cells, read, cells.length, 0);
+    }
+
+    @Override
+    public synchronized void writeTile(long tile, int[] cells) throws IOException
+    {
+        long position = offset(tile);
+        buffer.clear();
+        buffer.asIntBuffer().put(cells);
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+
+    /** Записывает изменения файла на диск и закрывает его. **/
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (channel.isOpen())
+        {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    /** Возвращает смещение плитки в файле. **/
+    private long offset(long tile)
+    {
+        return HEADER_SIZE + (tile << (2 * tileShift)) * Integer.BYTES;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Альтернативная реализация алгоритма поиска пути A *, работающая с
+ * упакованными индексами ячеек <code>y * width + x</code>.
+ * Стоимости, предыдущие ячейки и закрытый набор хранятся в примитивных массивах
+ * {@link PathfinderContext}, а открытый набор - в {@link CellHeap},
+ * поэтому при раскрытии вершин не создается ни одного объекта.
+ * Цепочка {@link Waypoint} строится только для найденного пути,
+ * так что результат совместим с {@link AStarPathfinder#computePath}.
+ **/
+public class GridPathfinder
+{
+    /** Стоимость диагонального шага. **/
+    static final float DIAGONAL_COST = (float) Math.sqrt(2);
+
+    /** Смещения восьми соседей ячейки по оси X. **/
+    static final int[] NEIGHBOUR_DX = { -1, 0, 1, -1, 1, -1, 0, 1 };
+
+    /** Смещения восьми соседей ячейки по оси Y. **/
+    static final int[] NEIGHBOUR_DY = { -1, -1, -1, 0, 0, 1, 1, 1 };
+
+    /** Стоимость шага к каждому из восьми соседей. **/
+    static final float[] NEIGHBOUR_COST = {
+        DIAGONAL_COST, 1, DIAGONAL_COST, 1, 1, DIAGONAL_COST, 1, DIAGONAL_COST
+    };
+
+
+    /**
+     * Пытается вычислить путь между начальным и конечным местоположениями указанной карты.
+     * Возвращает путевую точку последнего шага пути или <code>null</code>, если путь не найден;
+     * найденный путь имеет ту же стоимость, что и путь {@link AStarPathfinder#computePath}.
+     * Контекст поиска берется из общего пула (см. {@link PathfinderContext#borrow}).
+     **/
+    public static Waypoint computePath(Map2D map)
+    {
+        PathfinderContext ctx = PathfinderContext.borrow(map);
+        try
+        {
+            return computePath(map, ctx);
+        }
+        finally
+        {
+            PathfinderContext.release(ctx);
+        }
+    }
+
+    /**
+     * То же самое, что и {@link #computePath(Map2D)}, но использует указанный контекст поиска,
+     * который должен подходить для карты.
+     **/
+    public static Waypoint computePath(Map2D map, PathfinderContext ctx)
+    {
+        return computePath(map, map.getStart(), map.getFinish(), ctx);
+    }
+
+    /**
+     * Пытается вычислить путь между указанными местоположениями, а не между
+     * начальным и конечным местоположениями карты. Карта при этом не изменяется,
+     * поэтому несколько потоков могут искать пути по одной карте одновременно,
+     * если у каждого из них свой контекст поиска.
+     **/
+    public static Waypoint computePath(Map2D map, Location startLoc, Location finishLoc,
+                                       PathfinderContext ctx)
+    {
+        return computePath(map, startLoc, finishLoc, ctx, Heuristic.EUCLIDEAN);
+    }
+
+    /**
+     * То же самое, что и {@link #computePath(Map2D, Location, Location, PathfinderContext)},
+     * но оценивает оставшуюся стоимость пути указанной оценкой.
+     **/
+    public static Waypoint computePath(Map2D map, Location startLoc, Location finishLoc,
+                                       PathfinderContext ctx, Heuristic heuristic)
+    {
+        if (heuristic == null)
+            throw new NullPointerException("heuristic cannot be null");
+
+        if (!ctx.fits(map))
+            throw new IllegalArgumentException("context does not fit the map");
+
+        if (!map.contains(startLoc) || !map.contains(finishLoc))
+            throw new IllegalArgumentException("start and finish must be inside the map");
+
+        // Если финиш отрезан от начала, это видно по разметке связных областей.
+        if (!map.isReachable(startLoc, finishLoc))
+            return null;
+
+        return search(map, startLoc, finishLoc, ctx, heuristic);
+    }
+
+    /**
+     * Основной цикл поиска. Аргументы не проверяются, и разметка связных областей
+     * не используется; это нужно для поиска отрезков пути, концы которых заведомо
+     * связаны (см. {@link HierarchicalPathfinder}).
+     **/
+    static Waypoint search(Map2D map, Location startLoc, Location finishLoc,
+                           PathfinderContext ctx, Heuristic heuristic)
+    {
+        ctx.reset();
+
+        int width = map.getWidth();
+        int height = map.getHeight();
+        CellStorage cells = map.getStorage();
+        CellHeap open = ctx.open;
+
+        // По битовой карте проходимость всех соседей проверяется сразу,
+        // а стоимость свободных ячеек равна нулю.
+        BitmapCellStorage bitmap = (cells instanceof BitmapCellStorage)
+                ? (BitmapCellStorage) cells : null;
+
+        int start = startLoc.yCoord * width + startLoc.xCoord;
+        int finish = finishLoc.yCoord * width + finishLoc.xCoord;
+        int finishX = finishLoc.xCoord;
+        int finishY = finishLoc.yCoord;
+
+        ctx.setPrevCost(start, 0, -1);
+        open.insertOrUpdate(start, heuristic.estimate(
+            startLoc.xCoord, startLoc.yCoord, finishX, finishY));
+
+        while (!open.isEmpty())
+        {
+            int best = open.poll();
+            if (best == finish)
+                return buildPath(map, finishLoc, finish, ctx.prevCost, ctx.previous);
+
+            ctx.close(best);
+
+            int x = best % width;
+            int y = best / width;
+            float bestCost = ctx.prevCost[best];
+            int neighbours = (bitmap != null) ? bitmap.passableNeighbours(x, y, width, height)
+                                              : BitmapCellStorage.ALL_NEIGHBOURS;
+
+            for (; neighbours != 0; neighbours &= neighbours - 1)
+            {
+                int i = Integer.numberOfTrailingZeros(neighbours);
+                int nx = x + NEIGHBOUR_DX[i];
+                int ny = y + NEIGHBOUR_DY[i];
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+                    continue;
+
+                int next = ny * width + nx;
+                if (ctx.isClosed(next))
+                    continue;
+
+                float cost = bestCost + NEIGHBOUR_COST[i];
+                if (bitmap == null)
+                    cost += cells.get(next);
+
+                // Слишком дорогие ячейки, как и в AStarPathfinder, отбрасываются.
+                if (cost >= AStarPathfinder.COST_LIMIT || cost >= ctx.getPrevCost(next))
+                    continue;
+
+                ctx.setPrevCost(next, cost, best);
+                open.insertOrUpdate(next, cost + heuristic.estimate(nx, ny, finishX, finishY));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Строит цепочку путевых точек от начала пути до указанной ячейки,
+     * следуя по массиву предыдущих ячеек. Предыдущая ячейка начала пути равна -1.
+     * Оставшаяся стоимость путевых точек оценивается до местоположения <code>finishLoc</code>.
+     * Возвращает путевую точку для указанной ячейки.
+     **/
+    static Waypoint buildPath(Map2D map, Location finishLoc, int last,
+                              float[] prevCost, int[] previous)
+    {
+        int width = map.getWidth();
+
+        int length = 0;
+        for (int cell = last; cell >= 0; cell = previous[cell])
+            length++;
+
+        int[] path = new int[length];
+        for (int cell = last, i = length - 1; cell >= 0; cell = previous[cell], i--)
+            path[i] = cell;
+
+        Waypoint wp = null;
+        for (int cell : path)
+        {
+            int x = cell % width;
+            int y = cell / width;
+            wp = new Waypoint(new Location(x, y), wp);
+            wp.setCosts(prevCost[cell], AStarPathfinder.estimateTravelCost(
+                x, y, finishLoc.xCoord, finishLoc.yCoord));
+        }
+
+        return wp;
+    }
+}
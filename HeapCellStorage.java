@@ -0,0 +1,41 @@
+/**
+ * Хранилище ячеек в одном плоском массиве <code>int[]</code> в куче Java.
+ * Соседние по оси X ячейки лежат в памяти рядом, поэтому просмотр соседей
+ * обращается к непрерывным участкам памяти.
+ **/
+public class HeapCellStorage implements CellStorage
+{
+    /** Значения ячеек в построчном порядке. **/
+    private final int[] cells;
+
+
+    /** Создает хранилище для указанного количества ячеек, заполненное нулями. **/
+    public HeapCellStorage(long size)
+    {
+        if (size <= 0 || size > Integer.MAX_VALUE - 8)
+        {
+            throw new IllegalArgumentException(
+                    "size must be in range (0, " + (Integer.MAX_VALUE - 8) + "]; got " + size);
+        }
+
+        cells = new int[(int) size];
+    }
+
+    @Override
+    public long size()
+    {
+        return cells.length;
+    }
+
+    @Override
+    public int get(long index)
+    {
+        return cells[(int) index];
+    }
+
+    @Override
+    public void set(long index, int value)
+    {
+        cells[(int) index] = value;
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * Этот интерфейс описывает оценку стоимости пути, которую использует поиск A *.
+ * Оценка должна быть допустимой (не больше стоимости кратчайшего пути) и
+ * согласованной (для каждого шага из ячейки A в ячейку B оценка для A не больше
+ * стоимости шага плюс оценка для B); тогда поиск находит кратчайший путь
+ * и не раскрывает вершины повторно.
+ **/
+public interface Heuristic
+{
+    /** Оценка по прямой, см. {@link AStarPathfinder#estimateTravelCost(int, int, int, int)}. **/
+    Heuristic EUCLIDEAN = AStarPathfinder::estimateTravelCost;
+
+    /** Оценивает стоимость пути из ячейки (x, y) в ячейку (destX, destY). **/
+    float estimate(int x, int y, int destX, int destY);
+}
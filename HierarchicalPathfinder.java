@@ -0,0 +1,417 @@
+import java.util.Arrays;
+
+
+/**
+ * Иерархический поиск пути (HPA*) по заранее построенному {@link ClusterGraph}.
+ * Начальное и конечное местоположения временно подключаются к входам своих
+ * кластеров, затем поиск A * идет по маленькому абстрактному графу, и каждый
+ * отрезок найденного абстрактного пути уточняется с помощью {@link GridPathfinder}.
+ * Рабочие массивы поиска по графу хранятся в каждом потоке, а {@link PathfinderContext}
+ * уточнения берется из общего пула; и те, и другие очищаются сменой поколения, поэтому время запроса
+ * зависит от длины пути, а не от площади карты или размера графа.
+ * <p>
+ * Найденный путь почти оптимален: он проходит через входы кластеров,
+ * поэтому может быть немного дороже пути {@link AStarPathfinder#computePath}.
+ **/
+public class HierarchicalPathfinder
+{
+    /**
+     * Пытается вычислить путь между начальным и конечным местоположениями карты.
+     * Граф должен быть построен для этой карты и ее текущих ячеек.
+     **/
+    public static Waypoint computePath(Map2D map, ClusterGraph graph)
+    {
+        return computePath(map, graph, map.getStart(), map.getFinish());
+    }
+
+    /**
+     * Пытается вычислить путь между указанными местоположениями. Возвращает путевую
+     * точку последнего шага пути или <code>null</code>, если путь не найден.
+     **/
+    public static Waypoint computePath(Map2D map, ClusterGraph graph,
+                                       Location startLoc, Location finishLoc)
+    {
+        if (!graph.fits(map))
+            throw new IllegalArgumentException("graph was built for a different map");
+
+        if (!map.contains(startLoc) || !map.contains(finishLoc))
+            throw new IllegalArgumentException("start and finish must be inside the map");
+
+        // Если финиш отрезан от начала, это видно по разметке связных областей.
+        if (!map.isReachable(startLoc, finishLoc))
+            return null;
+
+        int width = map.getWidth();
+        int startCluster = graph.clusterOf(startLoc.xCoord, startLoc.yCoord);
+        int finishCluster = graph.clusterOf(finishLoc.xCoord, finishLoc.yCoord);
+
+        // Внутри одного кластера абстрактный граф не нужен.
+        if (startCluster == finishCluster)
+        {
+            PathfinderContext ctx = PathfinderContext.borrow(map);
+            try
+            {
+                return GridPathfinder.search(map, startLoc, finishLoc, ctx, Heuristic.EUCLIDEAN);
+            }
+            finally
+            {
+                PathfinderContext.release(ctx);
+            }
+        }
+
+        int clusterSize = graph.getClusterSize();
+        int numNodes = graph.getNumNodes();
+        int startNode = numNodes;
+        int finishNode = numNodes + 1;
+
+        SearchState state = SearchState.forGraph(graph);
+        state.reset();
+        float[] dist = state.dist;
+        CellHeap clusterHeap = state.clusterHeap;
+
+        // Стоимости путей от начала до входов его кластера. Начальная ячейка
+        // может быть непроходимой и лежать на границе кластера, тогда путь может
+        // сразу шагнуть в соседний кластер; его входы тоже подключаются к началу.
+        int[] startClusters = new int[4];
+        int numStartClusters = 0;
+
+        ClusterGraph.searchCluster(map, clusterSize, startCluster,
+                startLoc.yCoord * width + startLoc.xCoord, false, dist, clusterHeap);
+        collectCosts(graph, map, startCluster, 0, dist, state.startCosts);
+        startClusters[numStartClusters++] = startCluster;
+
+        for (int i = 0; i < 8; i++)
+        {
+            int nx = startLoc.xCoord + GridPathfinder.NEIGHBOUR_DX[i];
+            int ny = startLoc.yCoord + GridPathfinder.NEIGHBOUR_DY[i];
+            if (!map.contains(nx, ny) || graph.clusterOf(nx, ny) == startCluster)
+                continue;
+
+            float step = GridPathfinder.NEIGHBOUR_COST[i] + (float) map.getCellValue(nx, ny);
+            if (step >= AStarPathfinder.COST_LIMIT)
+                continue;
+
+            int cluster = graph.clusterOf(nx, ny);
+            ClusterGraph.searchCluster(map, clusterSize, cluster, ny * width + nx,
+                                       false, dist, clusterHeap);
+            collectCosts(graph, map, cluster, step, dist, state.startCosts);
+
+            boolean known = false;
+            for (int j = 0; j < numStartClusters; j++)
+                known |= startClusters[j] == cluster;
+            if (!known)
+                startClusters[numStartClusters++] = cluster;
+        }
+
+        // Стоимости путей от входов кластера финиша до финиша.
+        ClusterGraph.searchCluster(map, clusterSize, finishCluster,
+                finishLoc.yCoord * width + finishLoc.xCoord, true, dist, clusterHeap);
+        collectCosts(graph, map, finishCluster, 0, dist, state.finishCosts);
+
+        // Поиск A * по абстрактному графу с двумя временными вершинами.
+        NodeCosts cost = state.cost;
+        int[] previous = state.previous;
+        CellHeap open = state.open;
+
+        cost.set(startNode, 0);
+        previous[startNode] = -1;
+        open.insertOrUpdate(startNode, 0);
+
+        while (!open.isEmpty())
+        {
+            int node = open.poll();
+            if (node == finishNode)
+                break;
+
+            state.close(node);
+
+            if (node == startNode)
+            {
+                for (int i = 0; i < numStartClusters; i++)
+                {
+                    for (int next : graph.getClusterNodes(startClusters[i]))
+                    {
+                        float startCost = state.startCosts.get(next);
+                        if (startCost < Float.POSITIVE_INFINITY)
+                            relax(node, next, startCost, state, graph, width, finishLoc);
+                    }
+                }
+                continue;
+            }
+
+            for (int e = graph.getEdgeStart(node); e < graph.getEdgeStart(node + 1); e++)
+                relax(node, graph.getEdgeTarget(e), graph.getEdgeCost(e), state, graph,
+                      width, finishLoc);
+
+            float finishCost = state.finishCosts.get(node);
+            if (finishCost < Float.POSITIVE_INFINITY)
+                relax(node, finishNode, finishCost, state, graph, width, finishLoc);
+        }
+        open.clear();
+
+        if (cost.get(finishNode) == Float.POSITIVE_INFINITY)
+            return null;
+
+        // Уточняем каждый отрезок абстрактного пути обычным поиском A *. Концы отрезков
+        // связаны путем по графу, поэтому разметка связных областей не нужна.
+        int length = 0;
+        for (int node = finishNode; node >= 0; node = previous[node])
+            length++;
+
+        Location[] corners = new Location[length];
+        for (int node = finishNode, i = length - 1; node >= 0; node = previous[node], i--)
+        {
+            if (node == startNode)
+                corners[i] = startLoc;
+            else if (node == finishNode)
+                corners[i] = finishLoc;
+            else
+                corners[i] = new Location(graph.getNodeCell(node) % width,
+                                          graph.getNodeCell(node) / width);
+        }
+
+        Waypoint path = new Waypoint(startLoc, null);
+        path.setCosts(0, AStarPathfinder.estimateTravelCost(startLoc.xCoord, startLoc.yCoord,
+                                                            finishLoc.xCoord, finishLoc.yCoord));
+
+        PathfinderContext ctx = PathfinderContext.borrow(map);
+        try
+        {
+            for (int i = 1; i < length; i++)
+            {
+                if (corners[i].equals(corners[i - 1]))
+                    continue;
+
+                Waypoint segment = GridPathfinder.search(map, corners[i - 1], corners[i], ctx,
+                                                         Heuristic.EUCLIDEAN);
+                if (segment == null)
+                    return null;
+
+                path = appendSegment(path, segment, finishLoc);
+            }
+        }
+        finally
+        {
+            PathfinderContext.release(ctx);
+        }
+
+        return path;
+    }
+
+    /** Обновляет стоимость вершины <code>to</code> через вершину <code>from</code>. **/
+    private static void relax(int from, int to, float edgeCost, SearchState state,
+                              ClusterGraph graph, int width, Location finishLoc)
+    {
+        if (state.isClosed(to))
+            return;
+
+        float newCost = state.cost.get(from) + edgeCost;
+        if (newCost >= AStarPathfinder.COST_LIMIT || newCost >= state.cost.get(to))
+            return;
+
+        state.cost.set(to, newCost);
+        state.previous[to] = from;
+
+        float estimate = 0;
+        if (to < graph.getNumNodes())
+        {
+            int cell = graph.getNodeCell(to);
+            estimate = AStarPathfinder.estimateTravelCost(cell % width, cell / width,
+                                                          finishLoc.xCoord, finishLoc.yCoord);
+        }
+        state.open.insertOrUpdate(to, newCost + estimate);
+    }
+
+    /**
+     * Добавляет к пути отрезок, найденный отдельным поиском. Первая путевая точка
+     * отрезка совпадает с последней точкой пути и пропускается.
+     **/
+    private static Waypoint appendSegment(Waypoint path, Waypoint segment, Location finishLoc)
+    {
+        int length = 0;
+        for (Waypoint wp = segment; wp.getPrevious() != null; wp = wp.getPrevious())
+            length++;
+
+        Waypoint[] steps = new Waypoint[length];
+        Waypoint wp = segment;
+        for (int i = length - 1; i >= 0; i--)
+        {
+            steps[i] = wp;
+            wp = wp.getPrevious();
+        }
+
+        float offset = path.getPreviousCost();
+        for (Waypoint step : steps)
+        {
+            path = new Waypoint(step.getLocation(), path);
+            path.setCosts(offset + step.getPreviousCost(),
+                          AStarPathfinder.estimateTravelCost(step.getLocation().xCoord,
+                                  step.getLocation().yCoord, finishLoc.xCoord, finishLoc.yCoord));
+        }
+
+        return path;
+    }
+
+    /**
+     * Переносит стоимости путей до вершин кластера из массива <code>dist</code>,
+     * заполненного {@link ClusterGraph#searchCluster}, в стоимости <code>costs</code>,
+     * индексированные вершинами графа, прибавляя к ним <code>base</code>.
+     * Уже известные меньшие стоимости сохраняются.
+     **/
+    private static void collectCosts(ClusterGraph graph, Map2D map, int cluster, float base,
+                                     float[] dist, NodeCosts costs)
+    {
+        for (int node : graph.getClusterNodes(cluster))
+        {
+            float cost = base + dist[localIndex(graph, map, cluster, graph.getNodeCell(node))];
+            if (cost < costs.get(node))
+                costs.set(node, cost);
+        }
+    }
+
+    /** Возвращает индекс ячейки карты внутри ее кластера. **/
+    private static int localIndex(ClusterGraph graph, Map2D map, int cluster, int cell)
+    {
+        int width = map.getWidth();
+        int clusterSize = graph.getClusterSize();
+        int perRow = (width + clusterSize - 1) / clusterSize;
+        int x0 = (cluster % perRow) * clusterSize;
+        int y0 = (cluster / perRow) * clusterSize;
+        return (cell / width - y0) * clusterSize + (cell % width - x0);
+    }
+
+
+    /**
+     * Стоимости, индексированные вершинами графа. Как и в {@link PathfinderContext},
+     * стоимость действительна, только если ее отметка совпадает с текущим поколением,
+     * поэтому {@link #reset()} не очищает массив.
+     **/
+    private static class NodeCosts
+    {
+        private final float[] values;
+        private final int[] stamps;
+        private int generation = 1;
+
+        NodeCosts(int size)
+        {
+            values = new float[size];
+            stamps = new int[size];
+        }
+
+        /** Возвращает стоимость вершины или бесконечность, если она не задана. **/
+        float get(int node)
+        {
+            return stamps[node] == generation ? values[node] : Float.POSITIVE_INFINITY;
+        }
+
+        /** Задает стоимость вершины. **/
+        void set(int node, float value)
+        {
+            stamps[node] = generation;
+            values[node] = value;
+        }
+
+        /** Делает все стоимости бесконечными. **/
+        void reset()
+        {
+            generation++;
+            if (generation == Integer.MAX_VALUE)
+            {
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
+        }
+    }
+
+    /**
+     * Рабочие массивы поиска по графу определенного размера, которые повторно
+     * используются между запросами одного потока. Они занимают память по размеру графа,
+     * а не карты, поэтому, в отличие от {@link PathfinderContext}, хранятся в каждом потоке.
+     **/
+    private static class SearchState
+    {
+        /** Состояние последнего запроса каждого потока. **/
+        private static final ThreadLocal<SearchState> CACHED = new ThreadLocal<>();
+
+        /** Количество вершин и сторона кластера графов, для которых подходит состояние. **/
+        private final int numNodes;
+        private final int clusterSize;
+
+        /** Стоимости путей внутри кластера, см. {@link ClusterGraph#searchCluster}. **/
+        final float[] dist;
+        final CellHeap clusterHeap;
+
+        /** Стоимости путей от начала до входов и от входов до финиша. **/
+        final NodeCosts startCosts;
+        final NodeCosts finishCosts;
+
+        /**
+         * Стоимость пути до каждой вершины, предыдущая вершина на нем
+         * и открытый набор; две последние вершины - начало и финиш.
+         **/
+        final NodeCosts cost;
+        final int[] previous;
+        final CellHeap open;
+
+        /** Отметки поколения, при котором вершина была закрыта. **/
+        private final int[] closed;
+
+        /** Номер текущего поколения закрытого набора; всегда больше нуля. **/
+        private int generation = 1;
+
+        private SearchState(int numNodes, int clusterSize)
+        {
+            this.numNodes = numNodes;
+            this.clusterSize = clusterSize;
+            dist = new float[clusterSize * clusterSize];
+            clusterHeap = new CellHeap(dist.length);
+            startCosts = new NodeCosts(numNodes);
+            finishCosts = new NodeCosts(numNodes);
+            cost = new NodeCosts(numNodes + 2);
+            previous = new int[numNodes + 2];
+            open = new CellHeap(numNodes + 2);
+            closed = new int[numNodes + 2];
+        }
+
+        /** Возвращает состояние текущего потока, подходящее для указанного графа. **/
+        static SearchState forGraph(ClusterGraph graph)
+        {
+            SearchState state = CACHED.get();
+            if (state == null || state.numNodes != graph.getNumNodes() ||
+                state.clusterSize != graph.getClusterSize())
+            {
+                state = new SearchState(graph.getNumNodes(), graph.getClusterSize());
+                CACHED.set(state);
+            }
+            return state;
+        }
+
+        /** Подготавливает состояние к новому запросу. **/
+        void reset()
+        {
+            open.clear();
+            startCosts.reset();
+            finishCosts.reset();
+            cost.reset();
+
+            generation++;
+            if (generation == Integer.MAX_VALUE)
+            {
+                Arrays.fill(closed, 0);
+                generation = 1;
+            }
+        }
+
+        /** Возвращает true, если вершина закрыта в текущем запросе. **/
+        boolean isClosed(int node)
+        {
+            return closed[node] == generation;
+        }
+
+        /** Помечает вершину как закрытую в текущем запросе. **/
+        void close(int node)
+        {
+            closed[node] = generation;
+        }
+    }
+}
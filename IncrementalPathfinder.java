@@ -0,0 +1,454 @@
+import java.util.Arrays;
+
+
+/**
+ * Поиск пути с инкрементным перепланированием по алгоритму D* Lite.
+ * Объект привязан к одной карте и одному конечному местоположению и сохраняет
+ * состояние поиска между запросами. Он подписывается на изменения ячеек карты;
+ * при следующем вызове {@link #computePath()} пересчитываются только те ячейки,
+ * на стоимость пути от которых повлияли изменения, поэтому время перепланирования
+ * зависит от размера изменений, а не от размера карты.
+ * <p>
+ * Поиск идет от финиша к началу: для каждой ячейки хранится стоимость пути
+ * от нее до финиша. Поэтому начальное местоположение можно менять
+ * (например, когда агент движется по пути) без потери состояния.
+ * Объект не является потокобезопасным; карту нужно изменять в том же потоке,
+ * в котором вызывается {@link #computePath()}. Когда объект больше не нужен,
+ * следует вызвать {@link #close()}, чтобы отписаться от изменений карты.
+ **/
+public class IncrementalPathfinder implements AutoCloseable
+{
+    /**
+     * Относительная погрешность, в пределах которой части ключей считаются равными
+     * при проверке окончания поиска, см. {@link #precedesStart(long)}.
+     **/
+    private static final float KEY_TOLERANCE = 1e-4f;
+
+    /** Карта, по которой идет поиск. **/
+    private final Map2D map;
+
+    /** Хранилище ячеек карты. **/
+    private final CellStorage cells;
+
+    /** Ширина карты. **/
+    private final int width;
+
+    /** Высота карты. **/
+    private final int height;
+
+    /** Индекс конечной ячейки. **/
+    private final int goal;
+
+    /** Индекс текущей начальной ячейки. **/
+    private int start;
+
+    /** Начальная ячейка, для которой было вычислено смещение {@link #keyModifier}. **/
+    private int lastStart;
+
+    /** Накопленное смещение ключей из-за перемещения начала (km в D* Lite). **/
+    private float keyModifier;
+
+    /** Стоимость пути от ячейки до финиша (g в D* Lite). **/
+    private final float[] cost;
+
+    /** Оценка стоимости на один шаг вперед (rhs в D* Lite). **/
+    private final float[] lookahead;
+
+    /** Очередь несогласованных ячеек. **/
+    private final KeyQueue queue;
+
+    /** Ячейки, измененные с момента последнего перепланирования. **/
+    private int[] changed = new int[16];
+
+    /** Количество ячеек в массиве {@link #changed}. **/
+    private int numChanged;
+
+    /** Отметки ячеек, уже находящихся в массиве {@link #changed}. **/
+    private final boolean[] isChanged;
+
+    /** Подписка на изменения ячеек карты. **/
+    private final MapChangeListener listener = new MapChangeListener()
+    {
+        public void cellChanged(Map2D m, int x, int y, int oldValue, int newValue)
+        {
+            int cell = y * width + x;
+            if (isChanged[cell])
+                return;
+
+            isChanged[cell] = true;
+            if (numChanged == changed.length)
+                changed = Arrays.copyOf(changed, numChanged * 2);
+            changed[numChanged++] = cell;
+        }
+    };
+
+
+    /**
+     * Создает объект поиска пути от указанного начала до указанного финиша
+     * и подписывается на изменения ячеек карты.
+     **/
+    public IncrementalPathfinder(Map2D map, Location startLoc, Location finishLoc)
+    {
+        if (!map.contains(startLoc) || !map.contains(finishLoc))
+            throw new IllegalArgumentException("start and finish must be inside the map");
+
+        this.map = map;
+        this.cells = map.getStorage();
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+
+        int numCells = Math.multiplyExact(width, height);
+        cost = new float[numCells];
+        lookahead = new float[numCells];
+        Arrays.fill(cost, Float.POSITIVE_INFINITY);
+        Arrays.fill(lookahead, Float.POSITIVE_INFINITY);
+        isChanged = new boolean[numCells];
+        queue = new KeyQueue(numCells);
+
+        goal = finishLoc.yCoord * width + finishLoc.xCoord;
+        start = startLoc.yCoord * width + startLoc.xCoord;
+        lastStart = start;
+
+        lookahead[goal] = 0;
+        queue.insertOrUpdate(goal, key(goal));
+
+        map.addChangeListener(listener);
+    }
+
+    /**
+     * Перемещает начало пути. Состояние поиска сохраняется,
+     * поэтому следующий вызов {@link #computePath()} обходится дешево.
+     **/
+    public void setStart(Location startLoc)
+    {
+        if (!map.contains(startLoc))
+            throw new IllegalArgumentException("start must be inside the map");
+
+        start = startLoc.yCoord * width + startLoc.xCoord;
+    }
+
+    /**
+     * Перепланирует путь с учетом всех изменений карты с прошлого вызова
+     * и возвращает путевую точку последнего шага пути или <code>null</code>,
+     * если путь не найден. Стоимость пути совпадает со стоимостью пути
+     * {@link AStarPathfinder#computePath}.
+     **/
+    public Waypoint computePath()
+    {
+        if (start != lastStart)
+        {
+            keyModifier += heuristic(lastStart, start);
+            lastStart = start;
+        }
+
+        // Изменение ячейки меняет стоимость шагов в нее из всех соседних ячеек.
+        for (int i = 0; i < numChanged; i++)
+        {
+            int cell = changed[i];
+            isChanged[cell] = false;
+
+            int x = cell % width;
+            int y = cell / width;
+            for (int j = 0; j < 8; j++)
+            {
+                int nx = x + GridPathfinder.NEIGHBOUR_DX[j];
+                int ny = y + GridPathfinder.NEIGHBOUR_DY[j];
+                if (nx >= 0 && nx < width && ny >= 0 && ny < height)
+                    updateCell(ny * width + nx);
+            }
+        }
+        numChanged = 0;
+
+        computeShortestPath();
+
+        if (cost[start] >= AStarPathfinder.COST_LIMIT)
+            return null;
+
+        return buildPath();
+    }
+
+    /** Отписывается от изменений ячеек карты. **/
+    @Override
+    public void close()
+    {
+        map.removeChangeListener(listener);
+    }
+
+    /** Основной цикл D* Lite: делает ячейки согласованными, пока путь от начала не станет известен. **/
+    private void computeShortestPath()
+    {
+        while (!queue.isEmpty() &&
+               (precedesStart(queue.peekKey()) || lookahead[start] != cost[start]))
+        {
+            int u = queue.peek();
+            long oldKey = queue.peekKey();
+            long newKey = key(u);
+
+            if (oldKey < newKey)
+            {
+                queue.insertOrUpdate(u, newKey);
+            }
+            else if (cost[u] > lookahead[u])
+            {
+                cost[u] = lookahead[u];
+                queue.remove(u);
+                updateNeighbours(u);
+            }
+            else
+            {
+                cost[u] = Float.POSITIVE_INFINITY;
+                updateCell(u);
+                updateNeighbours(u);
+            }
+        }
+    }
+
+    /** Пересчитывает оценки всех соседей ячейки. **/
+    private void updateNeighbours(int cell)
+    {
+        int x = cell % width;
+        int y = cell / width;
+        for (int i = 0; i < 8; i++)
+        {
+            int nx = x + GridPathfinder.NEIGHBOUR_DX[i];
+            int ny = y + GridPathfinder.NEIGHBOUR_DY[i];
+            if (nx >= 0 && nx < width && ny >= 0 && ny < height)
+                updateCell(ny * width + nx);
+        }
+    }
+
+    /** Пересчитывает оценку ячейки и ее место в очереди (UpdateVertex в D* Lite). **/
+    private void updateCell(int cell)
+    {
+        if (cell != goal)
+            lookahead[cell] = bestSuccessorCost(cell, null);
+
+        queue.remove(cell);
+        if (cost[cell] != lookahead[cell])
+            queue.insertOrUpdate(cell, key(cell));
+    }
+
+    /**
+     * Возвращает наименьшую стоимость пути до финиша через одного из соседей ячейки.
+     * Если массив <code>best</code> не равен <code>null</code>, в него записывается
+     * индекс лучшего соседа и стоимость шага к нему.
+     **/
+    private float bestSuccessorCost(int cell, float[] best)
+    {
+        int x = cell % width;
+        int y = cell / width;
+        float min = Float.POSITIVE_INFINITY;
+
+        for (int i = 0; i < 8; i++)
+        {
+            int nx = x + GridPathfinder.NEIGHBOUR_DX[i];
+            int ny = y + GridPathfinder.NEIGHBOUR_DY[i];
+            if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+                continue;
+
+            int next = ny * width + nx;
+            float step = stepCost(i, next);
+            float total = step + cost[next];
+            if (total < min)
+            {
+                min = total;
+                if (best != null)
+                {
+                    best[0] = next;
+                    best[1] = step;
+                }
+            }
+        }
+
+        return min;
+    }
+
+    /** Возвращает стоимость шага в соседнюю ячейку или бесконечность, если шаг невозможен. **/
+    private float stepCost(int direction, int next)
+    {
+        float step = GridPathfinder.NEIGHBOUR_COST[direction];
+        step += cells.get(next);
+        return step >= AStarPathfinder.COST_LIMIT ? Float.POSITIVE_INFINITY : step;
+    }
+
+    /**
+     * Вычисляет ключ ячейки в очереди. Ключ D* Lite - пара чисел, сравниваемых
+     * лексикографически; обе части неотрицательны, поэтому их двоичные представления
+     * можно упаковать в одно число типа long с тем же порядком.
+     **/
+    private long key(int cell)
+    {
+        float g = Math.min(cost[cell], lookahead[cell]);
+        float primary = g + heuristic(start, cell) + keyModifier;
+        return ((long) Float.floatToIntBits(primary) << 32) | Float.floatToIntBits(g);
+    }
+
+    /**
+     * Возвращает true, если ячейку с указанным ключом нужно обработать до того,
+     * как стоимость начала станет окончательной: ее ключ меньше ключа начала.
+     * На сетке с диагональными шагами первые части ключей ячеек кратчайшего пути
+     * равны, но при вычислении в float могут отличаться на единицу младшего разряда
+     * в любую сторону. Поэтому первые части, близкие с точностью до
+     * {@link #KEY_TOLERANCE}, считаются равными и сравниваются вторые части
+     * (стоимости), тоже с этой точностью. Лишняя обработка ячейки ничего не портит,
+     * а пропуск ячейки пути оставил бы стоимость начала заниженной.
+     **/
+    private boolean precedesStart(long topKey)
+    {
+        long startKey = key(start);
+        float topPrimary = Float.intBitsToFloat((int) (topKey >>> 32));
+        float startPrimary = Float.intBitsToFloat((int) (startKey >>> 32));
+
+        float tolerance = KEY_TOLERANCE * Math.max(1, startPrimary);
+        if (topPrimary < startPrimary - tolerance)
+            return true;
+        if (topPrimary > startPrimary + tolerance)
+            return false;
+
+        float topCost = Float.intBitsToFloat((int) topKey);
+        float startCost = Float.intBitsToFloat((int) startKey);
+        return topCost <= startCost + KEY_TOLERANCE * Math.max(1, startCost);
+    }
+
+    /** Оценивает стоимость пути между двумя ячейками. **/
+    private float heuristic(int from, int to)
+    {
+        return AStarPathfinder.estimateTravelCost(from % width, from / width,
+                                                  to % width, to / width);
+    }
+
+    /** Строит цепочку путевых точек, следуя от начала к соседу с наименьшей стоимостью. **/
+    private Waypoint buildPath()
+    {
+        Location finishLoc = new Location(goal % width, goal / width);
+        float[] best = new float[2];
+        float prevCost = 0;
+
+        int cell = start;
+        Waypoint wp = new Waypoint(new Location(cell % width, cell / width), null);
+        wp.setCosts(0, cost[cell]);
+
+        for (int steps = 0; cell != goal; steps++)
+        {
+            if (steps == cost.length || bestSuccessorCost(cell, best) == Float.POSITIVE_INFINITY)
+                return null;
+
+            cell = (int) best[0];
+            prevCost += best[1];
+            wp = new Waypoint(new Location(cell % width, cell / width), wp);
+            wp.setCosts(prevCost, cost[cell]);
+        }
+
+        return wp.getLocation().equals(finishLoc) ? wp : null;
+    }
+
+
+    /**
+     * Индексированная двоичная мин-куча ячеек с ключами типа long.
+     **/
+    private static class KeyQueue
+    {
+        private int[] cells = new int[64];
+        private long[] keys = new long[64];
+        private final int[] pos;
+        private int size;
+
+        KeyQueue(int capacity)
+        {
+            pos = new int[capacity];
+            Arrays.fill(pos, -1);
+        }
+
+        boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        int peek()
+        {
+            return cells[0];
+        }
+
+        long peekKey()
+        {
+            return keys[0];
+        }
+
+        void insertOrUpdate(int cell, long key)
+        {
+            int i = pos[cell];
+            if (i < 0)
+            {
+                if (size == cells.length)
+                {
+                    cells = Arrays.copyOf(cells, size * 2);
+                    keys = Arrays.copyOf(keys, size * 2);
+                }
+                i = size++;
+                cells[i] = cell;
+                pos[cell] = i;
+            }
+            keys[i] = key;
+            siftUp(i);
+            siftDown(pos[cell]);
+        }
+
+        void remove(int cell)
+        {
+            int i = pos[cell];
+            if (i < 0)
+                return;
+
+            pos[cell] = -1;
+            size--;
+            if (i != size)
+            {
+                cells[i] = cells[size];
+                keys[i] = keys[size];
+                pos[cells[i]] = i;
+                siftUp(i);
+                siftDown(pos[cells[i]]);
+            }
+        }
+
+        private void siftUp(int i)
+        {
+            while (i > 0)
+            {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= keys[i])
+                    break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i)
+        {
+            while (true)
+            {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && keys[child + 1] < keys[child])
+                    child++;
+                if (keys[i] <= keys[child])
+                    break;
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j)
+        {
+            int c = cells[i];
+            cells[i] = cells[j];
+            cells[j] = c;
+            long k = keys[i];
+            keys[i] = keys[j];
+            keys[j] = k;
+            pos[cells[i]] = i;
+            pos[cells[j]] = j;
+        }
+    }
+}
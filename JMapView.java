@@ -0,0 +1,361 @@
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import javax.swing.*;
+
+
+/**
+ * Этот класс представляет собой компонент Swing, который рисует всю карту {@link Map2D}
+ * целиком. Каждой ячейке соответствует один пиксель изображения {@link BufferedImage};
+ * при рисовании изображение масштабируется, поэтому даже карта 500x500 рисуется
+ * одним вызовом. Компонент подписан на изменения карты и при изменении ячейки
+ * обновляет только ее пиксель и перерисовывает только ее прямоугольник.
+ * <p>
+ * Левая кнопка мыши делает ячейки проходимыми или непроходимыми (так же, как
+ * раньше в сетке {@code JMapCell}), колесо мыши меняет масштаб вокруг курсора,
+ * а перетаскивание правой или средней кнопкой сдвигает карту.
+ * Карту следует изменять в потоке обработки событий Swing.
+ **/
+public class JMapView extends JComponent
+{
+    private static final long serialVersionUID = 1L;
+
+    /** Размер ячейки в пикселях по умолчанию. **/
+    private static final int DEFAULT_CELL_SIZE = 12;
+
+    /** Наибольший размер ячейки в пикселях. **/
+    private static final int MAX_CELL_SIZE = 64;
+
+    /** Размер ячейки, начиная с которого рисуется сетка. **/
+    private static final int GRID_CELL_SIZE = 6;
+
+    /** Наибольший предпочтительный размер компонента при открытии окна. **/
+    private static final Dimension MAX_PREFERRED_SIZE = new Dimension(1200, 800);
+
+    private static final int PASSABLE_COLOR = Color.WHITE.getRGB();
+    private static final int BLOCKED_COLOR = Color.RED.getRGB();
+    private static final int ENDPOINT_COLOR = Color.CYAN.getRGB();
+    private static final int PATH_COLOR = Color.GREEN.getRGB();
+    private static final Color GRID_COLOR = Color.GRAY;
+
+    /** Значение непроходимой ячейки, которое записывает редактор. **/
+    private static final int BLOCKED_CELL_VALUE = Integer.MAX_VALUE;
+
+    /** Отображаемая карта. **/
+    private final Map2D map;
+
+    /** Изображение карты: один пиксель на ячейку. **/
+    private final BufferedImage image;
+
+    /** Ячейки найденного пути. **/
+    private final BitSet pathCells = new BitSet();
+
+    /** Текущий размер ячейки в пикселях. **/
+    private int cellSize;
+
+    /** Смещение левого верхнего угла карты относительно компонента. **/
+    private int offsetX;
+    private int offsetY;
+
+    /** Подписка на изменения ячеек карты. **/
+    private final MapChangeListener changeHandler = new MapChangeListener()
+    {
+        public void cellChanged(Map2D m, int x, int y, int oldValue, int newValue)
+        {
+            updateCell(x, y);
+        }
+    };
+
+
+    /**
+     * Этот внутренний класс обрабатывает события мыши: редактирование ячеек левой
+     * кнопкой, сдвиг карты правой или средней кнопкой и масштаб колесом.
+     **/
+    private class MouseHandler extends MouseAdapter
+    {
+        /** Истина, если сейчас идет редактирование ячеек. **/
+        private boolean modifying;
+
+        /**
+         * Делаем ли мы клетки проходимыми или непроходимыми. Это зависит от исходного
+         * состояния ячейки, в которой была запущена операция.
+         **/
+        private boolean makePassable;
+
+        /** Последняя отредактированная ячейка. **/
+        private int lastX;
+        private int lastY;
+
+        /** Истина, если сейчас идет сдвиг карты. **/
+        private boolean panning;
+
+        /** Последнее положение мыши при сдвиге. **/
+        private Point panFrom;
+
+        public void mousePressed(MouseEvent e)
+        {
+            if (SwingUtilities.isLeftMouseButton(e))
+            {
+                Location loc = cellAt(e.getX(), e.getY());
+                if (loc == null)
+                    return;
+
+                modifying = true;
+                makePassable = !isPassable(loc.xCoord, loc.yCoord);
+                setPassable(loc.xCoord, loc.yCoord, makePassable);
+                lastX = loc.xCoord;
+                lastY = loc.yCoord;
+            }
+            else
+            {
+                panning = true;
+                panFrom = e.getPoint();
+            }
+        }
+
+        public void mouseReleased(MouseEvent e)
+        {
+            modifying = false;
+            panning = false;
+        }
+
+        public void mouseDragged(MouseEvent e)
+        {
+            if (panning)
+            {
+                offsetX += e.getX() - panFrom.x;
+                offsetY += e.getY() - panFrom.y;
+                panFrom = e.getPoint();
+                repaint();
+            }
+            else if (modifying)
+            {
+                int x = Math.floorDiv(e.getX() - offsetX, cellSize);
+                int y = Math.floorDiv(e.getY() - offsetY, cellSize);
+                editLine(lastX, lastY, x, y);
+                lastX = x;
+                lastY = y;
+            }
+        }
+
+        public void mouseWheelMoved(MouseWheelEvent e)
+        {
+            int newSize = e.getWheelRotation() < 0 ? cellSize * 2 : cellSize / 2;
+            zoomAt(e.getX(), e.getY(), newSize);
+        }
+
+        /**
+         * Редактирует все ячейки на отрезке между двумя ячейками, чтобы быстрое
+         * движение мыши не оставляло пропусков.
+         **/
+        private void editLine(int x0, int y0, int x1, int y1)
+        {
+            int dx = Math.abs(x1 - x0);
+            int dy = -Math.abs(y1 - y0);
+            int sx = x0 < x1 ? 1 : -1;
+            int sy = y0 < y1 ? 1 : -1;
+            int err = dx + dy;
+
+            while (true)
+            {
+                if (map.contains(x0, y0))
+                    setPassable(x0, y0, makePassable);
+                if (x0 == x1 && y0 == y1)
+                    break;
+
+                int e2 = 2 * err;
+                if (e2 >= dy)
+                {
+                    err += dy;
+                    x0 += sx;
+                }
+                if (e2 <= dx)
+                {
+                    err += dx;
+                    y0 += sy;
+                }
+            }
+        }
+    }
+
+
+    /** Создает компонент, отображающий указанную карту, и подписывается на ее изменения. **/
+    public JMapView(Map2D map)
+    {
+        if (map == null)
+            throw new NullPointerException("map cannot be null");
+
+        this.map = map;
+        int width = map.getWidth();
+        int height = map.getHeight();
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        // Начальный размер ячейки выбирается так, чтобы карта поместилась на экран.
+        cellSize = DEFAULT_CELL_SIZE;
+        while (cellSize > 1 && (width * cellSize > MAX_PREFERRED_SIZE.width ||
+                                height * cellSize > MAX_PREFERRED_SIZE.height))
+            cellSize--;
+
+        setPreferredSize(new Dimension(width * cellSize, height * cellSize));
+        setOpaque(true);
+        setBackground(Color.DARK_GRAY);
+
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+                image.setRGB(x, y, colorOf(x, y));
+        }
+
+        MouseHandler handler = new MouseHandler();
+        addMouseListener(handler);
+        addMouseMotionListener(handler);
+        addMouseWheelListener(handler);
+
+        map.addChangeListener(changeHandler);
+    }
+
+    /** Отписывается от изменений карты. Вызывается, когда компонент больше не нужен. **/
+    public void dispose()
+    {
+        map.removeChangeListener(changeHandler);
+    }
+
+    /** Возвращает отображаемую карту. **/
+    public Map2D getMap()
+    {
+        return map;
+    }
+
+    /**
+     * Показывает путь, заканчивающийся указанной путевой точкой,
+     * вместо предыдущего; <code>null</code> убирает путь.
+     **/
+    public void setPath(Waypoint path)
+    {
+        BitSet old = (BitSet) pathCells.clone();
+        pathCells.clear();
+
+        int width = map.getWidth();
+        for (Waypoint wp = path; wp != null; wp = wp.getPrevious())
+        {
+            Location loc = wp.getLocation();
+            pathCells.set(loc.yCoord * width + loc.xCoord);
+        }
+
+        // Перерисовываются только ячейки, которые вошли в путь или вышли из него.
+        old.xor(pathCells);
+        for (int cell = old.nextSetBit(0); cell >= 0; cell = old.nextSetBit(cell + 1))
+            updateCell(cell % width, cell / width);
+    }
+
+    /**
+     * Возвращает ячейку карты под указанной точкой компонента
+     * или <code>null</code>, если точка вне карты.
+     **/
+    public Location cellAt(int px, int py)
+    {
+        int x = Math.floorDiv(px - offsetX, cellSize);
+        int y = Math.floorDiv(py - offsetY, cellSize);
+        return map.contains(x, y) ? new Location(x, y) : null;
+    }
+
+    /** Возвращает текущий размер ячейки в пикселях. **/
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * Меняет размер ячейки так, чтобы ячейка под точкой (px, py) осталась на месте.
+     **/
+    public void zoomAt(int px, int py, int newCellSize)
+    {
+        newCellSize = Math.max(1, Math.min(MAX_CELL_SIZE, newCellSize));
+        if (newCellSize == cellSize)
+            return;
+
+        offsetX = px - (int) ((long) (px - offsetX) * newCellSize / cellSize);
+        offsetY = py - (int) ((long) (py - offsetY) * newCellSize / cellSize);
+        cellSize = newCellSize;
+        repaint();
+    }
+
+    /**
+     * Рисует видимую часть карты. Рисуются только ячейки, попадающие
+     * в область отсечения, то есть в перерисовываемые прямоугольники.
+     **/
+    protected void paintComponent(Graphics g)
+    {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        // Диапазон ячеек, попадающих в область отсечения.
+        int x0 = Math.max(0, Math.floorDiv(clip.x - offsetX, cellSize));
+        int y0 = Math.max(0, Math.floorDiv(clip.y - offsetY, cellSize));
+        int x1 = Math.min(map.getWidth(), Math.floorDiv(clip.x + clip.width - offsetX - 1, cellSize) + 1);
+        int y1 = Math.min(map.getHeight(), Math.floorDiv(clip.y + clip.height - offsetY - 1, cellSize) + 1);
+        if (x0 >= x1 || y0 >= y1)
+            return;
+
+        int sx = offsetX + x0 * cellSize;
+        int sy = offsetY + y0 * cellSize;
+        g.drawImage(image, sx, sy, offsetX + x1 * cellSize, offsetY + y1 * cellSize,
+                    x0, y0, x1, y1, null);
+
+        if (cellSize >= GRID_CELL_SIZE)
+        {
+            g.setColor(GRID_COLOR);
+            int right = offsetX + x1 * cellSize - 1;
+            int bottom = offsetY + y1 * cellSize - 1;
+            for (int x = x0 + 1; x <= x1; x++)
+                g.drawLine(offsetX + x * cellSize - 1, sy, offsetX + x * cellSize - 1, bottom);
+            for (int y = y0 + 1; y <= y1; y++)
+                g.drawLine(sx, offsetY + y * cellSize - 1, right, offsetY + y * cellSize - 1);
+        }
+    }
+
+    /** Обновляет пиксель ячейки и перерисовывает ее прямоугольник. **/
+    private void updateCell(int x, int y)
+    {
+        image.setRGB(x, y, colorOf(x, y));
+        repaint(offsetX + x * cellSize, offsetY + y * cellSize, cellSize, cellSize);
+    }
+
+    /** Возвращает цвет ячейки с учетом ее стоимости, начала, финиша и пути. **/
+    private int colorOf(int x, int y)
+    {
+        if (!isPassable(x, y))
+            return BLOCKED_COLOR;
+
+        if (isEndpoint(map.getStart(), x, y) || isEndpoint(map.getFinish(), x, y))
+            return ENDPOINT_COLOR;
+
+        if (pathCells.get(y * map.getWidth() + x))
+            return PATH_COLOR;
+
+        return PASSABLE_COLOR;
+    }
+
+    /** Возвращает true, если местоположение задано и совпадает с ячейкой (x, y). **/
+    private static boolean isEndpoint(Location loc, int x, int y)
+    {
+        return loc != null && loc.xCoord == x && loc.yCoord == y;
+    }
+
+    /** Возвращает true, если ячейка проходима. **/
+    private boolean isPassable(int x, int y)
+    {
+        return ConnectivityIndex.isPassable(map.getCellValue(x, y));
+    }
+
+    /** Делает ячейку проходимой или непроходимой. **/
+    private void setPassable(int x, int y, boolean passable)
+    {
+        map.setCellValue(x, y, passable ? 0 : BLOCKED_CELL_VALUE);
+    }
+}
@@ -0,0 +1,309 @@
+/**
+ * Реализация поиска Jump Point Search (JPS) для карт с одинаковой стоимостью
+ * проходимых ячеек, например для карт, которые строит {@link AStarApp}:
+ * каждая ячейка либо имеет стоимость 0, либо настолько дорога, что шаг в нее
+ * превышает {@link AStarPathfinder#COST_LIMIT}. На таких картах большинство
+ * путей симметричны, и JPS пропускает их, «перепрыгивая» по прямым и диагоналям
+ * до ячеек с вынужденными соседями. В открытый набор попадают только эти ячейки,
+ * поэтому операций с кучей на порядок меньше, чем в {@link GridPathfinder}.
+ * <p>
+ * Как и остальные реализации, поиск разрешает диагональные шаги между двумя
+ * непроходимыми ячейками. Если поиск встречает ячейку с промежуточной стоимостью,
+ * он прерывается и запрос решается обычным {@link GridPathfinder};
+ * в обоих случаях стоимость найденного пути одинакова.
+ **/
+public class JumpPointPathfinder
+{
+    /**
+     * Наименьшее значение ячейки, при котором любой шаг в нее
+     * превышает {@link AStarPathfinder#COST_LIMIT}.
+     **/
+    private static final int BLOCKED_CELL_VALUE = (int) AStarPathfinder.COST_LIMIT - 1;
+
+    /**
+     * Это исключение сообщает, что поиск встретил ячейку с промежуточной стоимостью.
+     * Оно создается один раз и не содержит стека вызовов.
+     **/
+    private static final RuntimeException WEIGHTED_CELL =
+            new RuntimeException("weighted cell", null, false, false) { };
+
+    /** Хранилище ячеек карты. **/
+    private final CellStorage cells;
+
+    /** Хранилище ячеек, если это битовая карта проходимости, иначе <code>null</code>. **/
+    private final BitmapCellStorage bitmap;
+
+    /** Ширина карты. **/
+    private final int width;
+
+    /** Высота карты. **/
+    private final int height;
+
+    /** Координата X конечного местоположения. **/
+    private final int finishX;
+
+    /** Координата Y конечного местоположения. **/
+    private final int finishY;
+
+
+    /** Создает объект поиска для одного запроса. **/
+    private JumpPointPathfinder(Map2D map, Location finishLoc)
+    {
+        this.cells = map.getStorage();
+        this.bitmap = (cells instanceof BitmapCellStorage) ? (BitmapCellStorage) cells : null;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.finishX = finishLoc.xCoord;
+        this.finishY = finishLoc.yCoord;
+    }
+
+    /**
+     * Пытается вычислить путь между начальным и конечным местоположениями указанной карты.
+     * Возвращает путевую точку последнего шага пути (путь содержит все ячейки,
+     * а не только точки прыжков) или <code>null</code>, если путь не найден.
+     **/
+    public static Waypoint computePath(Map2D map)
+    {
+        PathfinderContext ctx = PathfinderContext.borrow(map);
+        try
+        {
+            return computePath(map, map.getStart(), map.getFinish(), ctx);
+        }
+        finally
+        {
+            PathfinderContext.release(ctx);
+        }
+    }
+
+    /**
+     * Пытается вычислить путь между указанными местоположениями,
+     * используя указанный контекст поиска.
+     **/
+    public static Waypoint computePath(Map2D map, Location startLoc, Location finishLoc,
+                                       PathfinderContext ctx)
+    {
+        if (!ctx.fits(map))
+            throw new IllegalArgumentException("context does not fit the map");
+
+        if (!map.contains(startLoc) || !map.contains(finishLoc))
+            throw new IllegalArgumentException("start and finish must be inside the map");
+
+        // Если финиш отрезан от начала, это видно по разметке связных областей.
+        if (!map.isReachable(startLoc, finishLoc))
+            return null;
+
+        try
+        {
+            return new JumpPointPathfinder(map, finishLoc).search(startLoc, ctx);
+        }
+        catch (RuntimeException e)
+        {
+            if (e != WEIGHTED_CELL)
+                throw e;
+
+            return GridPathfinder.computePath(map, startLoc, finishLoc, ctx);
+        }
+    }
+
+    /** Основной цикл поиска. **/
+    private Waypoint search(Location startLoc, PathfinderContext ctx)
+    {
+        ctx.reset();
+        CellHeap open = ctx.open;
+
+        int start = startLoc.yCoord * width + startLoc.xCoord;
+        int finish = finishY * width + finishX;
+
+        ctx.setPrevCost(start, 0, -1);
+        open.insertOrUpdate(start, AStarPathfinder.estimateTravelCost(
+            startLoc.xCoord, startLoc.yCoord, finishX, finishY));
+
+        while (!open.isEmpty())
+        {
+            int best = open.poll();
+            if (best == finish)
+                return buildPath(ctx, finish);
+
+            ctx.close(best);
+
+            int x = best % width;
+            int y = best / width;
+            int parent = ctx.previous[best];
+
+            if (parent < 0)
+            {
+                // У начальной ячейки нет направления, поэтому проверяются все соседи.
+                for (int i = 0; i < 8; i++)
+                {
+                    tryJump(ctx, best, x, y, GridPathfinder.NEIGHBOUR_DX[i],
+                            GridPathfinder.NEIGHBOUR_DY[i]);
+                }
+                continue;
+            }
+
+            int dx = Integer.signum(x - parent % width);
+            int dy = Integer.signum(y - parent / width);
+
+            if (dx != 0 && dy != 0)
+            {
+                tryJump(ctx, best, x, y, 0, dy);
+                tryJump(ctx, best, x, y, dx, 0);
+                tryJump(ctx, best, x, y, dx, dy);
+                if (!isWalkable(x - dx, y))
+                    tryJump(ctx, best, x, y, -dx, dy);
+                if (!isWalkable(x, y - dy))
+                    tryJump(ctx, best, x, y, dx, -dy);
+            }
+            else if (dx != 0)
+            {
+                tryJump(ctx, best, x, y, dx, 0);
+                if (!isWalkable(x, y + 1))
+                    tryJump(ctx, best, x, y, dx, 1);
+                if (!isWalkable(x, y - 1))
+                    tryJump(ctx, best, x, y, dx, -1);
+            }
+            else
+            {
+                tryJump(ctx, best, x, y, 0, dy);
+                if (!isWalkable(x + 1, y))
+                    tryJump(ctx, best, x, y, 1, dy);
+                if (!isWalkable(x - 1, y))
+                    tryJump(ctx, best, x, y, -1, dy);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Прыгает из ячейки (x, y) в указанном направлении и, если найдена точка прыжка,
+     * добавляет или обновляет ее в открытом наборе.
+     **/
+    private void tryJump(PathfinderContext ctx, int from, int x, int y, int dx, int dy)
+    {
+        int jumpPoint = jump(x + dx, y + dy, dx, dy);
+        if (jumpPoint < 0 || ctx.isClosed(jumpPoint))
+            return;
+
+        int jx = jumpPoint % width;
+        int jy = jumpPoint / width;
+        int steps = Math.max(Math.abs(jx - x), Math.abs(jy - y));
+        float stepCost = (dx != 0 && dy != 0) ? GridPathfinder.DIAGONAL_COST : 1;
+
+        float cost = ctx.prevCost[from] + steps * stepCost;
+        if (cost >= AStarPathfinder.COST_LIMIT || cost >= ctx.getPrevCost(jumpPoint))
+            return;
+
+        ctx.setPrevCost(jumpPoint, cost, from);
+        ctx.open.insertOrUpdate(jumpPoint, cost +
+            AStarPathfinder.estimateTravelCost(jx, jy, finishX, finishY));
+    }
+
+    /**
+     * Двигается из ячейки (x, y) в направлении (dx, dy), пока не встретит
+     * точку прыжка, и возвращает ее индекс или -1, если путь в этом
+     * направлении упирается в препятствие или край карты.
+     **/
+    private int jump(int x, int y, int dx, int dy)
+    {
+        while (true)
+        {
+            if (!isWalkable(x, y))
+                return -1;
+
+            if (x == finishX && y == finishY)
+                return y * width + x;
+
+            if (dx != 0 && dy != 0)
+            {
+                if ((isWalkable(x - dx, y + dy) && !isWalkable(x - dx, y)) ||
+                    (isWalkable(x + dx, y - dy) && !isWalkable(x, y - dy)))
+                    return y * width + x;
+
+                // При диагональном движении нужно проверить прямые направления.
+                if (jump(x + dx, y, dx, 0) >= 0 || jump(x, y + dy, 0, dy) >= 0)
+                    return y * width + x;
+            }
+            else if (dx != 0)
+            {
+                if ((isWalkable(x + dx, y + 1) && !isWalkable(x, y + 1)) ||
+                    (isWalkable(x + dx, y - 1) && !isWalkable(x, y - 1)))
+                    return y * width + x;
+            }
+            else
+            {
+                if ((isWalkable(x + 1, y + dy) && !isWalkable(x + 1, y)) ||
+                    (isWalkable(x - 1, y + dy) && !isWalkable(x - 1, y)))
+                    return y * width + x;
+            }
+
+            x += dx;
+            y += dy;
+        }
+    }
+
+    /**
+     * Возвращает true, если ячейка находится на карте и проходима.
+     * Если у ячейки промежуточная стоимость, поиск прерывается.
+     **/
+    private boolean isWalkable(int x, int y)
+    {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            return false;
+
+        // В битовой карте нет ячеек с промежуточной стоимостью.
+        if (bitmap != null)
+            return !bitmap.isBlocked((long) y * width + x);
+
+        int value = cells.get((long) y * width + x);
+        if (value == 0)
+            return true;
+        if (value >= BLOCKED_CELL_VALUE)
+            return false;
+
+        throw WEIGHTED_CELL;
+    }
+
+    /**
+     * Строит цепочку путевых точек, заполняя ячейки между точками прыжков,
+     * и возвращает путевую точку конечной ячейки.
+     **/
+    private Waypoint buildPath(PathfinderContext ctx, int last)
+    {
+        int count = 0;
+        for (int cell = last; cell >= 0; cell = ctx.previous[cell])
+            count++;
+
+        int[] jumpPoints = new int[count];
+        for (int cell = last, i = count - 1; cell >= 0; cell = ctx.previous[cell], i--)
+            jumpPoints[i] = cell;
+
+        int x = jumpPoints[0] % width;
+        int y = jumpPoints[0] / width;
+        Waypoint wp = new Waypoint(new Location(x, y), null);
+        wp.setCosts(0, AStarPathfinder.estimateTravelCost(x, y, finishX, finishY));
+
+        for (int i = 1; i < count; i++)
+        {
+            int tx = jumpPoints[i] % width;
+            int ty = jumpPoints[i] / width;
+            int dx = Integer.signum(tx - x);
+            int dy = Integer.signum(ty - y);
+            float stepCost = (dx != 0 && dy != 0) ? GridPathfinder.DIAGONAL_COST : 1;
+            float baseCost = ctx.prevCost[jumpPoints[i - 1]];
+
+            for (int step = 1; x != tx || y != ty; step++)
+            {
+                x += dx;
+                y += dy;
+                float cost = (x == tx && y == ty)
+                        ? ctx.prevCost[jumpPoints[i]] : baseCost + step * stepCost;
+
+                wp = new Waypoint(new Location(x, y), wp);
+                wp.setCosts(cost, AStarPathfinder.estimateTravelCost(x, y, finishX, finishY));
+            }
+        }
+
+        return wp;
+    }
+}
@@ -0,0 +1,248 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+
+/**
+ * Оценка стоимости пути по ориентирам (ALT: A *, ориентиры и неравенство треугольника).
+ * Для нескольких ячеек-ориентиров L заранее вычисляются точные стоимости путей
+ * от ориентира до каждой ячейки и от каждой ячейки до ориентира. По неравенству
+ * треугольника стоимость пути из v в t не меньше, чем d(L, t) - d(L, v)
+ * и d(v, L) - d(t, L); оценка - наибольшая из этих границ и расстояния по прямой.
+ * В отличие от расстояния по прямой, такая оценка учитывает стоимости ячеек
+ * и препятствия, поэтому на лабиринтах и картах с весами поиск раскрывает
+ * намного меньше вершин.
+ * <p>
+ * Ориентиры выбираются равномерно по краю карты, где они дают лучшие оценки.
+ * Таблицы строятся поиском Дейкстры по всей карте, по два поиска на ориентир,
+ * которые выполняются параллельно. Таблицы хранятся в массивах <code>float</code>,
+ * причем значения всех ориентиров для одной ячейки лежат рядом, так что оценка
+ * читает два коротких непрерывных участка памяти.
+ * <p>
+ * Таблицы соответствуют ячейкам карты на момент построения. Если после этого
+ * стоимость какой-либо ячейки уменьшилась, оценка может стать недопустимой,
+ * и объект нужно построить заново.
+ **/
+public class LandmarkHeuristic implements Heuristic
+{
+    /** Ширина карты. **/
+    private final int width;
+
+    /** Высота карты. **/
+    private final int height;
+
+    /** Индексы ячеек-ориентиров. **/
+    private final int[] landmarks;
+
+    /** Стоимость пути от ориентира i до ячейки c хранится в элементе <code>c * K + i</code>. **/
+    private final float[] fromLandmark;
+
+    /** Стоимость пути от ячейки c до ориентира i хранится в элементе <code>c * K + i</code>. **/
+    private final float[] toLandmark;
+
+
+    private LandmarkHeuristic(int width, int height, int[] landmarks,
+                              float[] fromLandmark, float[] toLandmark)
+    {
+        this.width = width;
+        this.height = height;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * Выбирает не больше указанного количества ориентиров на указанной карте
+     * и вычисляет для них таблицы стоимостей.
+     **/
+    public static LandmarkHeuristic build(Map2D map, int numLandmarks)
+    {
+        if (numLandmarks <= 0)
+            throw new IllegalArgumentException("numLandmarks must be positive; got " + numLandmarks);
+
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int numCells = Math.multiplyExact(width, height);
+
+        int[] landmarks = chooseLandmarks(map, numLandmarks);
+        int k = landmarks.length;
+        float[] fromLandmark = new float[Math.multiplyExact(numCells, k)];
+        float[] toLandmark = new float[fromLandmark.length];
+        Arrays.fill(fromLandmark, Float.POSITIVE_INFINITY);
+        Arrays.fill(toLandmark, Float.POSITIVE_INFINITY);
+
+        // Каждый поиск пишет только в свой столбец таблицы.
+        IntStream.range(0, 2 * k).parallel().forEach(task ->
+        {
+            int landmark = task % k;
+            boolean reverse = task >= k;
+            float[] dist = new float[numCells];
+            search(map, landmarks[landmark], reverse, dist);
+
+            float[] table = reverse ? toLandmark : fromLandmark;
+            for (int cell = 0; cell < numCells; cell++)
+                table[cell * k + landmark] = dist[cell];
+        });
+
+        return new LandmarkHeuristic(width, height, landmarks, fromLandmark, toLandmark);
+    }
+
+    /** Возвращает true, если таблицы построены для карты такого же размера. **/
+    public boolean fits(Map2D map)
+    {
+        return map.getWidth() == width && map.getHeight() == height;
+    }
+
+    /** Возвращает количество ориентиров. **/
+    public int getNumLandmarks()
+    {
+        return landmarks.length;
+    }
+
+    /** Возвращает местоположение ориентира с указанным номером. **/
+    public Location getLandmark(int i)
+    {
+        return new Location(landmarks[i] % width, landmarks[i] / width);
+    }
+
+    @Override
+    public float estimate(int x, int y, int destX, int destY)
+    {
+        float best = AStarPathfinder.estimateTravelCost(x, y, destX, destY);
+
+        int k = landmarks.length;
+        int curr = (y * width + x) * k;
+        int dest = (destY * width + destX) * k;
+        for (int i = 0; i < k; i++)
+        {
+            // Разность двух бесконечностей дает NaN, и такое сравнение ложно.
+            float bound = fromLandmark[dest + i] - fromLandmark[curr + i];
+            if (bound > best)
+                best = bound;
+
+            bound = toLandmark[curr + i] - toLandmark[dest + i];
+            if (bound > best)
+                best = bound;
+        }
+
+        return best;
+    }
+
+    /**
+     * Выбирает ориентиры: для каждой из равноудаленных точек на краю карты -
+     * первую проходимую ячейку на отрезке от этой точки к центру карты.
+     * Совпадающие ориентиры отбрасываются.
+     **/
+    private static int[] chooseLandmarks(Map2D map, int count)
+    {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        CellStorage cells = map.getStorage();
+        long perimeter = 2L * (width + height);
+        float centerX = (width - 1) / 2f;
+        float centerY = (height - 1) / 2f;
+        int samples = Math.max(width, height);
+
+        int[] landmarks = new int[count];
+        int found = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            // Точка на краю карты, если обходить его по часовой стрелке от левого верхнего угла.
+            long pos = perimeter * i / count;
+            int edgeX;
+            int edgeY;
+            if (pos < width)
+            {
+                edgeX = (int) pos;
+                edgeY = 0;
+            }
+            else if (pos < width + height)
+            {
+                edgeX = width - 1;
+                edgeY = (int) (pos - width);
+            }
+            else if (pos < 2L * width + height)
+            {
+                edgeX = (int) (2L * width + height - 1 - pos);
+                edgeY = height - 1;
+            }
+            else
+            {
+                edgeX = 0;
+                edgeY = (int) (perimeter - 1 - pos);
+            }
+
+            for (int s = 0; s <= samples; s++)
+            {
+                float t = s / (float) samples;
+                int x = Math.round(edgeX + (centerX - edgeX) * t);
+                int y = Math.round(edgeY + (centerY - edgeY) * t);
+                int cell = y * width + x;
+                if (!ConnectivityIndex.isPassable(cells.get(cell)))
+                    continue;
+
+                boolean known = false;
+                for (int j = 0; j < found; j++)
+                    known |= landmarks[j] == cell;
+                if (!known)
+                    landmarks[found++] = cell;
+                break;
+            }
+        }
+
+        // На полностью непроходимой карте ориентиром становится любая ячейка.
+        if (found == 0)
+            landmarks[found++] = 0;
+
+        return Arrays.copyOf(landmarks, found);
+    }
+
+    /**
+     * Поиск Дейкстры по всей карте от ячейки <code>source</code>. Если <code>reverse</code>
+     * равен true, вычисляются стоимости путей до <code>source</code>, а не от нее.
+     * Шаги, которые сами по себе не меньше {@link AStarPathfinder#COST_LIMIT},
+     * не делаются, а сумма стоимостей не ограничивается: иначе разности таблиц
+     * могли бы превысить настоящую стоимость пути.
+     **/
+    private static void search(Map2D map, int source, boolean reverse, float[] dist)
+    {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        CellStorage cells = map.getStorage();
+        CellHeap heap = new CellHeap(dist.length);
+
+        Arrays.fill(dist, Float.POSITIVE_INFINITY);
+        dist[source] = 0;
+        heap.insertOrUpdate(source, 0);
+
+        while (!heap.isEmpty())
+        {
+            int curr = heap.poll();
+            int x = curr % width;
+            int y = curr / width;
+            int currValue = cells.get(curr);
+
+            for (int i = 0; i < 8; i++)
+            {
+                int nx = x + GridPathfinder.NEIGHBOUR_DX[i];
+                int ny = y + GridPathfinder.NEIGHBOUR_DY[i];
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+                    continue;
+
+                // При обратном поиске шаг ведет из соседа в текущую ячейку.
+                int next = ny * width + nx;
+                float step = GridPathfinder.NEIGHBOUR_COST[i];
+                step += reverse ? currValue : cells.get(next);
+                if (step >= AStarPathfinder.COST_LIMIT)
+                    continue;
+
+                float cost = dist[curr] + step;
+                if (cost < dist[next])
+                {
+                    dist[next] = cost;
+                    heap.insertOrUpdate(next, cost);
+                }
+            }
+        }
+    }
+}
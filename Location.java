@@ -1,4 +1,3 @@
-import java.util.Objects;
 /**
  Этот класс представляет конкретное место на 2D-карте. Координаты - это целые числа.
  **/
@@ -29,8 +28,15 @@ public class Location
         return xCoord == location.xCoord && yCoord == location.yCoord;//Возвращаем значение сравнения полей классов
     }
 
+    /**
+     * Хеш-код перемешивает обе координаты. Хеш <code>Objects.hash(x, y)</code> равен
+     * <code>961 + 31 * x + y</code> и на области в тысячи ячеек дает одинаковые значения
+     * для десятков местоположений, из-за чего поиск по большим картам замедлялся
+     * в несколько раз из-за коллизий в {@link java.util.HashMap}.
+     **/
     @Override
     public int hashCode() {
-        return Objects.hash(xCoord, yCoord);
+        long key = ((long) xCoord << 32) | (yCoord & 0xFFFFFFFFL);
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
     }
 }
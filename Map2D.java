@@ -1,3 +1,6 @@
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
 /**
  * Этот класс представляет собой простую двухмерную карту, состоящую из квадратных ячеек.
  * Каждая ячейка определяет стоимость прохождения этой ячейки.
@@ -12,8 +15,9 @@ public class Map2D
 
     /**
      * Фактические данные карты, которые необходимы алгоритму поиска пути.
+     * Ячейки хранятся построчно, см. {@link CellStorage}.
      **/
-    private int[][] cells;
+    private CellStorage cells;
 
     /** Начальная точка для поиска пути A *. **/
     private Location start;
@@ -21,21 +25,55 @@ public class Map2D
     /** Конечное место для поиска пути A *. **/
     private Location finish;
 
+    /** Объекты, которые получают уведомления об изменении ячеек. **/
+    private final CopyOnWriteArrayList<MapChangeListener> listeners =
+            new CopyOnWriteArrayList<>();
+
+    /**
+     * Версия карты, которая увеличивается при каждом вызове {@link #setCellValue}.
+     * По ней кэши результатов поиска определяют, что карта изменилась.
+     **/
+    private volatile long version;
+
+    /** Разметка связных областей, создается при первом запросе. **/
+    private volatile ConnectivityIndex connectivity;
+
 
     /** Создает новую 2D-карту с указанной шириной и высотой.. **/
     public Map2D(int width, int height)
     {
-        if (width <= 0 || height <= 0)
+        this(width, height, new HeapCellStorage(checkSize(width, height)));
+    }
+
+    /**
+     * Создает новую 2D-карту с указанной шириной и высотой, ячейки которой
+     * хранятся указанным способом (см. {@link CellEncoding}).
+     **/
+    public Map2D(int width, int height, CellEncoding encoding)
+    {
+        this(width, height, encoding.create(checkSize(width, height)));
+    }
+
+    /**
+     * Создает новую 2D-карту с указанной шириной и высотой, ячейки которой
+     * хранятся в указанном хранилище (например, {@link DirectCellStorage} вне кучи).
+     * Размер хранилища должен быть равен <code>width * height</code>.
+     **/
+    public Map2D(int width, int height, CellStorage cells)
+    {
+        long size = checkSize(width, height);
+        if (cells == null)
+            throw new NullPointerException("cells cannot be null");
+
+        if (cells.size() != size)
         {
-            throw new IllegalArgumentException(
-                    "width and height must be positive values; got " + width +
-                    "x" + height);
+            throw new IllegalArgumentException("storage must hold " + size +
+                    " cells; got " + cells.size());
         }
         
         this.width = width;
         this.height = height;
-        
-        cells = new int[width][height];
+        this.cells = cells;
         
         // Составьте некоторые координаты начала и конца.
         start = new Location(0, height / 2);
@@ -43,6 +81,21 @@ public class Map2D
     }
 
 
+    /**
+     * Проверяет, что ширина и высота карты положительны, и возвращает количество ячеек.
+     **/
+    private static long checkSize(int width, int height)
+    {
+        if (width <= 0 || height <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "width and height must be positive values; got " + width +
+                    "x" + height);
+        }
+
+        return (long) width * height;
+    }
+
     /**
      * Этот вспомогательный метод проверяет указанные координаты, чтобы убедиться,
      * что они находятся в границах карты. Если координаты не находятся в пределах карты,
@@ -50,13 +103,13 @@ public class Map2D
      **/
     private void checkCoords(int x, int y)
     {
-        if (x < 0 || x > width)
+        if (x < 0 || x >= width)
         {
             throw new IllegalArgumentException("x must be in range [0, " + 
                     width + "), got " + x);
         }
         
-        if (y < 0 || y > height)
+        if (y < 0 || y >= height)
         {
             throw new IllegalArgumentException("y must be in range [0, " + 
                     height + "), got " + y);
@@ -94,7 +147,7 @@ public class Map2D
     public int getCellValue(int x, int y)
     {
         checkCoords(x, y);
-        return cells[x][y];
+        return cells.get((long) y * width + x);
     }
     
     /** Возвращает сохраненное значение стоимости для указанной ячейки. **/
@@ -107,7 +160,107 @@ public class Map2D
     public void setCellValue(int x, int y, int value)
     {
         checkCoords(x, y);
-        cells[x][y] = value;
+        long index = (long) y * width + x;
+
+        if (listeners.isEmpty())
+        {
+            cells.set(index, value);
+            version++;
+            return;
+        }
+
+        int oldValue = cells.get(index);
+        cells.set(index, value);
+        version++;
+        if (oldValue != value)
+        {
+            for (MapChangeListener listener : listeners)
+                listener.cellChanged(this, x, y, oldValue, value);
+        }
+    }
+
+    /** Возвращает текущую версию карты, см. {@link #version}. **/
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /** Регистрирует объект, который будет получать уведомления об изменении ячеек. **/
+    public void addChangeListener(MapChangeListener listener)
+    {
+        if (listener == null)
+            throw new NullPointerException("listener cannot be null");
+
+        listeners.add(listener);
+    }
+
+    /** Отменяет регистрацию объекта, получающего уведомления об изменении ячеек. **/
+    public void removeChangeListener(MapChangeListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Возвращает разметку связных областей проходимых ячеек карты.
+     * Она создается при первом вызове и затем обновляется при изменении ячеек
+     * через {@link #setCellValue}.
+     **/
+    public ConnectivityIndex getConnectivity()
+    {
+        // Запросы из разных потоков не должны ждать друг друга на общем мониторе,
+        // поэтому блокировка берется только при создании индекса.
+        ConnectivityIndex index = connectivity;
+        if (index == null)
+        {
+            synchronized (this)
+            {
+                index = connectivity;
+                if (index == null)
+                {
+                    index = new ConnectivityIndex(this);
+                    connectivity = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Возвращает true, если разметка связных областей уже построена и
+     * {@link #isReachable} ответит за O(1), не просматривая всю карту.
+     **/
+    public boolean isConnectivityBuilt()
+    {
+        ConnectivityIndex index = connectivity;
+        return index != null && index.isBuilt();
+    }
+
+    /**
+     * Возвращает false, если пути между указанными местоположениями точно нет
+     * (см. {@link ConnectivityIndex#isReachable}). Для карт, ячейки которых подгружаются
+     * по требованию ({@link CellStorage#isPaged()}), и для карт больше 2<sup>31</sup> ячеек
+     * разметка связных областей не строится, потому что ей пришлось бы прочитать
+     * всю карту, и метод всегда возвращает true. Так же и для компактных хранилищ
+     * ({@link CellStorage#isCompact()}): разметка заняла бы больше памяти, чем карта,
+     * и для хранилищ вне кучи ({@link CellStorage#isOffHeap()}), например карт,
+     * загруженных {@link MapFile#load}.
+     **/
+    public boolean isReachable(Location startLoc, Location finishLoc)
+    {
+        if (cells.isPaged() || cells.isCompact() || cells.isOffHeap() ||
+            cells.size() > Integer.MAX_VALUE)
+            return true;
+
+        return getConnectivity().isReachable(startLoc, finishLoc);
+    }
+
+    /**
+     * Возвращает хранилище ячеек карты. Алгоритмы поиска, которые сами следят
+     * за границами карты, могут читать его напрямую, минуя проверку координат.
+     **/
+    public CellStorage getStorage()
+    {
+        return cells;
     }
     
     /**
@@ -0,0 +1,10 @@
+/**
+ * Этот интерфейс получает уведомления об изменении ячеек карты {@link Map2D}.
+ * Уведомление приходит в потоке, который вызвал {@link Map2D#setCellValue},
+ * уже после того, как новое значение записано.
+ **/
+public interface MapChangeListener
+{
+    /** Вызывается после изменения значения стоимости ячейки (x, y). **/
+    void cellChanged(Map2D map, int x, int y, int oldValue, int newValue);
+}
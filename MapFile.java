@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Этот класс читает и записывает карты {@link Map2D} в компактном двоичном формате.
+ * Файл состоит из заголовка и значений стоимости ячеек:
+ * <pre>
+ *   int magic          'M' 'A' 'P' '2'
+ *   int version        1
+ *   int width, height
+ *   int startX, startY
+ *   int finishX, finishY
+ *   int cells[height][width]
+ * </pre>
+ * Все числа записываются в порядке little-endian.
+ * При загрузке ячейки не копируются в кучу: файл отображается в память
+ * с помощью {@link FileChannel#map}, поэтому открытие даже очень большой карты
+ * занимает миллисекунды, а страничный кэш ОС разделяется между процессами.
+ **/
+public class MapFile
+{
+    /** Сигнатура файла карты. **/
+    public static final int MAGIC = 0x4D415032;
+
+    /** Версия формата, которую понимает этот класс. **/
+    public static final int VERSION = 1;
+
+    /** Размер заголовка в байтах. **/
+    public static final int HEADER_SIZE = 8 * Integer.BYTES;
+
+    /** Размер буфера, используемого при записи карты. **/
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+
+    /**
+     * Загружает карту из указанного файла только для чтения.
+     * Попытка изменить ячейку такой карты приводит к исключению
+     * <code>ReadOnlyBufferException</code>.
+     **/
+    public static Map2D load(Path file) throws IOException
+    {
+        return load(file, false);
+    }
+
+    /**
+     * Загружает карту из указанного файла. Если <code>writable</code> равно true,
+     * изменения ячеек записываются прямо в файл.
+     **/
+    public static Map2D load(Path file, boolean writable) throws IOException
+    {
+        StandardOpenOption[] options = writable
+                ? new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE }
+                : new StandardOpenOption[] { StandardOpenOption.READ };
+        FileChannel.MapMode mode = writable
+                ? FileChannel.MapMode.READ_WRITE
+                : FileChannel.MapMode.READ_ONLY;
+
+        // Отображение остается действительным и после закрытия канала.
+        try (FileChannel channel = FileChannel.open(file, options))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining())
+            {
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException(file + ": truncated header");
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC)
+                throw new IOException(file + ": not a map file");
+
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException(file + ": unsupported version " + version);
+
+            int width = header.getInt();
+            int height = header.getInt();
+            Location start = new Location(header.getInt(), header.getInt());
+            Location finish = new Location(header.getInt(), header.getInt());
+
+            if (width <= 0 || height <= 0)
+                throw new IOException(file + ": bad size " + width + "x" + height);
+
+            long numCells = (long) width * height;
+            if (channel.size() < HEADER_SIZE + numCells * Integer.BYTES)
+                throw new IOException(file + ": truncated cell data");
+
+            int numChunks = (int) ((numCells + DirectCellStorage.CHUNK_CELLS - 1) >>>
+                    DirectCellStorage.CHUNK_SHIFT);
+            IntBuffer[] chunks = new IntBuffer[numChunks];
+            for (int i = 0; i < numChunks; i++)
+            {
+                long first = (long) i << DirectCellStorage.CHUNK_SHIFT;
+                long cells = Math.min(DirectCellStorage.CHUNK_CELLS, numCells - first);
+                chunks[i] = channel.map(mode, HEADER_SIZE + first * Integer.BYTES,
+                        cells * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+
+            Map2D map = new Map2D(width, height, new DirectCellStorage(numCells, chunks));
+            if (!map.contains(start) || !map.contains(finish))
+                throw new IOException(file + ": start or finish is outside the map");
+
+            map.setStart(start);
+            map.setFinish(finish);
+            return map;
+        }
+    }
+
+    /** Записывает указанную карту в файл, заменяя его содержимое. **/
+    public static void save(Map2D map, Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(VERSION);
+            buf.putInt(map.getWidth()).putInt(map.getHeight());
+            buf.putInt(map.getStart().xCoord).putInt(map.getStart().yCoord);
+            buf.putInt(map.getFinish().xCoord).putInt(map.getFinish().yCoord);
+
+            CellStorage cells = map.getStorage();
+            long numCells = cells.size();
+            for (long i = 0; i < numCells; i++)
+            {
+                if (!buf.hasRemaining())
+                    drain(channel, buf);
+                buf.putInt(cells.get(i));
+            }
+            drain(channel, buf);
+        }
+    }
+
+    /** Записывает содержимое буфера в канал и очищает буфер. **/
+    private static void drain(FileChannel channel, ByteBuffer buf) throws IOException
+    {
+        buf.flip();
+        while (buf.hasRemaining())
+            channel.write(buf);
+        buf.clear();
+    }
+}
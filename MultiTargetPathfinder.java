@@ -0,0 +1,364 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Поиск ближайших из нескольких целей за один проход A *. Вместо отдельного поиска
+ * до каждой цели вершины оцениваются расстоянием до ближайшей еще не найденной цели:
+ * минимум согласованных оценок тоже согласован, поэтому первая цель, извлеченная
+ * из открытого набора, - ближайшая по стоимости пути, а стоимости найденных путей
+ * совпадают со стоимостями {@link GridPathfinder#computePath}.
+ * <p>
+ * Чтобы оценка вершины не просматривала все цели, цели разложены по квадратным
+ * корзинам ({@link TargetGrid}), покрывающим только охватывающий их прямоугольник,
+ * и поиск ближайшей цели обходит корзины кольцами вокруг вершины, пока оставшиеся
+ * корзины не могут оказаться ближе уже найденной цели. Поэтому скопления целей
+ * и цели вдали от начала тоже оцениваются за несколько корзин.
+ * Оценка евклидова, как {@link AStarPathfinder#estimateTravelCost}.
+ * <p>
+ * Если нужно несколько ближайших целей, найденная цель удаляется из корзин,
+ * и поиск продолжается с того же открытого набора. Оценки вершин при этом
+ * только растут, поэтому ключи в открытом наборе остаются нижними границами;
+ * извлеченная вершина, ключ которой устарел, возвращается в набор с новым ключом.
+ **/
+public class MultiTargetPathfinder
+{
+    /**
+     * Находит ближайшую по стоимости пути цель из указанных и возвращает путевую точку
+     * последнего шага пути к ней (ее местоположение - найденная цель) или <code>null</code>,
+     * если ни одна цель не достижима. Контекст поиска берется из общего пула.
+     **/
+    public static Waypoint computePath(Map2D map, Location startLoc,
+                                       Collection<Location> targets)
+    {
+        List<Waypoint> paths = computePaths(map, startLoc, targets, 1);
+        return paths.isEmpty() ? null : paths.get(0);
+    }
+
+    /**
+     * Находит не больше <code>k</code> ближайших целей из указанных и возвращает пути
+     * к ним в порядке возрастания стоимости. Если достижимых целей меньше, чем
+     * <code>k</code>, возвращаются пути ко всем достижимым целям.
+     * Контекст поиска берется из общего пула.
+     **/
+    public static List<Waypoint> computePaths(Map2D map, Location startLoc,
+                                              Collection<Location> targets, int k)
+    {
+        PathfinderContext ctx = PathfinderContext.borrow(map);
+        try
+        {
+            return computePaths(map, startLoc, targets, k, ctx);
+        }
+        finally
+        {
+            PathfinderContext.release(ctx);
+        }
+    }
+
+    /**
+     * То же самое, что и {@link #computePaths(Map2D, Location, Collection, int)},
+     * но использует указанный контекст поиска, который должен подходить для карты.
+     **/
+    public static List<Waypoint> computePaths(Map2D map, Location startLoc,
+                                              Collection<Location> targets, int k,
+                                              PathfinderContext ctx)
+    {
+        if (targets == null)
+            throw new NullPointerException("targets cannot be null");
+
+        if (k <= 0)
+            throw new IllegalArgumentException("k must be > 0; got " + k);
+
+        if (!ctx.fits(map))
+            throw new IllegalArgumentException("context does not fit the map");
+
+        if (!map.contains(startLoc))
+            throw new IllegalArgumentException("start must be inside the map");
+
+        int width = map.getWidth();
+        int height = map.getHeight();
+
+        // Цели, отрезанные от начала, видны по разметке связных областей;
+        // они не попадают в корзины и не притягивают поиск.
+        int[] cells = new int[targets.size()];
+        int count = 0;
+        for (Location target : targets)
+        {
+            if (!map.contains(target))
+                throw new IllegalArgumentException("targets must be inside the map");
+
+            if (map.isReachable(startLoc, target))
+                cells[count++] = target.yCoord * width + target.xCoord;
+        }
+
+        List<Waypoint> paths = new ArrayList<>();
+        if (count == 0)
+            return paths;
+
+        TargetGrid grid = new TargetGrid(width, height, Arrays.copyOf(cells, count));
+        search(map, startLoc, grid, k, ctx, paths);
+        return paths;
+    }
+
+    /** Основной цикл поиска; найденные пути добавляются в список <code>paths</code>. **/
+    private static void search(Map2D map, Location startLoc, TargetGrid grid, int k,
+                               PathfinderContext ctx, List<Waypoint> paths)
+    {
+        ctx.reset();
+
+        int width = map.getWidth();
+        int height = map.getHeight();
+        CellStorage cells = map.getStorage();
+        CellHeap open = ctx.open;
+
+        int start = startLoc.yCoord * width + startLoc.xCoord;
+        ctx.setPrevCost(start, 0, -1);
+        open.insertOrUpdate(start, grid.nearest(startLoc.xCoord, startLoc.yCoord));
+
+        while (!open.isEmpty())
+        {
+            float key = open.peekKey();
+            int best = open.poll();
+            int x = best % width;
+            int y = best / width;
+            float bestCost = ctx.prevCost[best];
+
+            // После удаления найденной цели ключ вершины мог устареть.
+            if (!paths.isEmpty())
+            {
+                float total = bestCost + grid.nearest(x, y);
+                if (total > key)
+                {
+                    open.insertOrUpdate(best, total);
+                    continue;
+                }
+            }
+
+            if (grid.remove(best))
+            {
+                paths.add(GridPathfinder.buildPath(map, new Location(x, y), best,
+                                                   ctx.prevCost, ctx.previous));
+                if (paths.size() == k || grid.isEmpty())
+                    return;
+            }
+
+            ctx.close(best);
+
+            for (int i = 0; i < 8; i++)
+            {
+                int nx = x + GridPathfinder.NEIGHBOUR_DX[i];
+                int ny = y + GridPathfinder.NEIGHBOUR_DY[i];
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height)
+                    continue;
+
+                int next = ny * width + nx;
+                if (ctx.isClosed(next))
+                    continue;
+
+                float cost = bestCost + GridPathfinder.NEIGHBOUR_COST[i];
+                cost += cells.get(next);
+
+                // Слишком дорогие ячейки, как и в AStarPathfinder, отбрасываются.
+                if (cost >= AStarPathfinder.COST_LIMIT || cost >= ctx.getPrevCost(next))
+                    continue;
+
+                ctx.setPrevCost(next, cost, best);
+                open.insertOrUpdate(next, cost + grid.nearest(nx, ny));
+            }
+        }
+    }
+
+
+    /**
+     * Цели, разложенные по квадратным корзинам со стороной 2<sup>shift</sup> ячеек.
+     * Корзины покрывают прямоугольник, охватывающий цели, а не всю карту, и сторона
+     * выбирается так, чтобы в корзине было в среднем около одной цели: если бы она
+     * зависела от площади карты, скопление целей попало бы в одну корзину.
+     **/
+    static class TargetGrid
+    {
+        /** Ширина карты. **/
+        private final int width;
+
+        /** Координаты левой верхней ячейки прямоугольника, охватывающего цели. **/
+        private final int originX;
+        private final int originY;
+
+        /** Двоичный логарифм стороны корзины. **/
+        private final int shift;
+
+        /** Количество корзин по осям X и Y. **/
+        private final int bucketsX;
+        private final int bucketsY;
+
+        /** Индексы ячеек целей в каждой корзине. **/
+        private final int[][] buckets;
+
+        /** Количество целей в каждой корзине. **/
+        private final int[] sizes;
+
+        /** Количество целей во всех корзинах. **/
+        private int count;
+
+
+        /** Раскладывает цели с указанными индексами ячеек по корзинам; повторы отбрасываются. **/
+        TargetGrid(int width, int height, int[] cells)
+        {
+            this.width = width;
+
+            int minX = width, maxX = -1;
+            int minY = height, maxY = -1;
+            for (int cell : cells)
+            {
+                minX = Math.min(minX, cell % width);
+                maxX = Math.max(maxX, cell % width);
+                minY = Math.min(minY, cell / width);
+                maxY = Math.max(maxY, cell / width);
+            }
+            this.originX = minX;
+            this.originY = minY;
+            int boxWidth = maxX - minX + 1;
+            int boxHeight = maxY - minY + 1;
+
+            double side = Math.sqrt((double) boxWidth * boxHeight / cells.length);
+            int shift = 0;
+            while (shift < 30 && (1 << (shift + 1)) <= side)
+                shift++;
+            this.shift = shift;
+
+            this.bucketsX = ((boxWidth - 1) >> shift) + 1;
+            this.bucketsY = ((boxHeight - 1) >> shift) + 1;
+
+            int numBuckets = bucketsX * bucketsY;
+            this.sizes = new int[numBuckets];
+            for (int cell : cells)
+                sizes[bucketOf(cell)]++;
+
+            this.buckets = new int[numBuckets][];
+            for (int b = 0; b < numBuckets; b++)
+                buckets[b] = new int[sizes[b]];
+            Arrays.fill(sizes, 0);
+
+            for (int cell : cells)
+            {
+                int b = bucketOf(cell);
+                if (indexOf(b, cell) < 0)
+                {
+                    buckets[b][sizes[b]++] = cell;
+                    count++;
+                }
+            }
+        }
+
+        /** Возвращает true, если целей не осталось. **/
+        boolean isEmpty()
+        {
+            return count == 0;
+        }
+
+        /**
+         * Возвращает расстояние от ячейки (x, y) до ближайшей цели
+         * или бесконечность, если целей не осталось.
+         **/
+        float nearest(int x, int y)
+        {
+            // Ячейка вне корзин обходит их от ближайшей к ней корзины.
+            int bx = Math.max(0, Math.min(bucketsX - 1, (x - originX) >> shift));
+            int by = Math.max(0, Math.min(bucketsY - 1, (y - originY) >> shift));
+            int maxRing = Math.max(Math.max(bx, bucketsX - 1 - bx), Math.max(by, bucketsY - 1 - by));
+            long side = 1L << shift;
+
+            // Расстояния от ячейки до прямоугольника корзин по осям.
+            long gapX = Math.max(0, Math.max(originX - x, x - (originX + bucketsX * side - 1)));
+            long gapY = Math.max(0, Math.max(originY - y, y - (originY + bucketsY * side - 1)));
+
+            long bestSq = Long.MAX_VALUE;
+            for (int ring = 0; ring <= maxRing; ring++)
+            {
+                int x0 = bx - ring, x1 = bx + ring;
+                int y0 = by - ring, y1 = by + ring;
+                for (int cy = Math.max(y0, 0); cy <= Math.min(y1, bucketsY - 1); cy++)
+                {
+                    // Внутри кольца просматриваются только корзины на его границе.
+                    boolean edgeRow = cy == y0 || cy == y1;
+                    int step = edgeRow ? 1 : x1 - x0;
+                    for (int cx = x0; cx <= x1; cx += Math.max(step, 1))
+                    {
+                        if (cx < 0 || cx >= bucketsX)
+                            continue;
+
+                        int b = cy * bucketsX + cx;
+                        int[] bucket = buckets[b];
+                        for (int i = 0, n = sizes[b]; i < n; i++)
+                        {
+                            long dx = bucket[i] % width - x;
+                            long dy = bucket[i] / width - y;
+                            bestSq = Math.min(bestSq, dx * dx + dy * dy);
+                        }
+                    }
+                }
+
+                // Цели в следующих кольцах лежат за одной из сторон пройденного квадрата
+                // корзин; расстояние до ближайшей из этих сторон - нижняя граница.
+                long boundSq = Long.MAX_VALUE;
+                if (x0 > 0)
+                    boundSq = Math.min(boundSq, square(x - (originX + x0 * side - 1)) + gapY * gapY);
+                if (x1 < bucketsX - 1)
+                    boundSq = Math.min(boundSq, square(originX + (x1 + 1) * side - x) + gapY * gapY);
+                if (y0 > 0)
+                    boundSq = Math.min(boundSq, square(y - (originY + y0 * side - 1)) + gapX * gapX);
+                if (y1 < bucketsY - 1)
+                    boundSq = Math.min(boundSq, square(originY + (y1 + 1) * side - y) + gapX * gapX);
+
+                if (bestSq <= boundSq)
+                    break;
+            }
+
+            return bestSq == Long.MAX_VALUE ? Float.POSITIVE_INFINITY : (float) Math.sqrt(bestSq);
+        }
+
+        /** Возвращает квадрат числа. **/
+        private static long square(long value)
+        {
+            return value * value;
+        }
+
+        /** Удаляет цель с указанным индексом ячейки и возвращает true, если она была. **/
+        boolean remove(int cell)
+        {
+            int bx = (cell % width - originX) >> shift;
+            int by = (cell / width - originY) >> shift;
+            if (bx < 0 || bx >= bucketsX || by < 0 || by >= bucketsY)
+                return false;
+
+            int b = by * bucketsX + bx;
+            int i = indexOf(b, cell);
+            if (i < 0)
+                return false;
+
+            buckets[b][i] = buckets[b][--sizes[b]];
+            count--;
+            return true;
+        }
+
+        /** Возвращает номер корзины ячейки с указанным индексом. **/
+        private int bucketOf(int cell)
+        {
+            return ((cell / width - originY) >> shift) * bucketsX + ((cell % width - originX) >> shift);
+        }
+
+        /** Возвращает позицию цели в корзине или -1, если ее там нет. **/
+        private int indexOf(int b, int cell)
+        {
+            int[] bucket = buckets[b];
+            for (int i = 0, n = sizes[b]; i < n; i++)
+            {
+                if (bucket[i] == cell)
+                    return i;
+            }
+            return -1;
+        }
+    }
+}
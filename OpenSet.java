@@ -0,0 +1,43 @@
+/**
+ * Этот интерфейс описывает открытый набор путевых точек поиска A *,
+ * упорядоченный по {@link Waypoint#getTotalCost()}. Путевая точка может
+ * находиться не больше чем в одном открытом наборе одновременно.
+ * Реализации: двоичная куча {@link OpenWaypointHeap} и очередь с корзинами
+ * {@link BucketWaypointQueue}, которую {@link AStarState} выбирает по умолчанию.
+ **/
+public interface OpenSet
+{
+    /** Возвращает количество путевых точек в наборе. **/
+    int size();
+
+    /** Возвращает true, если набор пуст. **/
+    boolean isEmpty();
+
+    /**
+     * Возвращает путевую точку с наименьшей общей стоимостью, не удаляя ее,
+     * или <code>null</code>, если набор пуст.
+     **/
+    Waypoint peek();
+
+    /**
+     * Удаляет и возвращает путевую точку с наименьшей общей стоимостью,
+     * или <code>null</code>, если набор пуст.
+     **/
+    Waypoint poll();
+
+    /** Добавляет путевую точку в набор. Точка не должна уже находиться в открытом наборе. **/
+    void add(Waypoint wp);
+
+    /**
+     * Заменяет путевую точку, уже находящуюся в наборе, новой путевой точкой
+     * (обычно для того же местоположения, но с меньшей стоимостью).
+     * Это операция «уменьшения ключа».
+     **/
+    void replace(Waypoint oldWP, Waypoint newWP);
+
+    /** Удаляет указанную путевую точку из набора. **/
+    void remove(Waypoint wp);
+
+    /** Удаляет все путевые точки из набора. **/
+    void clear();
+}
@@ -0,0 +1,182 @@
+import java.util.Arrays;
+
+/**
+ * Индексированная двоичная мин-куча путевых точек, упорядоченная по
+ * {@link Waypoint#getTotalCost()}. Каждая путевая точка хранит свою позицию
+ * в куче, поэтому извлечение минимума, удаление и уменьшение ключа
+ * выполняются за O(log n) без линейного поиска.
+ **/
+public class OpenWaypointHeap implements OpenSet
+{
+    /** Начальная емкость массива кучи. **/
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Элементы кучи; корень находится в ячейке 0. **/
+    private Waypoint[] heap = new Waypoint[INITIAL_CAPACITY];
+
+    /** Количество элементов в куче. **/
+    private int size;
+
+
+    /** Возвращает количество путевых точек в куче. **/
+    public int size()
+    {
+        return size;
+    }
+
+    /** Возвращает true, если куча пуста. **/
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Возвращает путевую точку с наименьшей общей стоимостью, не удаляя ее,
+     * или <code>null</code>, если куча пуста.
+     **/
+    public Waypoint peek()
+    {
+        return size == 0 ? null : heap[0];
+    }
+
+    /**
+     * Удаляет и возвращает путевую точку с наименьшей общей стоимостью,
+     * или <code>null</code>, если куча пуста.
+     **/
+    public Waypoint poll()
+    {
+        if (size == 0)
+            return null;
+
+        Waypoint min = heap[0];
+        remove(min);
+        return min;
+    }
+
+    /** Добавляет путевую точку в кучу. Точка не должна уже находиться в куче. **/
+    public void add(Waypoint wp)
+    {
+        if (wp.heapIndex >= 0)
+            throw new IllegalArgumentException("waypoint is already in a heap");
+
+        if (size == heap.length)
+            heap = Arrays.copyOf(heap, size * 2);
+
+        heap[size] = wp;
+        wp.heapIndex = size;
+        size++;
+        siftUp(wp.heapIndex);
+    }
+
+    /**
+     * Заменяет путевую точку, уже находящуюся в куче, новой путевой точкой
+     * (обычно для того же местоположения, но с меньшей стоимостью) и
+     * восстанавливает порядок кучи. Это операция «уменьшения ключа».
+     **/
+    public void replace(Waypoint oldWP, Waypoint newWP)
+    {
+        int i = indexOf(oldWP);
+        if (newWP.heapIndex >= 0)
+            throw new IllegalArgumentException("waypoint is already in a heap");
+
+        oldWP.heapIndex = -1;
+        heap[i] = newWP;
+        newWP.heapIndex = i;
+        siftUp(i);
+        siftDown(newWP.heapIndex);
+    }
+
+    /** Удаляет указанную путевую точку из кучи. **/
+    public void remove(Waypoint wp)
+    {
+        int i = indexOf(wp);
+
+        size--;
+        Waypoint last = heap[size];
+        heap[size] = null;
+        wp.heapIndex = -1;
+
+        if (i != size)
+        {
+            heap[i] = last;
+            last.heapIndex = i;
+            siftUp(i);
+            siftDown(last.heapIndex);
+        }
+    }
+
+    /** Удаляет все путевые точки из кучи. **/
+    public void clear()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            heap[i].heapIndex = -1;
+            heap[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Возвращает позицию путевой точки в куче или генерирует исключение
+     * <code>IllegalArgumentException</code>, если ее там нет.
+     **/
+    private int indexOf(Waypoint wp)
+    {
+        int i = wp.heapIndex;
+        if (i < 0 || i >= size || heap[i] != wp)
+            throw new IllegalArgumentException("waypoint is not in this heap");
+        return i;
+    }
+
+    /** Поднимает элемент в позиции i, пока он меньше своего родителя. **/
+    private void siftUp(int i)
+    {
+        Waypoint wp = heap[i];
+        float cost = wp.getTotalCost();
+
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> 1;
+            Waypoint p = heap[parent];
+            if (p.getTotalCost() <= cost)
+                break;
+
+            heap[i] = p;
+            p.heapIndex = i;
+            i = parent;
+        }
+
+        heap[i] = wp;
+        wp.heapIndex = i;
+    }
+
+    /** Опускает элемент в позиции i, пока он больше одного из своих потомков. **/
+    private void siftDown(int i)
+    {
+        Waypoint wp = heap[i];
+        float cost = wp.getTotalCost();
+        int half = size >>> 1;
+
+        while (i < half)
+        {
+            int child = 2 * i + 1;
+            Waypoint c = heap[child];
+            int right = child + 1;
+            if (right < size && heap[right].getTotalCost() < c.getTotalCost())
+            {
+                child = right;
+                c = heap[child];
+            }
+
+            if (cost <= c.getTotalCost())
+                break;
+
+            heap[i] = c;
+            c.heapIndex = i;
+            i = child;
+        }
+
+        heap[i] = wp;
+        wp.heapIndex = i;
+    }
+}
@@ -0,0 +1,134 @@
+import java.util.Arrays;
+
+
+/**
+ * Хранилище ячеек с палитрой: в ячейке хранится не сама стоимость, а ее номер
+ * в палитре из 4 или 8 бит. Карты обычно содержат лишь несколько разных стоимостей,
+ * поэтому такое хранилище занимает в 8 или 4 раза меньше памяти, чем
+ * {@link HeapCellStorage}, и при этом, в отличие от {@link BitmapCellStorage},
+ * допускает промежуточные стоимости.
+ * <p>
+ * Палитра заполняется по мере записи новых значений и вмещает 16 или 256 значений;
+ * значение 0 входит в нее с самого начала. Запись значения, для которого
+ * в заполненной палитре нет места, выбрасывает {@link IllegalArgumentException}.
+ * Как и у {@link BitmapCellStorage}, одновременные изменения ячеек из разных потоков
+ * требуют внешней синхронизации.
+ **/
+public class PaletteCellStorage implements CellStorage
+{
+    /** Количество ячеек в хранилище. **/
+    private final long size;
+
+    /** Количество бит на ячейку: 4 или 8. **/
+    private final int bitsPerCell;
+
+    /** Двоичный логарифм количества ячеек в одном слове. **/
+    private final int cellsPerWordShift;
+
+    /** Маска номера значения в палитре. **/
+    private final int cellMask;
+
+    /** Номера значений ячеек в палитре, упакованные в слова. **/
+    private final long[] words;
+
+    /** Значения палитры. **/
+    private final int[] palette;
+
+    /** Количество значений в палитре. **/
+    private int paletteSize;
+
+
+    /**
+     * Создает хранилище для указанного количества ячеек со значением 0,
+     * использующее указанное количество бит на ячейку (4 или 8).
+     **/
+    public PaletteCellStorage(long size, int bitsPerCell)
+    {
+        if (bitsPerCell != 4 && bitsPerCell != 8)
+            throw new IllegalArgumentException("bitsPerCell must be 4 or 8; got " + bitsPerCell);
+
+        int cellsPerWordShift = bitsPerCell == 4 ? 4 : 3;
+        long numWords = (size + (1 << cellsPerWordShift) - 1) >>> cellsPerWordShift;
+        if (size <= 0 || numWords > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("size is out of range; got " + size);
+
+        this.size = size;
+        this.bitsPerCell = bitsPerCell;
+        this.cellsPerWordShift = cellsPerWordShift;
+        this.cellMask = (1 << bitsPerCell) - 1;
+        this.words = new long[(int) numWords];
+        this.palette = new int[1 << bitsPerCell];
+        this.paletteSize = 1;
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+
+    /** Возвращает количество бит на ячейку. **/
+    public int getBitsPerCell()
+    {
+        return bitsPerCell;
+    }
+
+    /** Возвращает копию значений палитры в порядке их появления. **/
+    public int[] getPalette()
+    {
+        return Arrays.copyOf(palette, paletteSize);
+    }
+
+    @Override
+    public int get(long index)
+    {
+        return palette[code(index)];
+    }
+
+    @Override
+    public boolean isCompact()
+    {
+        return true;
+    }
+
+    @Override
+    public void set(long index, int value)
+    {
+        int code = codeOf(value);
+        int word = (int) (index >>> cellsPerWordShift);
+        int shift = shift(index);
+
+        words[word] = words[word] & ~((long) cellMask << shift) | (long) code << shift;
+    }
+
+    /** Возвращает номер значения ячейки с указанным индексом в палитре. **/
+    private int code(long index)
+    {
+        return (int) (words[(int) (index >>> cellsPerWordShift)] >>> shift(index)) & cellMask;
+    }
+
+    /** Возвращает сдвиг номера значения ячейки внутри ее слова. **/
+    private int shift(long index)
+    {
+        return ((int) index & ((1 << cellsPerWordShift) - 1)) * bitsPerCell;
+    }
+
+    /** Возвращает номер значения в палитре, при необходимости добавляя его. **/
+    private int codeOf(int value)
+    {
+        for (int i = 0; i < paletteSize; i++)
+        {
+            if (palette[i] == value)
+                return i;
+        }
+
+        if (paletteSize == palette.length)
+        {
+            throw new IllegalArgumentException("palette is full (" + palette.length +
+                    " values); cannot store " + value);
+        }
+
+        palette[paletteSize] = value;
+        return paletteSize++;
+    }
+}
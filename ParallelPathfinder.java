@@ -0,0 +1,518 @@
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+
+/**
+ * Параллельный поиск одного пути по алгоритму HDA* (Hash Distributed A *).
+ * Ячейки карты распределяются между рабочими потоками по хешу: блок 8x8 ячеек
+ * целиком принадлежит одному потоку, поэтому большинство соседей раскрываемой
+ * вершины остаются у того же потока. Каждый поток ведет свой открытый набор;
+ * стоимость пути до ячейки и предыдущую ячейку записывает только ее владелец.
+ * Новые вершины, принадлежащие другому потоку, отправляются ему пачками через
+ * неблокирующую очередь {@link ConcurrentLinkedQueue}, в которую пишут многие
+ * потоки, а читает только владелец.
+ * <p>
+ * Потоки раскрывают вершины не в общем порядке стоимости, поэтому вершина
+ * может быть раскрыта повторно, если позже до нее найден более дешевый путь.
+ * Стоимость лучшего найденного пути до финиша хранится в общем поле; вершины,
+ * чья оценка полной стоимости не меньше ее, не раскрываются. Поиск заканчивается,
+ * когда у всех потоков не осталось таких вершин и нет неполученных пачек:
+ * общий счетчик хранит количество активных потоков плюс количество отправленных,
+ * но еще не обработанных пачек, и поиск окончен, когда он становится равен нулю.
+ * Поскольку оценка по прямой согласована, найденный путь кратчайший, и его стоимость
+ * совпадает со стоимостью пути {@link AStarPathfinder#computePath}.
+ * <p>
+ * Рабочие массивы занимают память, пропорциональную размеру карты, поэтому
+ * метод предназначен для отдельных длинных запросов по большим картам.
+ **/
+public class ParallelPathfinder
+{
+    /** Двоичный логарифм стороны блока ячеек, принадлежащего одному потоку. **/
+    private static final int BLOCK_SHIFT = 3;
+
+    /** Количество вершин в пачке, после которого она отправляется владельцу. **/
+    private static final int BATCH_SIZE = 256;
+
+    /** Количество раскрытий, после которого поток отправляет неполные пачки. **/
+    private static final int FLUSH_INTERVAL = 64;
+
+    /** Количество проверок в активном ожидании, после которого поток засыпает. **/
+    private static final int SPIN_LIMIT = 1000;
+
+    /** Время сна ожидающего потока в наносекундах. **/
+    private static final long PARK_NANOS = 50_000;
+
+
+    /**
+     * Ищет путь между начальным и конечным местоположениями карты,
+     * используя столько потоков, сколько процессоров доступно JVM.
+     **/
+    public static Waypoint computePath(Map2D map)
+    {
+        return computePath(map, map.getStart(), map.getFinish(),
+                           Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Ищет путь между указанными местоположениями в <code>numThreads</code> потоках.
+     * Возвращает путевую точку последнего шага пути или <code>null</code>, если путь
+     * не найден. Если поток, вызвавший метод, прерван, поиск останавливается
+     * и выбрасывается {@link CancellationException}.
+     **/
+    public static Waypoint computePath(Map2D map, Location startLoc, Location finishLoc,
+                                       int numThreads)
+    {
+        if (numThreads <= 0)
+            throw new IllegalArgumentException("numThreads must be > 0; got " + numThreads);
+
+        if (!map.contains(startLoc) || !map.contains(finishLoc))
+            throw new IllegalArgumentException("start and finish must be inside the map");
+
+        // Если финиш отрезан от начала, это видно по разметке связных областей.
+        if (!map.isReachable(startLoc, finishLoc))
+            return null;
+
+        Search search = new Search(map, startLoc, finishLoc, numThreads);
+        return search.run();
+    }
+
+
+    /** Состояние одного запроса. **/
+    private static class Search
+    {
+        final Map2D map;
+        final CellStorage cells;
+        final int width;
+        final int height;
+        final int blocksPerRow;
+        final int start;
+        final int finish;
+        final int finishX;
+        final int finishY;
+
+        /** Стоимость лучшего известного пути до каждой ячейки; пишет только владелец. **/
+        final float[] cost;
+
+        /** Предыдущая ячейка на этом пути; пишет только владелец. **/
+        final int[] previous;
+
+        final Worker[] workers;
+
+        /** Двоичное представление стоимости лучшего найденного пути до финиша. **/
+        final AtomicInteger incumbent =
+            new AtomicInteger(Float.floatToIntBits(Float.POSITIVE_INFINITY));
+
+        /** Количество активных потоков плюс количество неполученных пачек. **/
+        final AtomicLong work = new AtomicLong();
+
+        /** Первое исключение, выброшенное рабочим потоком. **/
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        /** true, если поиск нужно остановить досрочно. **/
+        volatile boolean stopped;
+
+        Search(Map2D map, Location startLoc, Location finishLoc, int numThreads)
+        {
+            this.map = map;
+            this.cells = map.getStorage();
+            this.width = map.getWidth();
+            this.height = map.getHeight();
+            this.blocksPerRow = ((width - 1) >> BLOCK_SHIFT) + 1;
+            this.start = startLoc.yCoord * width + startLoc.xCoord;
+            this.finish = finishLoc.yCoord * width + finishLoc.xCoord;
+            this.finishX = finishLoc.xCoord;
+            this.finishY = finishLoc.yCoord;
+
+            int numCells = Math.multiplyExact(width, height);
+            cost = new float[numCells];
+            previous = new int[numCells];
+            IntStream.range(0, height).parallel().forEach(y ->
+                Arrays.fill(cost, y * width, (y + 1) * width, Float.POSITIVE_INFINITY));
+
+            workers = new Worker[numThreads];
+            for (int i = 0; i < numThreads; i++)
+                workers[i] = new Worker(this, i);
+        }
+
+        Waypoint run()
+        {
+            cost[start] = 0;
+            previous[start] = -1;
+            if (start == finish)
+                incumbent.set(Float.floatToIntBits(0));
+            else
+                workers[owner(start % width, start / width)].open.push(
+                    estimate(start % width, start / width), 0, start);
+
+            // Все потоки начинают активными.
+            work.set(workers.length);
+            Thread[] threads = new Thread[workers.length];
+            for (int i = 0; i < workers.length; i++)
+            {
+                threads[i] = new Thread(workers[i], "parallel-pathfinder-" + i);
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+
+            boolean interrupted = false;
+            for (Thread thread : threads)
+            {
+                while (true)
+                {
+                    try
+                    {
+                        thread.join();
+                        break;
+                    }
+                    catch (InterruptedException e)
+                    {
+                        interrupted = true;
+                        stopped = true;
+                    }
+                }
+            }
+
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("path search was interrupted");
+            }
+
+            Throwable error = failure.get();
+            if (error instanceof RuntimeException)
+                throw (RuntimeException) error;
+            if (error instanceof Error)
+                throw (Error) error;
+
+            if (getIncumbent() == Float.POSITIVE_INFINITY)
+                return null;
+
+            return GridPathfinder.buildPath(map, new Location(finishX, finishY), finish,
+                                            cost, previous);
+        }
+
+        /** Возвращает номер потока, которому принадлежит ячейка (x, y). **/
+        int owner(int x, int y)
+        {
+            long block = (long) (y >> BLOCK_SHIFT) * blocksPerRow + (x >> BLOCK_SHIFT);
+            long hash = block * 0x9E3779B97F4A7C15L;
+            return (int) (((hash >>> 32) * workers.length) >>> 32);
+        }
+
+        float estimate(int x, int y)
+        {
+            return AStarPathfinder.estimateTravelCost(x, y, finishX, finishY);
+        }
+
+        float getIncumbent()
+        {
+            return Float.intBitsToFloat(incumbent.get());
+        }
+
+        /** Уменьшает стоимость лучшего найденного пути до финиша, если новая меньше. **/
+        void offerIncumbent(float pathCost)
+        {
+            int bits = Float.floatToIntBits(pathCost);
+            int old = incumbent.get();
+            while (bits < old && !incumbent.compareAndSet(old, bits))
+                old = incumbent.get();
+        }
+    }
+
+
+    /** Рабочий поток: владеет частью ячеек и раскрывает их. **/
+    private static class Worker implements Runnable
+    {
+        final Search search;
+        final int id;
+
+        /** Пачки вершин, присланные другими потоками. **/
+        final ConcurrentLinkedQueue<Batch> inbox = new ConcurrentLinkedQueue<>();
+
+        /** Открытый набор ячеек этого потока. **/
+        final OpenList open = new OpenList();
+
+        /** Собираемые пачки для каждого из потоков. **/
+        final Batch[] outgoing;
+
+        Worker(Search search, int id)
+        {
+            this.search = search;
+            this.id = id;
+            this.outgoing = new Batch[search.workers.length];
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                work();
+            }
+            catch (Throwable e)
+            {
+                search.failure.compareAndSet(null, e);
+                search.stopped = true;
+            }
+        }
+
+        private void work()
+        {
+            AtomicLong work = search.work;
+            int expanded = 0;
+
+            while (!search.stopped)
+            {
+                Batch batch;
+                while ((batch = inbox.poll()) != null)
+                {
+                    receive(batch);
+                    work.decrementAndGet();
+                }
+
+                if (expandNext())
+                {
+                    if (++expanded % FLUSH_INTERVAL == 0)
+                        flush();
+                    continue;
+                }
+
+                // Полезных вершин нет: отправляем собранные пачки и ждем.
+                flush();
+                if (!inbox.isEmpty())
+                    continue;
+
+                work.decrementAndGet();
+                int spins = 0;
+                while (true)
+                {
+                    if (!inbox.isEmpty())
+                    {
+                        // Пока пачка в очереди, счетчик не равен нулю,
+                        // поэтому другие потоки не могут закончить поиск.
+                        work.incrementAndGet();
+                        break;
+                    }
+                    if (work.get() == 0 || search.stopped)
+                        return;
+
+                    if (++spins < SPIN_LIMIT)
+                        Thread.onSpinWait();
+                    else
+                        LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        }
+
+        /**
+         * Раскрывает лучшую вершину открытого набора, если ее оценка меньше
+         * стоимости лучшего найденного пути. Возвращает false, если таких вершин нет.
+         **/
+        private boolean expandNext()
+        {
+            Search s = search;
+            float[] cost = s.cost;
+
+            while (!open.isEmpty())
+            {
+                float bound = s.getIncumbent();
+                if (open.peekKey() >= bound)
+                    return false;
+
+                float g = open.peekCost();
+                int cell = open.pop();
+
+                // Устаревшая запись: до ячейки уже найден более дешевый путь.
+                if (g > cost[cell])
+                    continue;
+
+                int x = cell % s.width;
+                int y = cell / s.width;
+                for (int i = 0; i < 8; i++)
+                {
+                    int nx = x + GridPathfinder.NEIGHBOUR_DX[i];
+                    int ny = y + GridPathfinder.NEIGHBOUR_DY[i];
+                    if (nx < 0 || nx >= s.width || ny < 0 || ny >= s.height)
+                        continue;
+
+                    int next = ny * s.width + nx;
+                    float nextCost = g + GridPathfinder.NEIGHBOUR_COST[i];
+                    nextCost += s.cells.get(next);
+
+                    // Чужую стоимость можно прочитать без синхронизации: она только
+                    // уменьшается, поэтому устаревшее значение лишь не отсечет вершину.
+                    if (nextCost >= AStarPathfinder.COST_LIMIT || nextCost >= cost[next] ||
+                        nextCost + s.estimate(nx, ny) >= bound)
+                    {
+                        continue;
+                    }
+
+                    int owner = s.owner(nx, ny);
+                    if (owner == id)
+                        relax(next, nextCost, cell);
+                    else
+                        send(owner, next, nextCost, cell);
+                }
+                return true;
+            }
+
+            return false;
+        }
+
+        /** Принимает вершину, если путь до нее дешевле известного. **/
+        private void relax(int cell, float g, int prev)
+        {
+            Search s = search;
+            if (g >= s.cost[cell])
+                return;
+
+            s.cost[cell] = g;
+            s.previous[cell] = prev;
+            if (cell == s.finish)
+                s.offerIncumbent(g);
+            else
+                open.push(g + s.estimate(cell % s.width, cell / s.width), g, cell);
+        }
+
+        private void receive(Batch batch)
+        {
+            for (int i = 0; i < batch.size; i++)
+                relax(batch.cells[i], batch.costs[i], batch.previous[i]);
+        }
+
+        private void send(int owner, int cell, float g, int prev)
+        {
+            Batch batch = outgoing[owner];
+            if (batch == null)
+                batch = outgoing[owner] = new Batch();
+
+            batch.add(cell, g, prev);
+            if (batch.size == BATCH_SIZE)
+                post(owner);
+        }
+
+        /** Отправляет все непустые пачки. **/
+        private void flush()
+        {
+            for (int owner = 0; owner < outgoing.length; owner++)
+            {
+                if (outgoing[owner] != null && outgoing[owner].size > 0)
+                    post(owner);
+            }
+        }
+
+        /** Отправляет пачку владельцу; счетчик увеличивается до того, как пачку можно получить. **/
+        private void post(int owner)
+        {
+            search.work.incrementAndGet();
+            search.workers[owner].inbox.add(outgoing[owner]);
+            outgoing[owner] = null;
+        }
+    }
+
+
+    /** Пачка вершин, отправляемая владельцу. **/
+    private static class Batch
+    {
+        final int[] cells = new int[BATCH_SIZE];
+        final float[] costs = new float[BATCH_SIZE];
+        final int[] previous = new int[BATCH_SIZE];
+        int size;
+
+        void add(int cell, float cost, int prev)
+        {
+            cells[size] = cell;
+            costs[size] = cost;
+            previous[size] = prev;
+            size++;
+        }
+    }
+
+
+    /**
+     * Двоичная мин-куча ячеек по оценке полной стоимости. Уменьшение ключа
+     * не поддерживается: ячейка добавляется заново, а устаревшие записи
+     * отбрасываются при извлечении по сохраненной стоимости пути.
+     **/
+    private static class OpenList
+    {
+        private float[] keys = new float[256];
+        private float[] costs = new float[256];
+        private int[] cells = new int[256];
+        private int size;
+
+        boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        float peekKey()
+        {
+            return keys[0];
+        }
+
+        float peekCost()
+        {
+            return costs[0];
+        }
+
+        void push(float key, float cost, int cell)
+        {
+            if (size == keys.length)
+            {
+                keys = Arrays.copyOf(keys, size * 2);
+                costs = Arrays.copyOf(costs, size * 2);
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+
+            int i = size++;
+            while (i > 0)
+            {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key)
+                    break;
+                keys[i] = keys[parent];
+                costs[i] = costs[parent];
+                cells[i] = cells[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            costs[i] = cost;
+            cells[i] = cell;
+        }
+
+        int pop()
+        {
+            int top = cells[0];
+            size--;
+            float key = keys[size];
+            float cost = costs[size];
+            int cell = cells[size];
+
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half)
+            {
+                int child = 2 * i + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child])
+                    child++;
+                if (key <= keys[child])
+                    break;
+                keys[i] = keys[child];
+                costs[i] = costs[child];
+                cells[i] = cells[child];
+                i = child;
+            }
+            keys[i] = key;
+            costs[i] = cost;
+            cells[i] = cell;
+            return top;
+        }
+    }
+}
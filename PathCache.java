@@ -0,0 +1,311 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Кэш результатов {@link AStarPathfinder#computePath} с вытеснением давно
+ * не использованных записей (LRU). Записи хранятся по ключу
+ * (карта, начало, финиш); карта сравнивается по ссылке.
+ * <p>
+ * Кэш подписывается на изменения ячеек каждой карты, для которой в нем есть записи
+ * или выполняется поиск.
+ * Если стоимость ячейки выросла, удаляются только пути, проходящие через нее:
+ * остальные пути от этого не подорожали и остались кратчайшими. Если стоимость
+ * уменьшилась, через ячейку мог появиться более дешевый путь, поэтому удаляются
+ * все записи этой карты. Записи, проходящие через ячейку, находятся по индексу
+ * «ячейка - записи», который ведется для каждой карты, поэтому изменение
+ * не просматривает весь кэш. Кроме того, результат, вычисленный во время изменения
+ * карты (ее {@link Map2D#getVersion() версия} за время поиска поменялась),
+ * в кэш не попадает.
+ * <p>
+ * Возвращаемые путевые точки общие для всех, кто получил их из кэша,
+ * поэтому их нельзя изменять. Все методы потокобезопасны.
+ **/
+public class PathCache
+{
+    /** Наибольшее количество записей в кэше. **/
+    private final int maxEntries;
+
+    /** Записи в порядке использования: первой идет давно не использованная. **/
+    private final LinkedHashMap<Key, Entry> entries;
+
+    /** Подписки на изменения и количество записей для каждой карты. **/
+    private final IdentityHashMap<Map2D, MapRecord> maps = new IdentityHashMap<>();
+
+    /** Количество запросов, найденных в кэше. **/
+    private long hits;
+
+    /** Количество запросов, для которых пришлось выполнить поиск. **/
+    private long misses;
+
+
+    /** Создает кэш, хранящий не больше указанного количества путей. **/
+    public PathCache(int maxEntries)
+    {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be positive; got " + maxEntries);
+
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** Возвращает путь между начальным и конечным местоположениями карты. **/
+    public Waypoint computePath(Map2D map)
+    {
+        return computePath(map, map.getStart(), map.getFinish());
+    }
+
+    /**
+     * Возвращает путь между указанными местоположениями из кэша или,
+     * если его там нет, вычисляет и запоминает его. Результат такой же, как у
+     * {@link AStarPathfinder#computePath(Map2D, Location, Location)}.
+     **/
+    public Waypoint computePath(Map2D map, Location startLoc, Location finishLoc)
+    {
+        if (map == null)
+            throw new NullPointerException("map cannot be null");
+
+        Key key = new Key(map, startLoc, finishLoc);
+        MapRecord record;
+        long version;
+        synchronized (this)
+        {
+            Entry entry = entries.get(key);
+            if (entry != null)
+            {
+                hits++;
+                return entry.path;
+            }
+            misses++;
+
+            // Подписка на карту оформляется до чтения версии. Иначе изменение,
+            // сделанное после проверки версии, но до подписки, оставило бы в кэше
+            // устаревший путь: проверка его уже пропустила, а уведомление не пришло.
+            record = retain(map);
+            version = map.getVersion();
+        }
+
+        // Поиск выполняется без блокировки, чтобы не задерживать другие запросы.
+        Waypoint path = null;
+        boolean computed = false;
+        try
+        {
+            path = AStarPathfinder.computePath(map, startLoc, finishLoc);
+            computed = true;
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                // После clear() подписка этого запроса отменена, и путь не запоминается.
+                if (computed && maps.get(map) == record && map.getVersion() == version &&
+                    !entries.containsKey(key))
+                {
+                    put(key, new Entry(path, pathCells(map, path)));
+                }
+                release(map, record);
+            }
+        }
+        return path;
+    }
+
+    /** Возвращает количество запросов, найденных в кэше. **/
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /** Возвращает количество запросов, для которых пришлось выполнить поиск. **/
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /** Возвращает количество записей в кэше. **/
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /** Удаляет все записи и отписывается от изменений всех карт. **/
+    public synchronized void clear()
+    {
+        for (Map.Entry<Map2D, MapRecord> e : maps.entrySet())
+            e.getKey().removeChangeListener(e.getValue());
+        maps.clear();
+        entries.clear();
+    }
+
+    /** Добавляет запись и при необходимости вытесняет самую старую. **/
+    private void put(Key key, Entry entry)
+    {
+        MapRecord record = retain(key.map);
+        entries.put(key, entry);
+        record.keys.add(key);
+        for (int cell : entry.cells)
+            record.keysByCell.computeIfAbsent(cell, c -> new HashSet<>()).add(key);
+
+        if (entries.size() > maxEntries)
+        {
+            Iterator<Key> eldest = entries.keySet().iterator();
+            remove(eldest.next());
+        }
+    }
+
+    /** Удаляет запись и убирает ее из индекса ее карты. **/
+    private void remove(Key key)
+    {
+        Entry entry = entries.remove(key);
+        MapRecord record = maps.get(key.map);
+        record.keys.remove(key);
+        for (int cell : entry.cells)
+        {
+            Set<Key> keys = record.keysByCell.get(cell);
+            keys.remove(key);
+            if (keys.isEmpty())
+                record.keysByCell.remove(cell);
+        }
+        release(key.map, record);
+    }
+
+    /**
+     * Учитывает новую запись или выполняющийся поиск карты и возвращает подписку
+     * на ее изменения, при необходимости подписываясь.
+     **/
+    private MapRecord retain(Map2D map)
+    {
+        MapRecord record = maps.get(map);
+        if (record == null)
+        {
+            record = new MapRecord();
+            maps.put(map, record);
+            map.addChangeListener(record);
+        }
+        record.count++;
+        return record;
+    }
+
+    /**
+     * Учитывает удаление записи или завершение поиска карты;
+     * когда их не осталось, отписывается от карты.
+     **/
+    private void release(Map2D map, MapRecord record)
+    {
+        if (--record.count == 0)
+        {
+            if (maps.get(map) == record)
+                maps.remove(map);
+            map.removeChangeListener(record);
+        }
+    }
+
+    /** Удаляет записи карты, затронутые изменением ячейки. **/
+    private synchronized void cellChanged(MapRecord record, Map2D map, int cell, boolean cheaper)
+    {
+        // Уведомление могло прийти уже после clear(): записи этой подписки удалены.
+        if (maps.get(map) != record)
+            return;
+
+        Set<Key> affected = cheaper ? record.keys : record.keysByCell.get(cell);
+        if (affected == null)
+            return;
+
+        for (Key key : new ArrayList<>(affected))
+            remove(key);
+    }
+
+    /** Возвращает индексы ячеек пути без повторов. **/
+    private static int[] pathCells(Map2D map, Waypoint path)
+    {
+        int length = 0;
+        for (Waypoint wp = path; wp != null; wp = wp.getPrevious())
+            length++;
+
+        int[] cells = new int[length];
+        int i = 0;
+        for (Waypoint wp = path; wp != null; wp = wp.getPrevious())
+            cells[i++] = wp.getLocation().yCoord * map.getWidth() + wp.getLocation().xCoord;
+        return cells;
+    }
+
+
+    /**
+     * Ключ записи. Координаты копируются, потому что {@link Location} изменяем.
+     **/
+    private static class Key
+    {
+        final Map2D map;
+        final int startX;
+        final int startY;
+        final int finishX;
+        final int finishY;
+
+        Key(Map2D map, Location startLoc, Location finishLoc)
+        {
+            this.map = map;
+            this.startX = startLoc.xCoord;
+            this.startY = startLoc.yCoord;
+            this.finishX = finishLoc.xCoord;
+            this.finishY = finishLoc.yCoord;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+                return false;
+
+            Key other = (Key) o;
+            return map == other.map && startX == other.startX && startY == other.startY &&
+                   finishX == other.finishX && finishY == other.finishY;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int h = System.identityHashCode(map);
+            h = 31 * h + startX;
+            h = 31 * h + startY;
+            h = 31 * h + finishX;
+            return 31 * h + finishY;
+        }
+    }
+
+    /** Запись кэша: путь (или <code>null</code>, если пути нет) и его ячейки. **/
+    private static class Entry
+    {
+        final Waypoint path;
+        final int[] cells;
+
+        Entry(Waypoint path, int[] cells)
+        {
+            this.path = path;
+            this.cells = cells;
+        }
+    }
+
+    /** Подписка кэша на изменения одной карты. **/
+    private class MapRecord implements MapChangeListener
+    {
+        /** Количество записей этой карты в кэше и выполняющихся для нее поисков. **/
+        int count;
+
+        /** Ключи записей этой карты. **/
+        final Set<Key> keys = new HashSet<>();
+
+        /** Ключи записей этой карты, пути которых проходят через ячейку. **/
+        final Map<Integer, Set<Key>> keysByCell = new HashMap<>();
+
+        @Override
+        public void cellChanged(Map2D map, int x, int y, int oldValue, int newValue)
+        {
+            PathCache.this.cellChanged(this, map, y * map.getWidth() + x, newValue < oldValue);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+/**
+ * Этот класс выполняет поиск пути {@link AStarPathfinder} в фоновом потоке.
+ * Каждый новый запрос отменяет предыдущий: еще не начатый поиск просто снимается
+ * с очереди, а выполняющийся прерывается (см. {@link AStarPathfinder#computePath(Map2D)}).
+ * Запрос можно отложить на указанное время; если за это время придет следующий
+ * запрос, выполнится только он. Так повторные запросы во время рисования
+ * препятствий сливаются в один поиск.
+ * <p>
+ * Результат передается обработчику через указанный исполнитель, например
+ * <code>SwingUtilities::invokeLater</code>, и только если запрос все еще последний.
+ * Карту можно изменять во время поиска: если ее {@link Map2D#getVersion() версия}
+ * за время поиска изменилась, поиск повторяется, так что результат всегда
+ * соответствует какому-то состоянию карты целиком.
+ **/
+public class PathPlanner implements AutoCloseable
+{
+    /** Поток, в котором выполняются поиски. **/
+    private final ScheduledThreadPoolExecutor executor;
+
+    /** Исполнитель, через который результат передается обработчику. **/
+    private final Executor callbackExecutor;
+
+    /** Последний запланированный поиск или <code>null</code>. **/
+    private ScheduledFuture<?> pending;
+
+    /** Номер последнего запроса. **/
+    private long generation;
+
+
+    /** Создает объект, передающий результаты через указанный исполнитель. **/
+    public PathPlanner(Executor callbackExecutor)
+    {
+        if (callbackExecutor == null)
+            throw new NullPointerException("callbackExecutor cannot be null");
+
+        this.callbackExecutor = callbackExecutor;
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable ->
+        {
+            Thread thread = new Thread(runnable, "path-planner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Запрашивает путь между начальным и конечным местоположениями карты через
+     * <code>delayMillis</code> миллисекунд и отменяет предыдущий запрос.
+     * Обработчик получит путевую точку последнего шага пути или <code>null</code>,
+     * если путь не найден.
+     **/
+    public synchronized void request(Map2D map, long delayMillis, Consumer<Waypoint> callback)
+    {
+        if (map == null)
+            throw new NullPointerException("map cannot be null");
+        if (callback == null)
+            throw new NullPointerException("callback cannot be null");
+
+        cancelPending();
+        long id = ++generation;
+        pending = executor.schedule(() -> search(map, callback, id),
+                                    Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /** Отменяет последний запрос; его обработчик не будет вызван. **/
+    public synchronized void cancel()
+    {
+        cancelPending();
+        generation++;
+    }
+
+    /** Отменяет запросы и останавливает фоновый поток. **/
+    @Override
+    public synchronized void close()
+    {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    /** Отменяет запланированный или выполняющийся поиск. **/
+    private void cancelPending()
+    {
+        if (pending != null)
+        {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    /** Возвращает true, если запрос с указанным номером все еще последний. **/
+    private synchronized boolean isCurrent(long id)
+    {
+        return id == generation;
+    }
+
+    /** Выполняет поиск в фоновом потоке и передает результат обработчику. **/
+    private void search(Map2D map, Consumer<Waypoint> callback, long id)
+    {
+        Waypoint path;
+        try
+        {
+            long version;
+            do
+            {
+                version = map.getVersion();
+                path = AStarPathfinder.computePath(map);
+            }
+            while (map.getVersion() != version && isCurrent(id));
+        }
+        catch (CancellationException e)
+        {
+            return;
+        }
+
+        Waypoint result = path;
+        callbackExecutor.execute(() ->
+        {
+            if (isCurrent(id))
+                callback.accept(result);
+        });
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Этот класс представляет один запрос на поиск пути: пару из начального и
+ * конечного местоположений. Объекты этого класса неизменяемы.
+ **/
+public final class PathQuery
+{
+    /** Место, откуда начинается путь. **/
+    private final Location start;
+
+    /** Место, где путь должен закончиться. **/
+    private final Location finish;
+
+
+    /** Создает запрос на поиск пути между указанными местоположениями. **/
+    public PathQuery(Location start, Location finish)
+    {
+        if (start == null || finish == null)
+            throw new NullPointerException("start and finish cannot be null");
+
+        // Location изменяем, поэтому храним собственные копии.
+        this.start = new Location(start.xCoord, start.yCoord);
+        this.finish = new Location(finish.xCoord, finish.yCoord);
+    }
+
+    /** Создает запрос на поиск пути между указанными координатами. **/
+    public PathQuery(int startX, int startY, int finishX, int finishY)
+    {
+        this(new Location(startX, startY), new Location(finishX, finishY));
+    }
+
+    /** Возвращает начальное местоположение запроса. **/
+    public Location getStart()
+    {
+        return new Location(start.xCoord, start.yCoord);
+    }
+
+    /** Возвращает конечное местоположение запроса. **/
+    public Location getFinish()
+    {
+        return new Location(finish.xCoord, finish.yCoord);
+    }
+}
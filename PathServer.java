@@ -0,0 +1,758 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Сервер поиска путей без графического интерфейса. Он принимает соединения TCP
+ * на локальном адресе и ищет пути {@link GridPathfinder} по картам, загруженным
+ * при запуске (см. {@link AStarApp#main} с ключом <code>--server</code>).
+ * Карты только читаются, поэтому их можно обрабатывать в нескольких потоках сразу.
+ * <p>
+ * Протокол двоичный, все числа - 32-битные со старшим байтом вперед.
+ * Запрос содержит номер запроса, номер карты (в порядке загрузки), количество
+ * запросов пути (не больше {@link #MAX_QUERIES_PER_REQUEST}) и для каждого из них
+ * координаты начала и конца:
+ * <pre>
+ *   int requestId, int mapId, int count, count * (int startX, int startY, int finishX, int finishY)
+ * </pre>
+ * Ответ содержит номер запроса, состояние ({@link #STATUS_OK} и др.), количество путей
+ * и для каждого пути количество ячеек, его стоимость и координаты ячеек от начала до конца;
+ * если путь не найден, количество ячеек равно 0, а стоимость бесконечна:
+ * <pre>
+ *   int requestId, int status, int count, count * (int length, float cost, length * (int x, int y))
+ * </pre>
+ * Клиент может отправлять запросы, не дожидаясь ответов; ответы приходят в порядке
+ * запросов. Запросы одного соединения решаются параллельно в общем пуле потоков,
+ * но одновременно решается не больше {@link #PIPELINE_DEPTH} запросов соединения.
+ * Ответ кодируется и отправляется по одному пути, как только путь найден, и не
+ * собирается в памяти целиком.
+ * <p>
+ * Память сервера ограничена независимо от количества и поведения клиентов:
+ * одновременно открыто не больше {@link #MAX_CONNECTIONS} соединений (лишние сразу
+ * закрываются), а во всех соединениях вместе решается или ждет отправки
+ * не больше {@link #MAX_QUERIES_IN_FLIGHT} запросов пути, из них в одном соединении -
+ * не больше {@link #MAX_QUERIES_PER_CONNECTION}. Когда любой из этих
+ * пределов или очередь пула заполнены, сервер перестает читать соединение,
+ * и клиента сдерживает управление потоком TCP.
+ * <p>
+ * Клиент, который отправляет запросы, но не читает ответы, не может задержать
+ * остальных навсегда: если запись в сокет соединения не завершилась за отведенное
+ * время (по умолчанию {@link #DEFAULT_WRITE_TIMEOUT_MILLIS}), сервер закрывает
+ * соединение и возвращает разрешения его запросов.
+ **/
+public class PathServer implements AutoCloseable
+{
+    /** Порт по умолчанию. **/
+    public static final int DEFAULT_PORT = 7070;
+
+    /** Наибольшее количество запросов пути в одном запросе. **/
+    public static final int MAX_QUERIES_PER_REQUEST = 1 << 16;
+
+    /** Наибольшее количество запросов одного соединения, которые решаются одновременно. **/
+    public static final int PIPELINE_DEPTH = 64;
+
+    /** Наибольшее количество одновременно открытых соединений. **/
+    public static final int MAX_CONNECTIONS = 256;
+
+    /**
+     * Наибольшее количество запросов пути во всех соединениях, которые прочитаны,
+     * но ответы на которые еще не отправлены. Один запрос должен в него помещаться,
+     * поэтому значение не меньше {@link #MAX_QUERIES_PER_REQUEST}.
+     **/
+    public static final int MAX_QUERIES_IN_FLIGHT = 4 * MAX_QUERIES_PER_REQUEST;
+
+    /**
+     * Наибольшее количество запросов пути одного соединения, которые прочитаны,
+     * но ответы на которые еще не отправлены. Оно меньше {@link #MAX_QUERIES_IN_FLIGHT},
+     * поэтому одно соединение не может занять все разрешения сервера.
+     **/
+    public static final int MAX_QUERIES_PER_CONNECTION = MAX_QUERIES_PER_REQUEST;
+
+    /** Время по умолчанию, за которое должна завершиться запись в сокет соединения. **/
+    public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = 30_000;
+
+    /** Состояние ответа: пути найдены. **/
+    public static final int STATUS_OK = 0;
+
+    /** Состояние ответа: неизвестная карта или координаты за пределами карты. **/
+    public static final int STATUS_BAD_REQUEST = 1;
+
+    /**
+     * Состояние ответа: количество запросов пути вне допустимого диапазона.
+     * После такого ответа сервер закрывает соединение.
+     **/
+    public static final int STATUS_BAD_FRAME = 2;
+
+    /**
+     * Состояние ответа: при поиске произошла ошибка. Если ошибка произошла
+     * после того, как часть путей уже отправлена, ответ нельзя завершить,
+     * и сервер закрывает соединение.
+     **/
+    public static final int STATUS_ERROR = 3;
+
+    /** Размер буферов ввода и вывода соединения. **/
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Признак конца очереди ответов соединения. **/
+    private static final Response END = new Response(0);
+
+    /** Карты в порядке загрузки. **/
+    private final Map2D[] maps;
+
+    /** Сокет, принимающий соединения. **/
+    private final ServerSocket serverSocket;
+
+    /** Пул потоков, в котором решаются запросы. **/
+    private final ThreadPoolExecutor workers;
+
+    /** Поток, принимающий соединения. **/
+    private final Thread acceptor;
+
+    /** Поток, закрывающий соединения, запись в которые не завершилась вовремя. **/
+    private final ScheduledExecutorService watchdog;
+
+    /** Время, за которое должна завершиться запись в сокет соединения. **/
+    private final long writeTimeoutNanos;
+
+    /** Открытые соединения. **/
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    /** Свободные места для соединений, см. {@link #MAX_CONNECTIONS}. **/
+    private final Semaphore connectionSlots = new Semaphore(MAX_CONNECTIONS);
+
+    /**
+     * Разрешения на запросы пути, см. {@link #MAX_QUERIES_IN_FLIGHT}. Семафор честный,
+     * чтобы запросы с большим количеством путей не ждали бесконечно.
+     **/
+    private final Semaphore queryPermits = new Semaphore(MAX_QUERIES_IN_FLIGHT, true);
+
+    /** Становится true после вызова {@link #close()}. **/
+    private volatile boolean closed;
+
+
+    /**
+     * Запускает сервер для указанных карт на указанном порту локального адреса
+     * (0 - любой свободный порт), решающий запросы в указанном количестве потоков.
+     **/
+    public PathServer(List<Map2D> maps, int port, int numThreads) throws IOException
+    {
+        this(maps, port, numThreads, DEFAULT_WRITE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * То же самое, что и {@link #PathServer(List, int, int)}, но соединение закрывается,
+     * если запись в его сокет не завершилась за указанное количество миллисекунд.
+     **/
+    public PathServer(List<Map2D> maps, int port, int numThreads, long writeTimeoutMillis)
+            throws IOException
+    {
+        if (maps.isEmpty())
+            throw new IllegalArgumentException("at least one map is required");
+        if (numThreads <= 0)
+            throw new IllegalArgumentException("numThreads must be > 0; got " + numThreads);
+        if (writeTimeoutMillis <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "writeTimeoutMillis must be > 0; got " + writeTimeoutMillis);
+        }
+
+        this.maps = maps.toArray(new Map2D[0]);
+        for (Map2D map : this.maps)
+        {
+            if (map == null)
+                throw new NullPointerException("maps cannot contain null");
+        }
+
+        // Когда очередь пула заполнена, запрос решает сам поток чтения соединения
+        // и на это время перестает читать новые запросы. В отличие от CallerRunsPolicy,
+        // запрос решается и после остановки пула, чтобы поток записи не ждал его вечно.
+        this.workers = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(numThreads * PIPELINE_DEPTH),
+                runnable -> daemon(runnable, "path-server-worker"),
+                (runnable, executor) -> runnable.run());
+
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        long period = Math.max(1, writeTimeoutMillis / 4);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(
+                runnable -> daemon(runnable, "path-server-watchdog"));
+        watchdog.scheduleWithFixedDelay(this::closeStalledConnections, period, period,
+                                        TimeUnit.MILLISECONDS);
+
+        this.acceptor = new Thread(this::acceptLoop, "path-server-acceptor");
+        acceptor.start();
+    }
+
+    /** Возвращает порт, на котором сервер принимает соединения. **/
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Ждет, пока сервер не будет закрыт. **/
+    public void join() throws InterruptedException
+    {
+        acceptor.join();
+    }
+
+    /** Перестает принимать соединения, закрывает открытые соединения и останавливает пул. **/
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        try
+        {
+            serverSocket.close();
+        }
+        finally
+        {
+            for (Connection connection : connections)
+                closeQuietly(connection.socket);
+            workers.shutdown();
+            watchdog.shutdownNow();
+        }
+    }
+
+    /** Создает поток-демон с указанным именем. **/
+    private static Thread daemon(Runnable runnable, String name)
+    {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /** Принимает соединения, пока сервер не будет закрыт. **/
+    private void acceptLoop()
+    {
+        while (!closed)
+        {
+            Socket socket;
+            try
+            {
+                socket = serverSocket.accept();
+            }
+            catch (IOException e)
+            {
+                if (closed)
+                    return;
+                continue;
+            }
+
+            try
+            {
+                socket.setTcpNoDelay(true);
+            }
+            catch (IOException e)
+            {
+                closeQuietly(socket);
+                continue;
+            }
+
+            // Соединение сверх предела сразу закрывается, а не ждет своей очереди.
+            if (!connectionSlots.tryAcquire())
+            {
+                closeQuietly(socket);
+                continue;
+            }
+
+            Connection connection = new Connection(socket);
+            connections.add(connection);
+            if (closed)
+            {
+                closeQuietly(socket);
+                connections.remove(connection);
+                connectionSlots.release();
+                return;
+            }
+
+            String name = "path-server-" + socket.getPort();
+            daemon(() -> readLoop(connection), name + "-reader").start();
+            daemon(() -> writeLoop(connection), name + "-writer").start();
+        }
+    }
+
+    /**
+     * Закрывает соединения, запись в сокет которых длится дольше отведенного времени.
+     * Заблокированная запись после этого завершается ошибкой, и поток записи
+     * дочитывает очередь ответов, возвращая их разрешения.
+     **/
+    private void closeStalledConnections()
+    {
+        long now = System.nanoTime();
+        for (Connection connection : connections)
+        {
+            if (connection.isWriteStalled(now, writeTimeoutNanos))
+                closeQuietly(connection.socket);
+        }
+    }
+
+    /**
+     * Читает запросы соединения и ставит их решение в очередь ответов.
+     * Когда соединение закончилось или сломалось, ставит в очередь {@link #END}.
+     **/
+    private void readLoop(Connection connection)
+    {
+        BlockingQueue<Response> pending = connection.pending;
+        try
+        {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(connection.socket.getInputStream(), BUFFER_SIZE));
+
+            while (true)
+            {
+                int requestId;
+                try
+                {
+                    requestId = in.readInt();
+                }
+                catch (EOFException e)
+                {
+                    break;
+                }
+
+                int mapId = in.readInt();
+                int count = in.readInt();
+                if (count < 0 || count > MAX_QUERIES_PER_REQUEST)
+                {
+                    // Дальнейшие байты нельзя разобрать, поэтому соединение закрывается.
+                    Response error = new Response(0);
+                    error.add(encodeStatus(requestId, STATUS_BAD_FRAME));
+                    error.finish();
+                    pending.put(error);
+                    break;
+                }
+
+                // Разрешения берутся до чтения координат и возвращаются потоком записи
+                // после отправки ответа. Сначала берутся разрешения соединения, поэтому
+                // соединение, которое не успевает отправлять ответы, ждет только их.
+                connection.queryPermits.acquire(count);
+                try
+                {
+                    queryPermits.acquire(count);
+                }
+                catch (InterruptedException e)
+                {
+                    connection.queryPermits.release(count);
+                    throw e;
+                }
+
+                Response response = new Response(count);
+                int[] coords = new int[count * 4];
+                try
+                {
+                    for (int i = 0; i < coords.length; i++)
+                        coords[i] = in.readInt();
+
+                    pending.put(response);
+                }
+                catch (IOException | InterruptedException e)
+                {
+                    releasePermits(connection, count);
+                    throw e;
+                }
+                workers.execute(() -> solve(requestId, mapId, coords, response));
+            }
+        }
+        catch (IOException | InterruptedException e)
+        {
+            // Соединение закрыто; поток записи узнает об этом из очереди.
+        }
+        finally
+        {
+            putEnd(pending);
+        }
+    }
+
+    /**
+     * Записывает ответы в порядке запросов, а части каждого ответа - по мере того,
+     * как они готовы. Буфер выталкивается в сокет, только когда готовых частей
+     * не осталось, поэтому ответы на конвейер запросов отправляются крупными блоками.
+     * Если соединение сломалось, ответы все равно дочитываются из очереди до
+     * {@link #END}, чтобы вернуть их разрешения и не остановить поток чтения.
+     **/
+    private void writeLoop(Connection connection)
+    {
+        Socket socket = connection.socket;
+        BlockingQueue<Response> pending = connection.pending;
+        BufferedOutputStream out = null;
+        boolean failed = false;
+        try
+        {
+            out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        }
+        catch (IOException e)
+        {
+            failed = true;
+        }
+
+        try
+        {
+            while (true)
+            {
+                Response response = pending.poll();
+                if (response == null)
+                {
+                    failed = failed || !flush(out, connection);
+                    response = pending.take();
+                }
+
+                if (response == END)
+                    break;
+
+                try
+                {
+                    while (true)
+                    {
+                        ByteBuffer chunk = response.poll();
+                        if (chunk == null)
+                        {
+                            failed = failed || !flush(out, connection);
+                            chunk = response.take();
+                        }
+
+                        if (chunk == Response.DONE)
+                            break;
+
+                        if (chunk == Response.FAILED)
+                        {
+                            // Ответ оборван на середине, его уже нельзя завершить.
+                            failed = true;
+                            closeQuietly(socket);
+                            continue;
+                        }
+
+                        if (!failed)
+                            failed = !write(out, connection, chunk);
+                    }
+                }
+                finally
+                {
+                    releasePermits(connection, response.queries);
+                }
+            }
+
+            if (!failed)
+                flush(out, connection);
+        }
+        catch (InterruptedException e)
+        {
+            // Соединение закрывается ниже.
+        }
+        finally
+        {
+            closeQuietly(socket);
+            connections.remove(connection);
+            connectionSlots.release();
+        }
+    }
+
+    /** Возвращает разрешения на указанное количество запросов пути соединения. **/
+    private void releasePermits(Connection connection, int count)
+    {
+        queryPermits.release(count);
+        connection.queryPermits.release(count);
+    }
+
+    /**
+     * Записывает часть ответа в поток вывода. Если соединение сломалось,
+     * закрывает сокет и возвращает false.
+     **/
+    private static boolean write(BufferedOutputStream out, Connection connection,
+                                 ByteBuffer chunk)
+    {
+        connection.beginWrite();
+        try
+        {
+            out.write(chunk.array(), 0, chunk.limit());
+            return true;
+        }
+        catch (IOException e)
+        {
+            closeQuietly(connection.socket);
+            return false;
+        }
+        finally
+        {
+            connection.endWrite();
+        }
+    }
+
+    /**
+     * Выталкивает буфер вывода в сокет. Если соединение сломалось,
+     * закрывает сокет и возвращает false.
+     **/
+    private static boolean flush(BufferedOutputStream out, Connection connection)
+    {
+        connection.beginWrite();
+        try
+        {
+            out.flush();
+            return true;
+        }
+        catch (IOException e)
+        {
+            closeQuietly(connection.socket);
+            return false;
+        }
+        finally
+        {
+            connection.endWrite();
+        }
+    }
+
+    /** Ставит признак конца в очередь ответов, даже если поток был прерван. **/
+    private static void putEnd(BlockingQueue<Response> pending)
+    {
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                pending.put(END);
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Решает запросы пути одного запроса и добавляет закодированный ответ в
+     * <code>response</code>: заголовок вместе с первым путем, затем каждый путь
+     * отдельно, как только он найден.
+     **/
+    private void solve(int requestId, int mapId, int[] coords, Response response)
+    {
+        try
+        {
+            solvePaths(requestId, mapId, coords, response);
+        }
+        finally
+        {
+            response.finish();
+        }
+    }
+
+    /** Кодирует ответ для {@link #solve}, не завершая его. **/
+    private void solvePaths(int requestId, int mapId, int[] coords, Response response)
+    {
+        if (mapId < 0 || mapId >= maps.length)
+        {
+            response.add(encodeStatus(requestId, STATUS_BAD_REQUEST));
+            return;
+        }
+
+        Map2D map = maps[mapId];
+        int count = coords.length / 4;
+
+        Location[] ends = new Location[count * 2];
+        for (int i = 0; i < ends.length; i++)
+        {
+            ends[i] = new Location(coords[2 * i], coords[2 * i + 1]);
+            if (!map.contains(ends[i]))
+            {
+                response.add(encodeStatus(requestId, STATUS_BAD_REQUEST));
+                return;
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES);
+        header.putInt(requestId).putInt(STATUS_OK).putInt(count);
+        header.flip();
+        if (count == 0)
+        {
+            response.add(header);
+            return;
+        }
+
+        PathfinderContext ctx = null;
+        boolean started = false;
+        try
+        {
+            ctx = PathfinderContext.borrow(map);
+            for (int i = 0; i < count; i++)
+            {
+                Waypoint path = GridPathfinder.computePath(map, ends[2 * i], ends[2 * i + 1], ctx);
+
+                // Заголовок отправляется вместе с первым путем: если первый поиск
+                // завершится ошибкой, вместо него еще можно отправить STATUS_ERROR.
+                if (!started)
+                {
+                    response.add(header);
+                    started = true;
+                }
+                response.add(encodePath(path));
+            }
+        }
+        catch (RuntimeException e)
+        {
+            response.add(started ? Response.FAILED : encodeStatus(requestId, STATUS_ERROR));
+        }
+        finally
+        {
+            if (ctx != null)
+                PathfinderContext.release(ctx);
+        }
+    }
+
+    /** Кодирует количество ячеек, стоимость и координаты ячеек пути. **/
+    private static ByteBuffer encodePath(Waypoint path)
+    {
+        int length = 0;
+        for (Waypoint wp = path; wp != null; wp = wp.getPrevious())
+            length++;
+
+        ByteBuffer chunk = ByteBuffer.allocate(2 * Integer.BYTES + length * 2 * Integer.BYTES);
+        chunk.putInt(length);
+        chunk.putFloat(path != null ? path.getPreviousCost() : Float.POSITIVE_INFINITY);
+
+        // Цепочка путевых точек идет от конца пути, а координаты пишутся от начала.
+        int pos = chunk.capacity();
+        for (Waypoint wp = path; wp != null; wp = wp.getPrevious())
+        {
+            pos -= 2 * Integer.BYTES;
+            chunk.putInt(pos, wp.getLocation().xCoord);
+            chunk.putInt(pos + Integer.BYTES, wp.getLocation().yCoord);
+        }
+
+        chunk.position(chunk.capacity());
+        chunk.flip();
+        return chunk;
+    }
+
+    /** Возвращает ответ без путей с указанным состоянием. **/
+    private static ByteBuffer encodeStatus(int requestId, int status)
+    {
+        ByteBuffer response = ByteBuffer.allocate(3 * Integer.BYTES);
+        response.putInt(requestId).putInt(status).putInt(0);
+        response.flip();
+        return response;
+    }
+
+    /** Закрывает сокет, не выбрасывая исключений. **/
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            // Сокет уже закрыт.
+        }
+    }
+
+
+    /** Открытое соединение: сокет, очередь ответов и разрешения его запросов. **/
+    private static class Connection
+    {
+        final Socket socket;
+
+        /** Ответы в порядке запросов; их отправляет поток записи. **/
+        final BlockingQueue<Response> pending = new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+
+        /** Разрешения на запросы пути этого соединения, см. {@link #MAX_QUERIES_PER_CONNECTION}. **/
+        final Semaphore queryPermits = new Semaphore(MAX_QUERIES_PER_CONNECTION);
+
+        /** Время начала текущей записи в сокет ({@link System#nanoTime()}). **/
+        private volatile long writeStartNanos;
+
+        /** Становится true на время записи в сокет. **/
+        private volatile boolean writing;
+
+        Connection(Socket socket)
+        {
+            this.socket = socket;
+        }
+
+        /** Отмечает начало записи в сокет. **/
+        void beginWrite()
+        {
+            writeStartNanos = System.nanoTime();
+            writing = true;
+        }
+
+        /** Отмечает конец записи в сокет. **/
+        void endWrite()
+        {
+            writing = false;
+        }
+
+        /** Возвращает true, если запись в сокет длится дольше указанного времени. **/
+        boolean isWriteStalled(long now, long timeoutNanos)
+        {
+            return writing && now - writeStartNanos > timeoutNanos;
+        }
+    }
+
+    /**
+     * Ответ на один запрос, который поток поиска добавляет по частям, а поток записи
+     * отправляет по мере готовности. Последняя часть - {@link #DONE}.
+     **/
+    private static class Response
+    {
+        /** Признак конца ответа. **/
+        static final ByteBuffer DONE = ByteBuffer.allocate(0);
+
+        /** Признак ответа, оборванного ошибкой после отправки части путей. **/
+        static final ByteBuffer FAILED = ByteBuffer.allocate(0);
+
+        /** Количество разрешений {@link PathServer#queryPermits}, которые держит ответ. **/
+        final int queries;
+
+        /** Готовые, но еще не отправленные части ответа. **/
+        private final BlockingQueue<ByteBuffer> chunks = new LinkedBlockingQueue<>();
+
+        Response(int queries)
+        {
+            this.queries = queries;
+        }
+
+        void add(ByteBuffer chunk)
+        {
+            chunks.add(chunk);
+        }
+
+        /** Завершает ответ. **/
+        void finish()
+        {
+            chunks.add(DONE);
+        }
+
+        /** Возвращает следующую готовую часть или <code>null</code>, если ее еще нет. **/
+        ByteBuffer poll()
+        {
+            return chunks.poll();
+        }
+
+        /** Ждет следующую часть ответа. **/
+        ByteBuffer take() throws InterruptedException
+        {
+            return chunks.take();
+        }
+    }
+}
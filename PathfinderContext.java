@@ -0,0 +1,188 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+
+/**
+ * Этот класс хранит все рабочие массивы поиска {@link GridPathfinder} для
+ * карты определенного размера, чтобы их можно было повторно использовать
+ * между запросами. Вместо очистки массивов используются «поколения»:
+ * значение ячейки действительно, только если ее отметка совпадает с текущим
+ * поколением, поэтому {@link #reset()} выполняется за время, пропорциональное
+ * размеру открытого набора, а не размеру карты.
+ * Контекст не является потокобезопасным; каждый поток должен использовать свой.
+ * <p>
+ * Контексты можно брать на время запроса из общего пула методом {@link #borrow}
+ * и возвращать методом {@link #release}. Пул хранит не больше
+ * {@link #MAX_IDLE_CONTEXTS} свободных контекстов, поэтому память под рабочие массивы
+ * не растет с количеством потоков, когда-либо выполнявших поиск.
+ **/
+public class PathfinderContext
+{
+    /** Наибольшее количество свободных контекстов в общем пуле. **/
+    public static final int MAX_IDLE_CONTEXTS = Runtime.getRuntime().availableProcessors();
+
+    /** Свободные контексты общего пула; недавно возвращенные идут первыми. **/
+    private static final ArrayDeque<PathfinderContext> IDLE = new ArrayDeque<>();
+
+    /** Ширина карт, для которых подходит этот контекст. **/
+    private final int width;
+
+    /** Высота карт, для которых подходит этот контекст. **/
+    private final int height;
+
+    /** Стоимость пути от начала до каждой ячейки. **/
+    final float[] prevCost;
+
+    /** Предыдущая ячейка на лучшем известном пути к каждой ячейке. **/
+    final int[] previous;
+
+    /** Отметки поколения, при котором ячейка была достигнута. **/
+    private final int[] reached;
+
+    /** Отметки поколения закрытого набора, при котором ячейка была закрыта. **/
+    private final int[] closed;
+
+    /** Открытый набор ячеек. **/
+    final CellHeap open;
+
+    /** Номер текущего поколения; всегда больше нуля. **/
+    private int generation = 1;
+
+    /**
+     * Номер текущего поколения закрытого набора; всегда больше нуля.
+     * Он меняется вместе с {@link #generation}, а также при {@link #clearClosed()}.
+     **/
+    private int closedGeneration = 1;
+
+
+    /** Создает контекст для карт указанной ширины и высоты. **/
+    public PathfinderContext(int width, int height)
+    {
+        if (width <= 0 || height <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "width and height must be positive values; got " + width +
+                    "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+
+        int numCells = Math.multiplyExact(width, height);
+        prevCost = new float[numCells];
+        previous = new int[numCells];
+        reached = new int[numCells];
+        closed = new int[numCells];
+        open = new CellHeap(numCells);
+    }
+
+    /**
+     * Берет из общего пула свободный контекст, подходящий для указанной карты,
+     * или создает новый. Когда запрос завершен, контекст следует вернуть методом
+     * {@link #release}; контекст, который не вернули, просто достанется сборщику мусора.
+     **/
+    public static PathfinderContext borrow(Map2D map)
+    {
+        synchronized (IDLE)
+        {
+            for (Iterator<PathfinderContext> it = IDLE.iterator(); it.hasNext(); )
+            {
+                PathfinderContext ctx = it.next();
+                if (ctx.fits(map))
+                {
+                    it.remove();
+                    return ctx;
+                }
+            }
+        }
+
+        return new PathfinderContext(map.getWidth(), map.getHeight());
+    }
+
+    /**
+     * Возвращает контекст, взятый методом {@link #borrow}, в общий пул. Если в пуле
+     * уже {@link #MAX_IDLE_CONTEXTS} свободных контекстов, давно не использованный
+     * отбрасывается. После возврата контекст нельзя использовать.
+     **/
+    public static void release(PathfinderContext ctx)
+    {
+        if (ctx == null)
+            throw new NullPointerException("ctx cannot be null");
+
+        synchronized (IDLE)
+        {
+            IDLE.addFirst(ctx);
+            if (IDLE.size() > MAX_IDLE_CONTEXTS)
+                IDLE.removeLast();
+        }
+    }
+
+    /** Возвращает true, если этот контекст можно использовать для указанной карты. **/
+    public boolean fits(Map2D map)
+    {
+        return map.getWidth() == width && map.getHeight() == height;
+    }
+
+    /**
+     * Подготавливает контекст к новому запросу. Все ячейки становятся
+     * недостигнутыми и незакрытыми, открытый набор очищается.
+     **/
+    public void reset()
+    {
+        open.clear();
+        generation++;
+
+        // При переполнении счетчика отметки приходится очистить полностью.
+        if (generation == Integer.MAX_VALUE)
+        {
+            Arrays.fill(reached, 0);
+            generation = 1;
+        }
+
+        clearClosed();
+    }
+
+    /**
+     * Делает все ячейки незакрытыми, сохраняя стоимости путей и открытый набор.
+     * Нужно для поиска, который повторно раскрывает вершины, например {@link AnytimePathfinder}.
+     **/
+    void clearClosed()
+    {
+        closedGeneration++;
+        if (closedGeneration == Integer.MAX_VALUE)
+        {
+            Arrays.fill(closed, 0);
+            closedGeneration = 1;
+        }
+    }
+
+    /**
+     * Возвращает стоимость пути до ячейки в текущем запросе
+     * или бесконечность, если ячейка еще не достигнута.
+     **/
+    float getPrevCost(int cell)
+    {
+        return reached[cell] == generation ? prevCost[cell] : Float.POSITIVE_INFINITY;
+    }
+
+    /** Запоминает стоимость пути до ячейки и предыдущую ячейку на этом пути. **/
+    void setPrevCost(int cell, float cost, int prev)
+    {
+        reached[cell] = generation;
+        prevCost[cell] = cost;
+        previous[cell] = prev;
+    }
+
+    /** Возвращает true, если ячейка закрыта в текущем запросе. **/
+    boolean isClosed(int cell)
+    {
+        return closed[cell] == closedGeneration;
+    }
+
+    /** Помечает ячейку как закрытую в текущем запросе. **/
+    void close(int cell)
+    {
+        closed[cell] = closedGeneration;
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+
+/**
+ * Хранилище ячеек, сжатое кодированием длин серий: каждая строка карты хранится
+ * как последовательность серий одинаковых значений. На картах с большими
+ * однородными областями оно занимает в десятки раз меньше памяти, чем
+ * {@link HeapCellStorage}, при любых значениях стоимости.
+ * <p>
+ * Хранилище создается методом {@link #compress} из готовой карты и доступно
+ * только для чтения: {@link #set} выбрасывает {@link UnsupportedOperationException}.
+ * Значение ячейки находится двоичным поиском по сериям ее строки.
+ * Поскольку хранилище не изменяется, оно потокобезопасно.
+ **/
+public class RunLengthCellStorage implements CellStorage
+{
+    /** Ширина карты. **/
+    private final int width;
+
+    /** Количество ячеек в хранилище. **/
+    private final long size;
+
+    /**
+     * Номер первой серии каждой строки; последний элемент равен количеству серий.
+     * Серии строки y имеют номера от <code>rowStart[y]</code> до <code>rowStart[y + 1]</code>.
+     **/
+    private final int[] rowStart;
+
+    /** Координата X первой ячейки каждой серии. **/
+    private final int[] runX;
+
+    /** Значение ячеек каждой серии. **/
+    private final int[] runValue;
+
+
+    /** Создает хранилище из уже построенных серий. **/
+    private RunLengthCellStorage(int width, int height, int[] rowStart,
+                                 int[] runX, int[] runValue)
+    {
+        this.width = width;
+        this.size = (long) width * height;
+        this.rowStart = rowStart;
+        this.runX = runX;
+        this.runValue = runValue;
+    }
+
+    /** Создает сжатую копию ячеек указанной карты. **/
+    public static RunLengthCellStorage compress(Map2D map)
+    {
+        return compress(map.getStorage(), map.getWidth(), map.getHeight());
+    }
+
+    /**
+     * Создает сжатую копию указанного хранилища ячеек карты указанного размера.
+     * Размер хранилища должен быть равен <code>width * height</code>.
+     **/
+    public static RunLengthCellStorage compress(CellStorage cells, int width, int height)
+    {
+        if (cells == null)
+            throw new NullPointerException("cells cannot be null");
+
+        if (width <= 0 || height <= 0 || cells.size() != (long) width * height)
+        {
+            throw new IllegalArgumentException("storage of " + cells.size() +
+                    " cells does not match a " + width + "x" + height + " map");
+        }
+
+        int[] rowStart = new int[height + 1];
+        int[] runX = new int[Math.max(16, height)];
+        int[] runValue = new int[runX.length];
+        int runs = 0;
+
+        for (int y = 0; y < height; y++)
+        {
+            rowStart[y] = runs;
+            long index = (long) y * width;
+
+            for (int x = 0; x < width; x++)
+            {
+                int value = cells.get(index + x);
+                if (x > 0 && value == runValue[runs - 1])
+                    continue;
+
+                if (runs == runX.length)
+                {
+                    if (runs == Integer.MAX_VALUE - 8)
+                        throw new IllegalArgumentException("map has too many runs to compress");
+
+                    int capacity = (int) Math.min(Integer.MAX_VALUE - 8, runs * 2L);
+                    runX = Arrays.copyOf(runX, capacity);
+                    runValue = Arrays.copyOf(runValue, capacity);
+                }
+
+                runX[runs] = x;
+                runValue[runs] = value;
+                runs++;
+            }
+        }
+        rowStart[height] = runs;
+
+        return new RunLengthCellStorage(width, height, rowStart,
+                Arrays.copyOf(runX, runs), Arrays.copyOf(runValue, runs));
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+
+    /** Возвращает количество серий во всех строках. **/
+    public int getRunCount()
+    {
+        return runX.length;
+    }
+
+    @Override
+    public int get(long index)
+    {
+        int y = (int) (index / width);
+        int x = (int) (index - (long) y * width);
+
+        // Ищется последняя серия строки, которая начинается не правее ячейки.
+        int low = rowStart[y];
+        int high = rowStart[y + 1] - 1;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (runX[mid] <= x)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+
+        return runValue[low];
+    }
+
+    @Override
+    public boolean isCompact()
+    {
+        return true;
+    }
+
+    /** Всегда выбрасывает {@link UnsupportedOperationException}: хранилище только для чтения. **/
+    @Override
+    public void set(long index, int value)
+    {
+        throw new UnsupportedOperationException("run-length storage is read-only");
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * Этот интерфейс получает уведомления о ходе поиска {@link AStarPathfinder}
+ * и позволяет, например, записать трассировку медленного запроса.
+ * Методы вызываются в потоке поиска для каждой вершины, поэтому должны быть быстрыми.
+ * Если объект не передан в поиск, уведомления не создаются и поиск не замедляется.
+ **/
+public interface SearchListener
+{
+    /**
+     * Вызывается для каждой путевой точки, созданной шагом поиска (а также для начальной).
+     * <code>added</code> равен true, если точка добавлена в открытый набор или заменила
+     * более дорогую точку того же местоположения, и false, если она отброшена.
+     **/
+    void waypointGenerated(Waypoint wp, boolean added);
+
+    /** Вызывается, когда путевая точка раскрыта и перемещена в закрытый набор. **/
+    void waypointClosed(Waypoint wp);
+}
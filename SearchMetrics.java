@@ -0,0 +1,158 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/**
+ * Сводная статистика всех запросов к {@link AStarPathfinder}. Единственный объект
+ * регистрируется на платформенном сервере MBean при первом обращении к классу.
+ * Счетчики не требуют блокировок, поэтому запись статистики из многих потоков
+ * почти ничего не стоит.
+ **/
+public class SearchMetrics implements SearchMetricsMXBean
+{
+    /** Имя, под которым объект зарегистрирован в JMX. **/
+    public static final String OBJECT_NAME = "AStarPathfinder:type=SearchMetrics";
+
+    /** Единственный объект статистики. **/
+    private static final SearchMetrics INSTANCE = new SearchMetrics();
+
+    static
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer()
+                             .registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        }
+        catch (InstanceAlreadyExistsException e)
+        {
+            // Класс загружен повторно другим загрузчиком; публикуется первый объект.
+        }
+        catch (JMException e)
+        {
+            throw new IllegalStateException("cannot register " + OBJECT_NAME, e);
+        }
+    }
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder failedSearches = new LongAdder();
+    private final LongAdder nodesExpanded = new LongAdder();
+    private final LongAdder nodesGenerated = new LongAdder();
+    private final LongAdder decreaseKeys = new LongAdder();
+    private final LongAdder totalTimeNanos = new LongAdder();
+    private final LongAccumulator maxNodesExpanded = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxOpenPeak = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxTimeNanos = new LongAccumulator(Math::max, 0);
+
+
+    private SearchMetrics()
+    {
+    }
+
+    /** Возвращает единственный объект статистики. **/
+    public static SearchMetrics getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /** Учитывает статистику одного завершенного поиска. **/
+    void record(SearchStats stats)
+    {
+        searches.increment();
+        if (stats.getPathCost() == Float.POSITIVE_INFINITY)
+            failedSearches.increment();
+
+        nodesExpanded.add(stats.getNodesExpanded());
+        nodesGenerated.add(stats.getNodesGenerated());
+        decreaseKeys.add(stats.getDecreaseKeys());
+        totalTimeNanos.add(stats.getWallTimeNanos());
+        maxNodesExpanded.accumulate(stats.getNodesExpanded());
+        maxOpenPeak.accumulate(stats.getOpenPeak());
+        maxTimeNanos.accumulate(stats.getWallTimeNanos());
+    }
+
+    @Override
+    public long getSearches()
+    {
+        return searches.sum();
+    }
+
+    @Override
+    public long getFailedSearches()
+    {
+        return failedSearches.sum();
+    }
+
+    @Override
+    public long getNodesExpanded()
+    {
+        return nodesExpanded.sum();
+    }
+
+    @Override
+    public long getNodesGenerated()
+    {
+        return nodesGenerated.sum();
+    }
+
+    @Override
+    public long getDecreaseKeys()
+    {
+        return decreaseKeys.sum();
+    }
+
+    @Override
+    public double getMeanNodesExpanded()
+    {
+        long count = searches.sum();
+        return count == 0 ? 0 : (double) nodesExpanded.sum() / count;
+    }
+
+    @Override
+    public long getMaxNodesExpanded()
+    {
+        return maxNodesExpanded.get();
+    }
+
+    @Override
+    public long getMaxOpenPeak()
+    {
+        return maxOpenPeak.get();
+    }
+
+    @Override
+    public double getTotalTimeMillis()
+    {
+        return totalTimeNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getMeanTimeMillis()
+    {
+        long count = searches.sum();
+        return count == 0 ? 0 : totalTimeNanos.sum() / 1e6 / count;
+    }
+
+    @Override
+    public double getMaxTimeMillis()
+    {
+        return maxTimeNanos.get() / 1e6;
+    }
+
+    @Override
+    public void reset()
+    {
+        searches.reset();
+        failedSearches.reset();
+        nodesExpanded.reset();
+        nodesGenerated.reset();
+        decreaseKeys.reset();
+        totalTimeNanos.reset();
+        maxNodesExpanded.reset();
+        maxOpenPeak.reset();
+        maxTimeNanos.reset();
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Сводная статистика всех запросов к {@link AStarPathfinder}, доступная через JMX
+ * (например, в JConsole или VisualVM) под именем {@link SearchMetrics#OBJECT_NAME}.
+ **/
+public interface SearchMetricsMXBean
+{
+    /** Возвращает количество выполненных поисков. **/
+    long getSearches();
+
+    /** Возвращает количество поисков, не нашедших путь. **/
+    long getFailedSearches();
+
+    /** Возвращает общее количество раскрытых вершин. **/
+    long getNodesExpanded();
+
+    /** Возвращает общее количество созданных путевых точек. **/
+    long getNodesGenerated();
+
+    /** Возвращает общее количество уменьшений ключа в открытом наборе. **/
+    long getDecreaseKeys();
+
+    /** Возвращает среднее количество раскрытых вершин на один поиск. **/
+    double getMeanNodesExpanded();
+
+    /** Возвращает наибольшее количество раскрытых вершин в одном поиске. **/
+    long getMaxNodesExpanded();
+
+    /** Возвращает наибольший размер открытого набора в одном поиске. **/
+    long getMaxOpenPeak();
+
+    /** Возвращает общее время поиска в миллисекундах. **/
+    double getTotalTimeMillis();
+
+    /** Возвращает среднее время одного поиска в миллисекундах. **/
+    double getMeanTimeMillis();
+
+    /** Возвращает наибольшее время одного поиска в миллисекундах. **/
+    double getMaxTimeMillis();
+
+    /** Обнуляет всю статистику. **/
+    void reset();
+}
@@ -0,0 +1,14 @@
+/**
+ * Режимы поиска, которые поддерживает {@link AStarPathfinder}.
+ **/
+public enum SearchMode
+{
+    /** Обычный поиск A * от начального местоположения к конечному. **/
+    UNIDIRECTIONAL,
+
+    /**
+     * Двунаправленный поиск A *: фронты растут одновременно от начального
+     * и от конечного местоположений, пока не встретятся.
+     **/
+    BIDIRECTIONAL
+}
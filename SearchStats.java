@@ -0,0 +1,136 @@
+/**
+ * Этот класс собирает статистику одного запроса к {@link AStarPathfinder}.
+ * Объект передается в метод поиска, который заполняет его по ходу работы,
+ * поэтому разные режимы поиска можно сравнивать на одной и той же карте.
+ * Если один объект передать в несколько поисков, счетчики и время суммируются,
+ * размер открытого набора - наибольший из всех, а стоимость пути - последнего поиска.
+ * Сводную статистику всех запросов публикует {@link SearchMetrics}.
+ **/
+public class SearchStats
+{
+    /** Количество раскрытых (перемещенных в закрытый набор) вершин. **/
+    private long nodesExpanded;
+
+    /** Количество созданных путевых точек, включая отброшенные. **/
+    private long nodesGenerated;
+
+    /** Наибольший размер открытого набора. **/
+    private int openPeak;
+
+    /** Количество замен открытой путевой точки более дешевой (уменьшений ключа в куче). **/
+    private long decreaseKeys;
+
+    /** Время поиска в наносекундах. **/
+    private long wallTimeNanos;
+
+    /** Стоимость найденного пути или бесконечность, если путь не найден. **/
+    private float pathCost = Float.NaN;
+
+
+    /** Возвращает количество раскрытых вершин. **/
+    public long getNodesExpanded()
+    {
+        return nodesExpanded;
+    }
+
+    /** Возвращает количество созданных путевых точек, включая отброшенные. **/
+    public long getNodesGenerated()
+    {
+        return nodesGenerated;
+    }
+
+    /**
+     * Возвращает наибольший размер открытого набора.
+     * В двунаправленном режиме учитывается каждое направление отдельно.
+     **/
+    public int getOpenPeak()
+    {
+        return openPeak;
+    }
+
+    /** Возвращает количество уменьшений ключа в открытом наборе. **/
+    public long getDecreaseKeys()
+    {
+        return decreaseKeys;
+    }
+
+    /** Возвращает время поиска в наносекундах. **/
+    public long getWallTimeNanos()
+    {
+        return wallTimeNanos;
+    }
+
+    /**
+     * Возвращает стоимость найденного пути, {@link Float#POSITIVE_INFINITY},
+     * если путь не найден, или NaN, если поиск еще не выполнялся.
+     **/
+    public float getPathCost()
+    {
+        return pathCost;
+    }
+
+    /** Сбрасывает всю статистику, чтобы объект можно было использовать повторно. **/
+    public void reset()
+    {
+        nodesExpanded = 0;
+        nodesGenerated = 0;
+        openPeak = 0;
+        decreaseKeys = 0;
+        wallTimeNanos = 0;
+        pathCost = Float.NaN;
+    }
+
+    /** Отмечает раскрытие еще одной вершины. **/
+    void nodeExpanded()
+    {
+        nodesExpanded++;
+    }
+
+    /** Отмечает создание еще одной путевой точки. **/
+    void nodeGenerated()
+    {
+        nodesGenerated++;
+    }
+
+    /** Учитывает текущий размер открытого набора. **/
+    void openSize(int size)
+    {
+        if (size > openPeak)
+            openPeak = size;
+    }
+
+    /** Отмечает уменьшение ключа в открытом наборе. **/
+    void decreaseKey()
+    {
+        decreaseKeys++;
+    }
+
+    /** Записывает время поиска и стоимость найденного пути (или <code>null</code>). **/
+    void searchFinished(long nanos, Waypoint path)
+    {
+        wallTimeNanos += nanos;
+        pathCost = path != null ? path.getPreviousCost() : Float.POSITIVE_INFINITY;
+    }
+
+    /** Добавляет к этой статистике статистику другого поиска. **/
+    void add(SearchStats other)
+    {
+        nodesExpanded += other.nodesExpanded;
+        nodesGenerated += other.nodesGenerated;
+        openPeak = Math.max(openPeak, other.openPeak);
+        decreaseKeys += other.decreaseKeys;
+        wallTimeNanos += other.wallTimeNanos;
+        pathCost = other.pathCost;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SearchStats[nodesExpanded=" + nodesExpanded +
+               ", nodesGenerated=" + nodesGenerated +
+               ", openPeak=" + openPeak +
+               ", decreaseKeys=" + decreaseKeys +
+               ", wallTimeNanos=" + wallTimeNanos +
+               ", pathCost=" + pathCost + "]";
+    }
+}
@@ -0,0 +1,31 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+
+/**
+ * Этот интерфейс описывает хранилище квадратных плиток карты, из которых
+ * {@link TiledCellStorage} подгружает ячейки по требованию. Плитка содержит
+ * <code>tileSize * tileSize</code> ячеек построчно; плитки нумеруются построчно,
+ * начиная с левого верхнего угла карты. Крайние плитки хранятся целиком,
+ * их ячейки за границей карты не используются.
+ **/
+public interface TileStore extends Closeable
+{
+    /** Возвращает ширину карты в ячейках. **/
+    int getWidth();
+
+    /** Возвращает высоту карты в ячейках. **/
+    int getHeight();
+
+    /** Возвращает двоичный логарифм размера стороны плитки в ячейках. **/
+    int getTileShift();
+
+    /**
+     * Читает плитку с указанным номером в массив. Плитка, которая еще
+     * ни разу не записывалась, состоит из нулей.
+     **/
+    void readTile(long tile, int[] cells) throws IOException;
+
+    /** Записывает плитку с указанным номером из массива. **/
+    void writeTile(long tile, int[] cells) throws IOException;
+}
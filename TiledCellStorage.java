@@ -0,0 +1,260 @@
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Хранилище ячеек, которое подгружает квадратные плитки карты из {@link TileStore}
+ * по требованию. В памяти держится не больше указанного количества плиток;
+ * при нехватке места вытесняется плитка, к которой дольше всего не обращались (LRU),
+ * а если ее ячейки изменялись, она сначала записывается обратно в хранилище.
+ * Поэтому карта может быть намного больше памяти: поиск {@link AStarPathfinder}
+ * читает только плитки рядом с раскрытыми вершинами. Для таких карт
+ * {@link Map2D#isReachable} не строит разметку связных областей.
+ * <p>
+ * Пример карты, плитки которой хранятся в файле:
+ * <pre>
+ *   FileTileStore store = FileTileStore.create(path, width, height, 8);
+ *   TiledCellStorage cells = new TiledCellStorage(store, 1024);
+ *   Map2D map = new Map2D(width, height, cells);
+ *   ...
+ *   cells.close();
+ * </pre>
+ * Количество попаданий в кэш и промахов показывают {@link #getTileHits()}
+ * и {@link #getTileMisses()}. Ошибки ввода-вывода при чтении и записи ячеек
+ * выбрасываются как {@link UncheckedIOException}. Методы потокобезопасны.
+ **/
+public class TiledCellStorage implements CellStorage, Flushable, Closeable
+{
+    /** Хранилище плиток. **/
+    private final TileStore store;
+
+    /** Ширина карты. **/
+    private final int width;
+
+    /** Двоичный логарифм стороны плитки. **/
+    private final int tileShift;
+
+    /** Маска координаты ячейки внутри плитки. **/
+    private final int tileMask;
+
+    /** Количество плиток в строке плиток. **/
+    private final long tilesPerRow;
+
+    /** Количество ячеек карты. **/
+    private final long size;
+
+    /** Наибольшее количество плиток в памяти. **/
+    private final int maxTiles;
+
+    /** Плитки в памяти в порядке обращения к ним: первая - самая давняя. **/
+    private final LinkedHashMap<Long, Tile> tiles;
+
+    /** Плитка последнего обращения; большинство обращений попадает в нее. **/
+    private Tile lastTile;
+
+    private long tileHits;
+    private long tileMisses;
+    private long evictions;
+    private long writeBacks;
+
+
+    /** Плитка в памяти. **/
+    private static class Tile
+    {
+        final long index;
+        final int[] cells;
+        boolean dirty;
+
+        Tile(long index, int[] cells)
+        {
+            this.index = index;
+            this.cells = cells;
+        }
+    }
+
+
+    /**
+     * Создает хранилище ячеек поверх указанного хранилища плиток,
+     * которое держит в памяти не больше <code>maxTiles</code> плиток.
+     **/
+    public TiledCellStorage(TileStore store, int maxTiles)
+    {
+        if (store == null)
+            throw new NullPointerException("store cannot be null");
+        if (maxTiles <= 0)
+            throw new IllegalArgumentException("maxTiles must be > 0; got " + maxTiles);
+
+        this.store = store;
+        this.width = store.getWidth();
+        this.tileShift = store.getTileShift();
+        this.tileMask = (1 << tileShift) - 1;
+        this.tilesPerRow = ((long) width + tileMask) >>> tileShift;
+        this.size = (long) width * store.getHeight();
+        this.maxTiles = maxTiles;
+        this.tiles = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isPaged()
+    {
+        return true;
+    }
+
+    @Override
+    public synchronized int get(long index)
+    {
+        long y = index / width;
+        int x = (int) (index - y * width);
+        return tileFor(x, y).cells[offset(x, y)];
+    }
+
+    @Override
+    public synchronized void set(long index, int value)
+    {
+        long y = index / width;
+        int x = (int) (index - y * width);
+        Tile tile = tileFor(x, y);
+        tile.cells[offset(x, y)] = value;
+        tile.dirty = true;
+    }
+
+    /** Возвращает количество обращений к ячейкам, плитка которых уже была в памяти. **/
+    public synchronized long getTileHits()
+    {
+        return tileHits;
+    }
+
+    /** Возвращает количество обращений к ячейкам, для которых пришлось загрузить плитку. **/
+    public synchronized long getTileMisses()
+    {
+        return tileMisses;
+    }
+
+    /** Возвращает количество плиток, вытесненных из памяти. **/
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /** Возвращает количество измененных плиток, записанных обратно в хранилище. **/
+    public synchronized long getWriteBacks()
+    {
+        return writeBacks;
+    }
+
+    /** Возвращает количество плиток, находящихся в памяти. **/
+    public synchronized int getCachedTiles()
+    {
+        return tiles.size();
+    }
+
+    /** Записывает все измененные плитки в хранилище, оставляя их в памяти. **/
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        for (Tile tile : tiles.values())
+            writeBack(tile);
+    }
+
+    /** Записывает измененные плитки и закрывает хранилище плиток. **/
+    @Override
+    public synchronized void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            tiles.clear();
+            lastTile = null;
+            store.close();
+        }
+    }
+
+    /** Возвращает плитку, содержащую ячейку (x, y), загружая ее при необходимости. **/
+    private Tile tileFor(int x, long y)
+    {
+        long index = (y >>> tileShift) * tilesPerRow + (x >>> tileShift);
+        Tile tile = lastTile;
+        if (tile != null && tile.index == index)
+        {
+            tileHits++;
+            return tile;
+        }
+
+        tile = tiles.get(index);
+        if (tile != null)
+        {
+            tileHits++;
+        }
+        else
+        {
+            tileMisses++;
+            tile = load(index);
+        }
+
+        lastTile = tile;
+        return tile;
+    }
+
+    /** Загружает плитку из хранилища, при необходимости вытесняя самую давнюю. **/
+    private Tile load(long index)
+    {
+        try
+        {
+            int[] cells = null;
+            if (tiles.size() >= maxTiles)
+            {
+                Iterator<Map.Entry<Long, Tile>> eldest = tiles.entrySet().iterator();
+                Tile victim = eldest.next().getValue();
+                writeBack(victim);
+                eldest.remove();
+                evictions++;
+
+                // Массив вытесненной плитки используется повторно.
+                cells = victim.cells;
+            }
+
+            if (cells == null)
+                cells = new int[1 << (2 * tileShift)];
+
+            store.readTile(index, cells);
+            Tile tile = new Tile(index, cells);
+            tiles.put(index, tile);
+            return tile;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("cannot load tile " + index, e);
+        }
+    }
+
+    /** Записывает плитку в хранилище, если она изменялась. **/
+    private void writeBack(Tile tile) throws IOException
+    {
+        if (tile.dirty)
+        {
+            store.writeTile(tile.index, tile.cells);
+            tile.dirty = false;
+            writeBacks++;
+        }
+    }
+
+    /** Возвращает индекс ячейки (x, y) внутри ее плитки. **/
+    private int offset(int x, long y)
+    {
+        return (((int) y & tileMask) << tileShift) | (x & tileMask);
+    }
+}
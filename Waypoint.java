@@ -25,6 +25,11 @@ public class Waypoint
      **/
     private float remainingCost;
 
+    /**
+     Позиция этой путевой точки в открытом наборе {@link OpenSet} или -1, если точка не находится в нем.
+     **/
+    int heapIndex = -1;
+
 
     /**
      Создайте новую путевую точку для указанного местоположения.
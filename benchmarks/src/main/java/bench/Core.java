@@ -0,0 +1,169 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+
+/**
+ * Доступ к классам основного проекта. Они лежат в пакете по умолчанию,
+ * а JMH не принимает бенчмарки без пакета, поэтому классы находятся по имени,
+ * а их методы вызываются через {@link MethodHandle}. Ссылки хранятся
+ * в статических final-полях, и JIT встраивает вызовы так же, как прямые.
+ **/
+final class Core
+{
+    /** Map2D(int, int) **/
+    static final MethodHandle NEW_MAP;
+
+    /** Map2D.setCellValue(int, int, int) **/
+    static final MethodHandle SET_CELL_VALUE;
+
+    /** Map2D.getCellValue(int, int) **/
+    static final MethodHandle GET_CELL_VALUE;
+
+    /** Map2D.setStart(Location) **/
+    static final MethodHandle SET_START;
+
+    /** Map2D.setFinish(Location) **/
+    static final MethodHandle SET_FINISH;
+
+    /** Location(int, int) **/
+    static final MethodHandle NEW_LOCATION;
+
+    /** AStarPathfinder.computePath(Map2D) **/
+    static final MethodHandle COMPUTE_PATH;
+
+    /** Waypoint.getPreviousCost() **/
+    static final MethodHandle GET_PREVIOUS_COST;
+
+    /** Waypoint(Location, Waypoint) **/
+    static final MethodHandle NEW_WAYPOINT;
+
+    /** Waypoint.setCosts(float, float) **/
+    static final MethodHandle SET_COSTS;
+
+    /** Waypoint.getLocation() **/
+    static final MethodHandle GET_LOCATION;
+
+    /** AStarState(Map2D) **/
+    static final MethodHandle NEW_STATE;
+
+    /** AStarState.addOpenWaypoint(Waypoint) **/
+    static final MethodHandle ADD_OPEN_WAYPOINT;
+
+    /** AStarState.getMinOpenWaypoint() **/
+    static final MethodHandle GET_MIN_OPEN_WAYPOINT;
+
+    /** AStarState.closeWaypoint(Location) **/
+    static final MethodHandle CLOSE_WAYPOINT;
+
+    /** OpenWaypointHeap() **/
+    static final MethodHandle NEW_BINARY_HEAP;
+
+    /** BucketWaypointQueue() **/
+    static final MethodHandle NEW_BUCKET_QUEUE;
+
+    /** OpenSet.add(Waypoint) **/
+    static final MethodHandle OPEN_SET_ADD;
+
+    /** OpenSet.poll() **/
+    static final MethodHandle OPEN_SET_POLL;
+
+    /** Waypoint.getTotalCost() **/
+    static final MethodHandle GET_TOTAL_COST;
+
+    static
+    {
+        try
+        {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> map = Class.forName("Map2D");
+            Class<?> location = Class.forName("Location");
+            Class<?> waypoint = Class.forName("Waypoint");
+            Class<?> state = Class.forName("AStarState");
+            Class<?> pathfinder = Class.forName("AStarPathfinder");
+            Class<?> openSet = Class.forName("OpenSet");
+
+            NEW_MAP = erase(lookup.findConstructor(map,
+                    MethodType.methodType(void.class, int.class, int.class)));
+            SET_CELL_VALUE = erase(lookup.findVirtual(map, "setCellValue",
+                    MethodType.methodType(void.class, int.class, int.class, int.class)));
+            GET_CELL_VALUE = erase(lookup.findVirtual(map, "getCellValue",
+                    MethodType.methodType(int.class, int.class, int.class)));
+            SET_START = erase(lookup.findVirtual(map, "setStart",
+                    MethodType.methodType(void.class, location)));
+            SET_FINISH = erase(lookup.findVirtual(map, "setFinish",
+                    MethodType.methodType(void.class, location)));
+            NEW_LOCATION = erase(lookup.findConstructor(location,
+                    MethodType.methodType(void.class, int.class, int.class)));
+            COMPUTE_PATH = erase(lookup.findStatic(pathfinder, "computePath",
+                    MethodType.methodType(waypoint, map)));
+            GET_PREVIOUS_COST = erase(lookup.findVirtual(waypoint, "getPreviousCost",
+                    MethodType.methodType(float.class)));
+            NEW_WAYPOINT = erase(lookup.findConstructor(waypoint,
+                    MethodType.methodType(void.class, location, waypoint)));
+            SET_COSTS = erase(lookup.findVirtual(waypoint, "setCosts",
+                    MethodType.methodType(void.class, float.class, float.class)));
+            GET_LOCATION = erase(lookup.findVirtual(waypoint, "getLocation",
+                    MethodType.methodType(location)));
+            NEW_STATE = erase(lookup.findConstructor(state,
+                    MethodType.methodType(void.class, map)));
+            ADD_OPEN_WAYPOINT = erase(lookup.findVirtual(state, "addOpenWaypoint",
+                    MethodType.methodType(boolean.class, waypoint)));
+            GET_MIN_OPEN_WAYPOINT = erase(lookup.findVirtual(state, "getMinOpenWaypoint",
+                    MethodType.methodType(waypoint)));
+            CLOSE_WAYPOINT = erase(lookup.findVirtual(state, "closeWaypoint",
+                    MethodType.methodType(void.class, location)));
+            NEW_BINARY_HEAP = erase(lookup.findConstructor(Class.forName("OpenWaypointHeap"),
+                    MethodType.methodType(void.class)));
+            NEW_BUCKET_QUEUE = erase(lookup.findConstructor(Class.forName("BucketWaypointQueue"),
+                    MethodType.methodType(void.class)));
+            OPEN_SET_ADD = erase(lookup.findVirtual(openSet, "add",
+                    MethodType.methodType(void.class, waypoint)));
+            OPEN_SET_POLL = erase(lookup.findVirtual(openSet, "poll",
+                    MethodType.methodType(waypoint)));
+            GET_TOTAL_COST = erase(lookup.findVirtual(waypoint, "getTotalCost",
+                    MethodType.methodType(float.class)));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Core()
+    {
+    }
+
+    /** Заменяет в типе метода все классы проекта на Object. **/
+    private static MethodHandle erase(MethodHandle handle)
+    {
+        return handle.asType(handle.type().erase());
+    }
+
+    /**
+     * Создает карту Map2D по сгенерированным ячейкам.
+     * Начало - левый верхний угол, финиш - правый нижний.
+     **/
+    static Object newMap(GeneratedMap generated) throws Throwable
+    {
+        int width = generated.width;
+        int height = generated.height;
+        Object map = (Object) NEW_MAP.invokeExact(width, height);
+
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                int value = generated.cells[y * width + x];
+                if (value != 0)
+                    SET_CELL_VALUE.invokeExact(map, x, y, value);
+            }
+        }
+
+        SET_START.invokeExact(map, (Object) NEW_LOCATION.invokeExact(0, 0));
+        SET_FINISH.invokeExact(map, (Object) NEW_LOCATION.invokeExact(width - 1, height - 1));
+        return map;
+    }
+}
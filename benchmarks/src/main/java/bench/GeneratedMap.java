@@ -0,0 +1,190 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * Воспроизводимые карты для бенчмарков. Одинаковые вид, размер и зерно
+ * всегда дают одинаковую карту, поэтому результаты разных запусков сравнимы.
+ * Левый верхний и правый нижний углы всегда проходимы.
+ **/
+public final class GeneratedMap
+{
+    /** Значение непроходимой ячейки, как в {@code AStarApp}. **/
+    static final int BLOCKED = Integer.MAX_VALUE;
+
+    /** Виды карт. **/
+    public enum Kind
+    {
+        /** Карта без препятствий. **/
+        OPEN,
+        /** Случайные препятствия, 10% ячеек. **/
+        RANDOM_10,
+        /** Случайные препятствия, 25% ячеек. **/
+        RANDOM_25,
+        /** Случайные препятствия, 40% ячеек. **/
+        RANDOM_40,
+        /** Лабиринт с коридорами шириной в одну ячейку. **/
+        MAZE,
+        /** Проходимые ячейки с плавно меняющейся стоимостью от 0 до 9. **/
+        WEIGHTED
+    }
+
+    final int width;
+    final int height;
+    final int[] cells;
+
+    private GeneratedMap(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        this.cells = new int[Math.multiplyExact(width, height)];
+    }
+
+    /** Разбирает размер вида "ШИРИНАxВЫСОТА" и генерирует карту. **/
+    static GeneratedMap generate(Kind kind, String size, long seed)
+    {
+        int sep = size.indexOf('x');
+        if (sep < 0)
+            throw new IllegalArgumentException("size must look like 40x30: " + size);
+
+        return generate(kind, Integer.parseInt(size.substring(0, sep)),
+                        Integer.parseInt(size.substring(sep + 1)), seed);
+    }
+
+    /** Генерирует карту указанного вида и размера. **/
+    static GeneratedMap generate(Kind kind, int width, int height, long seed)
+    {
+        GeneratedMap map = new GeneratedMap(width, height);
+        Random random = new Random(seed);
+
+        switch (kind)
+        {
+            case OPEN:
+                break;
+            case RANDOM_10:
+                map.scatter(random, 0.10);
+                break;
+            case RANDOM_25:
+                map.scatter(random, 0.25);
+                break;
+            case RANDOM_40:
+                map.scatter(random, 0.40);
+                break;
+            case MAZE:
+                map.carveMaze(random);
+                break;
+            case WEIGHTED:
+                map.weigh(random);
+                break;
+        }
+
+        map.cells[0] = 0;
+        map.cells[map.cells.length - 1] = 0;
+        return map;
+    }
+
+    /** Делает непроходимой случайную долю ячеек. **/
+    private void scatter(Random random, double density)
+    {
+        for (int i = 0; i < cells.length; i++)
+        {
+            if (random.nextDouble() < density)
+                cells[i] = BLOCKED;
+        }
+    }
+
+    /**
+     * Строит лабиринт обходом в глубину по ячейкам с четными координатами.
+     * Для карт с четной шириной или высотой последний столбец или строка
+     * соединяются с лабиринтом, чтобы угол финиша был достижим.
+     **/
+    private void carveMaze(Random random)
+    {
+        Arrays.fill(cells, BLOCKED);
+
+        int cols = (width + 1) / 2;
+        int rows = (height + 1) / 2;
+        boolean[] visited = new boolean[cols * rows];
+        int[] stack = new int[cols * rows];
+        int[] options = new int[4];
+        int top = 0;
+
+        stack[top++] = 0;
+        visited[0] = true;
+        cells[0] = 0;
+
+        while (top > 0)
+        {
+            int node = stack[top - 1];
+            int cx = node % cols;
+            int cy = node / cols;
+
+            int count = 0;
+            if (cx > 0 && !visited[node - 1])
+                options[count++] = node - 1;
+            if (cx + 1 < cols && !visited[node + 1])
+                options[count++] = node + 1;
+            if (cy > 0 && !visited[node - cols])
+                options[count++] = node - cols;
+            if (cy + 1 < rows && !visited[node + cols])
+                options[count++] = node + cols;
+
+            if (count == 0)
+            {
+                top--;
+                continue;
+            }
+
+            int next = options[random.nextInt(count)];
+            int nx = next % cols;
+            int ny = next / cols;
+            visited[next] = true;
+            cells[(2 * ny) * width + 2 * nx] = 0;
+            cells[(cy + ny) * width + (cx + nx)] = 0;
+            stack[top++] = next;
+        }
+
+        // Для четных размеров открываем проход от лабиринта к крайнему столбцу и строке.
+        if (width % 2 == 0)
+        {
+            for (int y = 0; y < height; y += 2)
+                cells[y * width + width - 1] = 0;
+        }
+        if (height % 2 == 0)
+        {
+            for (int x = 0; x < width; x += 2)
+                cells[(height - 1) * width + x] = 0;
+        }
+    }
+
+    /**
+     * Заполняет карту «рельефом»: случайные значения в узлах решетки с шагом 16
+     * билинейно интерполируются, так что соседние ячейки имеют близкую стоимость.
+     **/
+    private void weigh(Random random)
+    {
+        final int step = 16;
+        int gridW = width / step + 2;
+        int gridH = height / step + 2;
+        float[] grid = new float[gridW * gridH];
+        for (int i = 0; i < grid.length; i++)
+            grid[i] = random.nextFloat() * 9;
+
+        for (int y = 0; y < height; y++)
+        {
+            int gy = y / step;
+            float fy = (y % step) / (float) step;
+            for (int x = 0; x < width; x++)
+            {
+                int gx = x / step;
+                float fx = (x % step) / (float) step;
+                float top = grid[gy * gridW + gx] * (1 - fx) + grid[gy * gridW + gx + 1] * fx;
+                float bottom = grid[(gy + 1) * gridW + gx] * (1 - fx)
+                             + grid[(gy + 1) * gridW + gx + 1] * fx;
+                cells[y * width + x] = Math.round(top * (1 - fy) + bottom * fy);
+            }
+        }
+    }
+}
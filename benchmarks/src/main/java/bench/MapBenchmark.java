@@ -0,0 +1,100 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Чтение ячеек {@code Map2D.getCellValue}: последовательный проход по строкам
+ * и случайный доступ, который на больших картах упирается в промахи кэша.
+ * Результат приводится к одному чтению ячейки.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MapBenchmark
+{
+    /** Количество чтений за один вызов бенчмарка. **/
+    private static final int READS = 4096;
+
+    @Param({"40x30", "256x256", "1024x1024", "4096x4096"})
+    public String size;
+
+    @Param({"42"})
+    public long seed;
+
+    private Object map;
+    private int width;
+    private int height;
+    private int[] randomX;
+    private int[] randomY;
+    private int row;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable
+    {
+        GeneratedMap generated = GeneratedMap.generate(GeneratedMap.Kind.WEIGHTED, size, seed);
+        map = Core.newMap(generated);
+        width = generated.width;
+        height = generated.height;
+
+        Random random = new Random(seed);
+        randomX = new int[READS];
+        randomY = new int[READS];
+        for (int i = 0; i < READS; i++)
+        {
+            randomX[i] = random.nextInt(width);
+            randomY[i] = random.nextInt(height);
+        }
+    }
+
+    /** Читает READS ячеек подряд, переходя по строкам карты. **/
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public long sequential() throws Throwable
+    {
+        long sum = 0;
+        int x = 0;
+        int y = row;
+        for (int i = 0; i < READS; i++)
+        {
+            sum += (int) Core.GET_CELL_VALUE.invokeExact(map, x, y);
+            if (++x == width)
+            {
+                x = 0;
+                if (++y == height)
+                    y = 0;
+            }
+        }
+        row = y;
+        return sum;
+    }
+
+    /** Читает READS ячеек в случайных местах карты. **/
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public long random() throws Throwable
+    {
+        long sum = 0;
+        for (int i = 0; i < READS; i++)
+            sum += (int) Core.GET_CELL_VALUE.invokeExact(map, randomX[i], randomY[i]);
+        return sum;
+    }
+}
@@ -0,0 +1,105 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Сравнение открытых наборов {@code OpenWaypointHeap} (двоичная куча) и
+ * {@code BucketWaypointQueue} (очередь с корзинами) на нагрузке, похожей на поиск
+ * по сетке: набор заполняется путевыми точками, затем каждая извлеченная точка
+ * дает двух «соседей» со стоимостью больше на шаг 1 или sqrt(2) плюс стоимость
+ * ячейки, и в конце набор опустошается. Стоимости шагов подготовлены заранее.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenSetBenchmark
+{
+    /** Реализация открытого набора. **/
+    @Param({"HEAP", "BUCKET"})
+    public String openSet;
+
+    /** Начальное количество путевых точек; извлекается в четыре раза больше. **/
+    @Param({"1000", "100000"})
+    public int count;
+
+    /** Наибольшая стоимость ячейки в шаге; 0 - карта без весов. **/
+    @Param({"0", "9"})
+    public int maxCellValue;
+
+    @Param({"42"})
+    public long seed;
+
+    private Object location;
+    private float[] initialCosts;
+    private float[] steps;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable
+    {
+        Random random = new Random(seed);
+        location = (Object) Core.NEW_LOCATION.invokeExact(0, 0);
+
+        initialCosts = new float[count];
+        for (int i = 0; i < count; i++)
+            initialCosts[i] = random.nextFloat() * 10;
+
+        steps = new float[8 * count];
+        for (int i = 0; i < steps.length; i++)
+        {
+            float step = random.nextBoolean() ? 1 : (float) Math.sqrt(2);
+            steps[i] = step + random.nextInt(maxCellValue + 1);
+        }
+    }
+
+    /** Возвращает сумму извлеченных стоимостей, чтобы JIT не удалил работу. **/
+    @Benchmark
+    public float searchLikeWorkload() throws Throwable
+    {
+        Object set = "HEAP".equals(openSet)
+                ? (Object) Core.NEW_BINARY_HEAP.invokeExact()
+                : (Object) Core.NEW_BUCKET_QUEUE.invokeExact();
+
+        for (int i = 0; i < count; i++)
+            Core.OPEN_SET_ADD.invokeExact(set, newWaypoint(initialCosts[i]));
+
+        float sum = 0;
+        int step = 0;
+        for (int i = 0; i < 4 * count; i++)
+        {
+            float min = (float) Core.GET_TOTAL_COST.invokeExact((Object) Core.OPEN_SET_POLL.invokeExact(set));
+            sum += min;
+            Core.OPEN_SET_ADD.invokeExact(set, newWaypoint(min + steps[step++]));
+            Core.OPEN_SET_ADD.invokeExact(set, newWaypoint(min + steps[step++]));
+        }
+
+        Object wp;
+        while ((wp = (Object) Core.OPEN_SET_POLL.invokeExact(set)) != null)
+            sum += (float) Core.GET_TOTAL_COST.invokeExact(wp);
+        return sum;
+    }
+
+    private Object newWaypoint(float cost) throws Throwable
+    {
+        Object wp = (Object) Core.NEW_WAYPOINT.invokeExact(location, (Object) null);
+        Core.SET_COSTS.invokeExact(wp, cost, 0f);
+        return wp;
+    }
+}
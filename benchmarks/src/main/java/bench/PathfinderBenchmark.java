@@ -0,0 +1,57 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Полный поиск пути {@code AStarPathfinder.computePath} из левого верхнего угла
+ * в правый нижний. Режим SampleTime дает перцентили задержки, Throughput -
+ * число поисков в секунду; частоту выделения памяти показывает {@code -prof gc}.
+ * Большие карты можно исключить параметром {@code -p size=40x30,256x256}.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PathfinderBenchmark
+{
+    @Param({"40x30", "256x256", "1024x1024", "4096x4096"})
+    public String size;
+
+    @Param({"OPEN", "RANDOM_10", "RANDOM_25", "RANDOM_40", "MAZE", "WEIGHTED"})
+    public GeneratedMap.Kind kind;
+
+    @Param({"42"})
+    public long seed;
+
+    private Object map;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable
+    {
+        map = Core.newMap(GeneratedMap.generate(kind, size, seed));
+    }
+
+    /** Возвращает стоимость пути, чтобы JIT не удалил поиск, или -1, если пути нет. **/
+    @Benchmark
+    public float computePath() throws Throwable
+    {
+        Object path = (Object) Core.COMPUTE_PATH.invokeExact(map);
+        return path == null ? -1 : (float) Core.GET_PREVIOUS_COST.invokeExact(path);
+    }
+}
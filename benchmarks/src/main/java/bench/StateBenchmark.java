@@ -0,0 +1,107 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Операции открытого набора {@code AStarState}. Местоположения и случайные
+ * стоимости заранее подготовлены; каждый вызов создает новое состояние и новые
+ * путевые точки, как это делает поиск, добавляет их (каждую четвертую - повторно
+ * с меньшей стоимостью, что дает уменьшение ключа), а затем извлекает их
+ * по одной через {@code getMinOpenWaypoint} и {@code closeWaypoint}.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateBenchmark
+{
+    /** Количество открытых путевых точек. **/
+    @Param({"1000", "100000"})
+    public int count;
+
+    @Param({"42"})
+    public long seed;
+
+    private Object map;
+    private Object[] locations;
+    private float[] prevCosts;
+    private float[] remainingCosts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable
+    {
+        int side = (int) Math.ceil(Math.sqrt(count));
+        map = Core.newMap(GeneratedMap.generate(GeneratedMap.Kind.OPEN, side, side, seed));
+
+        Random random = new Random(seed);
+        locations = new Object[count];
+        prevCosts = new float[count];
+        remainingCosts = new float[count];
+        for (int i = 0; i < count; i++)
+        {
+            locations[i] = (Object) Core.NEW_LOCATION.invokeExact(i % side, i / side);
+            prevCosts[i] = random.nextFloat() * side * 2;
+            remainingCosts[i] = random.nextFloat() * side;
+        }
+    }
+
+    /** Добавляет все точки, а затем уменьшает ключи четверти из них. **/
+    @Benchmark
+    public Object addOpenWaypoint(Blackhole bh) throws Throwable
+    {
+        return fill(bh);
+    }
+
+    /** Заполняет состояние и извлекает все точки в порядке возрастания стоимости. **/
+    @Benchmark
+    public int addAndPollAll(Blackhole bh) throws Throwable
+    {
+        Object state = fill(bh);
+        int polled = 0;
+        while (true)
+        {
+            Object min = (Object) Core.GET_MIN_OPEN_WAYPOINT.invokeExact(state);
+            if (min == null)
+                return polled;
+            Core.CLOSE_WAYPOINT.invokeExact(state, (Object) Core.GET_LOCATION.invokeExact(min));
+            polled++;
+        }
+    }
+
+    private Object fill(Blackhole bh) throws Throwable
+    {
+        Object state = (Object) Core.NEW_STATE.invokeExact(map);
+        for (int i = 0; i < count; i++)
+            bh.consume((boolean) Core.ADD_OPEN_WAYPOINT.invokeExact(state,
+                    newWaypoint(i, prevCosts[i])));
+        for (int i = 0; i < count; i += 4)
+            bh.consume((boolean) Core.ADD_OPEN_WAYPOINT.invokeExact(state,
+                    newWaypoint(i, prevCosts[i] / 2)));
+        return state;
+    }
+
+    private Object newWaypoint(int i, float prevCost) throws Throwable
+    {
+        Object wp = (Object) Core.NEW_WAYPOINT.invokeExact(locations[i], (Object) null);
+        Core.SET_COSTS.invokeExact(wp, prevCost, remainingCosts[i]);
+        return wp;
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/** Сравнивает пути {@link AStarPathfinder} во всех режимах с эталонным поиском Дейкстры. **/
+class AStarPathfinderTest
+{
+    @Test
+    void unidirectionalAndBidirectionalMatchReference()
+    {
+        Random random = new Random(1);
+        for (int seed = 0; seed < 60; seed++)
+        {
+            int width = 2 + random.nextInt(40);
+            int height = 2 + random.nextInt(40);
+            Map2D map = ReferenceDijkstra.randomMap(seed, width, height, 0.1 + 0.1 * (seed % 4),
+                                                    seed % 2 == 0);
+            Location start = ReferenceDijkstra.randomFreeLocation(random, map);
+            Location finish = ReferenceDijkstra.randomFreeLocation(random, map);
+            float expected = ReferenceDijkstra.distance(map, start, finish);
+
+            for (SearchMode mode : SearchMode.values())
+            {
+                String message = "seed " + seed + ", " + mode;
+                Waypoint path = AStarPathfinder.computePath(map, start, finish, mode, null);
+                ReferenceDijkstra.assertCost(expected, path, message);
+                if (path != null)
+                    ReferenceDijkstra.assertValidPath(map, start, finish, path, message);
+            }
+        }
+    }
+
+    @Test
+    void landmarkHeuristicKeepsPathsOptimal()
+    {
+        Random random = new Random(2);
+        for (int seed = 0; seed < 20; seed++)
+        {
+            Map2D map = ReferenceDijkstra.randomMap(seed, 40, 30, 0.25, true);
+            Location[] ends = new Location[10];
+            for (int i = 0; i < ends.length; i++)
+                ends[i] = ReferenceDijkstra.randomFreeLocation(random, map);
+
+            // Таблицы строятся после того, как ячейки карты перестали изменяться.
+            LandmarkHeuristic landmarks = LandmarkHeuristic.build(map, 4);
+            for (int i = 0; i < ends.length; i += 2)
+            {
+                Waypoint path = AStarPathfinder.computePath(map, ends[i], ends[i + 1],
+                        SearchMode.UNIDIRECTIONAL, landmarks, null);
+                ReferenceDijkstra.assertCost(ReferenceDijkstra.distance(map, ends[i], ends[i + 1]),
+                        path, "seed " + seed + ", query " + i / 2);
+            }
+        }
+    }
+
+    @Test
+    void bidirectionalSearchNoticesInterruptWithinOneCheckInterval()
+    {
+        Map2D map = new Map2D(2000, 50);
+        Location startLoc = new Location(0, 25);
+        Location finishLoc = new Location(map.getWidth() - 1, 25);
+
+        int[] closedAfterInterrupt = new int[1];
+
+        // Поток прерывается сразу после 257-й закрытой вершины прямого поиска: от нее
+        // до следующей проверки по счетчику прямого поиска еще 255 его вершин, а
+        // между ними раскрываются и вершины обратного поиска.
+        SearchListener interrupter = new SearchListener()
+        {
+            private int forwardClosed;
+
+            @Override
+            public void waypointGenerated(Waypoint wp, boolean added)
+            {
+            }
+
+            @Override
+            public void waypointClosed(Waypoint wp)
+            {
+                if (Thread.currentThread().isInterrupted())
+                    closedAfterInterrupt[0]++;
+                else if (startsAt(wp, startLoc) && ++forwardClosed == 257)
+                    Thread.currentThread().interrupt();
+            }
+        };
+
+        try
+        {
+            assertThrows(CancellationException.class, () -> AStarPathfinder.computePath(map,
+                    startLoc, finishLoc, SearchMode.BIDIRECTIONAL, Heuristic.EUCLIDEAN, null,
+                    interrupter));
+        }
+        finally
+        {
+            Thread.interrupted();
+        }
+        assertTrue(closedAfterInterrupt[0] < 256,
+                   "closed " + closedAfterInterrupt[0] + " waypoints after the interrupt");
+    }
+
+    /** Возвращает true, если цепочка путевых точек начинается в <code>loc</code>. **/
+    private static boolean startsAt(Waypoint wp, Location loc)
+    {
+        while (wp.getPrevious() != null)
+            wp = wp.getPrevious();
+        return wp.getLocation().equals(loc);
+    }
+}
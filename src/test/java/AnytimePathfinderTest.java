@@ -0,0 +1,44 @@
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/** Сравнивает результаты {@link AnytimePathfinder} с эталонным поиском Дейкстры. **/
+class AnytimePathfinderTest
+{
+    @Test
+    void convergesToOptimalPathWithoutDeadline()
+    {
+        Random random = new Random(7);
+        for (int seed = 0; seed < 50; seed++)
+        {
+            Map2D map = ReferenceDijkstra.randomMap(seed, 2 + random.nextInt(50),
+                    2 + random.nextInt(50), 0.1 + 0.1 * (seed % 3), seed % 2 == 0);
+            Location start = ReferenceDijkstra.randomFreeLocation(random, map);
+            Location finish = ReferenceDijkstra.randomFreeLocation(random, map);
+            float expected = ReferenceDijkstra.distance(map, start, finish);
+            String message = "seed " + seed;
+
+            AnytimeResult result = new AnytimePathfinder(map).computePath(start, finish, Long.MAX_VALUE,
+                improved ->
+                {
+                    // Каждый промежуточный путь укладывается в свою оценку субоптимальности.
+                    if (improved.getPath() != null && !Float.isInfinite(expected))
+                    {
+                        assertTrue(improved.getPath().getPreviousCost()
+                                <= expected * improved.getBound() * (1 + ReferenceDijkstra.TOLERANCE),
+                                message + ": bound " + improved.getBound() + " does not hold");
+                    }
+                });
+
+            ReferenceDijkstra.assertCost(expected, result.getPath(), message);
+            if (result.getPath() != null)
+            {
+                assertTrue(result.isOptimal(), message);
+                ReferenceDijkstra.assertValidPath(map, start, finish, result.getPath(), message);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * Сравнивает пути {@link BatchPathfinder} с эталонным поиском Дейкстры для пакетов,
+ * которые делятся между несколькими потоками.
+ **/
+class BatchPathfinderTest
+{
+    @Test
+    void batchMatchesReferenceInQueryOrder()
+    {
+        Random random = new Random(6);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            BatchPathfinder pathfinder = new BatchPathfinder(pool);
+            for (int seed = 0; seed < 10; seed++)
+            {
+                Map2D map = ReferenceDijkstra.randomMap(seed, 10 + random.nextInt(50),
+                        10 + random.nextInt(50), 0.25, seed % 2 == 0);
+
+                // Запросов больше порога деления, поэтому пакет решается несколькими задачами.
+                List<PathQuery> queries = new ArrayList<>();
+                for (int i = 0; i < 100; i++)
+                {
+                    queries.add(new PathQuery(ReferenceDijkstra.randomFreeLocation(random, map),
+                                              ReferenceDijkstra.randomFreeLocation(random, map)));
+                }
+
+                Waypoint[] paths = pathfinder.computePaths(map, queries);
+                assertEquals(queries.size(), paths.length);
+                for (int i = 0; i < paths.length; i++)
+                {
+                    PathQuery query = queries.get(i);
+                    String message = "seed " + seed + ", query " + i;
+                    ReferenceDijkstra.assertCost(
+                            ReferenceDijkstra.distance(map, query.getStart(), query.getFinish()),
+                            paths[i], message);
+                    if (paths[i] != null)
+                    {
+                        ReferenceDijkstra.assertValidPath(map, query.getStart(), query.getFinish(),
+                                                          paths[i], message);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsEndpointsOutsideTheMap()
+    {
+        Map2D map = new Map2D(10, 10);
+        List<PathQuery> queries = List.of(new PathQuery(0, 0, 9, 9), new PathQuery(0, 0, 10, 9));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new BatchPathfinder().computePaths(map, queries));
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Сравнивает {@link BucketWaypointQueue} и {@link OpenWaypointHeap} с очередью
+ * {@link PriorityQueue} на монотонной последовательности операций, как в поиске A *.
+ **/
+class BucketWaypointQueueTest
+{
+    @Test
+    void pollsInCostOrder()
+    {
+        for (int seed = 0; seed < 20; seed++)
+        {
+            checkOpenSet(new BucketWaypointQueue(), seed);
+            checkOpenSet(new OpenWaypointHeap(), seed);
+        }
+    }
+
+    /** Выполняет случайные добавления, замены и извлечения и сверяет порядок стоимостей. **/
+    private static void checkOpenSet(OpenSet open, long seed)
+    {
+        Random random = new Random(seed);
+        PriorityQueue<Float> expected = new PriorityQueue<>();
+        List<Waypoint> added = new ArrayList<>();
+        float min = 0;
+
+        for (int op = 0; op < 5000; op++)
+        {
+            int choice = random.nextInt(10);
+            if (choice < 5 || open.isEmpty())
+            {
+                Waypoint wp = waypoint(min + random.nextInt(50) * 0.5f);
+                open.add(wp);
+                added.add(wp);
+                expected.add(wp.getTotalCost());
+            }
+            else if (choice < 7)
+            {
+                // Замена точки в наборе на более дешевую, но не дешевле минимума.
+                Waypoint old = added.get(random.nextInt(added.size()));
+                if (old.heapIndex < 0)
+                    continue;
+
+                Waypoint cheaper = waypoint(Math.max(min, old.getTotalCost() - 1));
+                open.replace(old, cheaper);
+                added.add(cheaper);
+                expected.remove(old.getTotalCost());
+                expected.add(cheaper.getTotalCost());
+            }
+            else
+            {
+                Waypoint wp = open.poll();
+                assertEquals(expected.poll(), wp.getTotalCost(), "seed " + seed + ", op " + op);
+                min = wp.getTotalCost();
+            }
+
+            assertEquals(expected.size(), open.size(), "seed " + seed + ", op " + op);
+        }
+    }
+
+    /** Создает путевую точку с указанной общей стоимостью. **/
+    private static Waypoint waypoint(float totalCost)
+    {
+        Waypoint wp = new Waypoint(new Location(), null);
+        wp.setCosts(totalCost, 0);
+        return wp;
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Проверяет, что {@link ConnectivityIndex}, обновляемый при изменении ячеек,
+ * разделяет ячейки на те же области, что и обход в ширину по текущей карте.
+ **/
+class ConnectivityIndexTest
+{
+    @Test
+    void incrementalUpdatesMatchFreshLabelling()
+    {
+        Random random = new Random(14);
+        for (int seed = 0; seed < 100; seed++)
+        {
+            int width = 1 + random.nextInt(30);
+            int height = 1 + random.nextInt(30);
+            Map2D map = ReferenceDijkstra.randomMap(seed, width, height, 0.1 + 0.1 * (seed % 5), false);
+            ConnectivityIndex index = map.getConnectivity();
+
+            for (int round = 0; round < 10; round++)
+            {
+                assertSameComponents(map, index, "seed " + seed + ", round " + round);
+
+                // Стены рисуются отрезками, поэтому области часто разделяются и сливаются.
+                int x = random.nextInt(width);
+                int y = random.nextInt(height);
+                boolean horizontal = random.nextBoolean();
+                int value = random.nextInt(3) == 0 ? 0 : ReferenceDijkstra.BLOCKED;
+                for (int i = 0; i < 1 + random.nextInt(Math.max(width, height)); i++)
+                {
+                    int cx = horizontal ? x + i : x;
+                    int cy = horizontal ? y : y + i;
+                    if (map.contains(cx, cy))
+                        map.setCellValue(cx, cy, value);
+                }
+            }
+        }
+    }
+
+    @Test
+    void offHeapMapsSkipTheIndex()
+    {
+        // Стена делит карту пополам, но для хранилища вне кучи разметка не строится.
+        Map2D map = new Map2D(20, 10, new DirectCellStorage(20 * 10));
+        for (int y = 0; y < map.getHeight(); y++)
+            map.setCellValue(10, y, ReferenceDijkstra.BLOCKED);
+
+        assertTrue(map.isReachable(new Location(0, 0), new Location(19, 9)));
+        assertFalse(map.isConnectivityBuilt());
+    }
+
+    /** Сравнивает области всех пар ячеек с разметкой обходом в ширину. **/
+    private static void assertSameComponents(Map2D map, ConnectivityIndex index, String message)
+    {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        int[] expected = new int[width * height];
+        Arrays.fill(expected, -1);
+
+        int numComponents = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int cell = 0; cell < expected.length; cell++)
+        {
+            if (expected[cell] >= 0 || !passable(map, cell))
+                continue;
+
+            expected[cell] = numComponents;
+            queue.add(cell);
+            while (!queue.isEmpty())
+            {
+                int c = queue.poll();
+                for (int dy = -1; dy <= 1; dy++)
+                {
+                    for (int dx = -1; dx <= 1; dx++)
+                    {
+                        int nx = c % width + dx;
+                        int ny = c / width + dy;
+                        int next = ny * width + nx;
+                        if (map.contains(nx, ny) && expected[next] < 0 && passable(map, next))
+                        {
+                            expected[next] = numComponents;
+                            queue.add(next);
+                        }
+                    }
+                }
+            }
+            numComponents++;
+        }
+
+        // Номера областей могут отличаться, но разбиение на области должно совпадать.
+        int[] actualOf = new int[numComponents];
+        Arrays.fill(actualOf, Integer.MIN_VALUE);
+        for (int cell = 0; cell < expected.length; cell++)
+        {
+            int actual = index.getComponent(cell % width, cell / width);
+            if (expected[cell] < 0)
+            {
+                assertEquals(-1, actual, message + ": blocked cell " + cell);
+                continue;
+            }
+
+            if (actualOf[expected[cell]] == Integer.MIN_VALUE)
+                actualOf[expected[cell]] = actual;
+            assertEquals(actualOf[expected[cell]], actual, message + ": cell " + cell);
+        }
+        assertEquals(numComponents, Arrays.stream(actualOf).distinct().count(),
+                     message + ": areas were merged");
+    }
+
+    private static boolean passable(Map2D map, int cell)
+    {
+        return ConnectivityIndex.isPassable(map.getCellValue(cell % map.getWidth(), cell / map.getWidth()));
+    }
+}
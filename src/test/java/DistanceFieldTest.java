@@ -0,0 +1,93 @@
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Сравнивает стоимости {@link DistanceField} со стоимостями путей эталонного поиска
+ * Дейкстры до цели, в том числе после изменения ячеек и на карте, поле которой
+ * вычисляется параллельно.
+ **/
+class DistanceFieldTest
+{
+    @Test
+    void matchesReferenceBeforeAndAfterEdits()
+    {
+        Random random = new Random(9);
+        for (int seed = 0; seed < 20; seed++)
+        {
+            int width = 2 + random.nextInt(30);
+            int height = 2 + random.nextInt(30);
+            Map2D map = ReferenceDijkstra.randomMap(seed, width, height, 0.25, seed % 2 == 0);
+            Location goal = ReferenceDijkstra.randomFreeLocation(random, map);
+
+            try (DistanceField field = DistanceField.compute(map, goal))
+            {
+                assertField(map, field, goal, random, "seed " + seed);
+
+                for (int edit = 0; edit < 3; edit++)
+                {
+                    for (int i = 0; i < 5; i++)
+                    {
+                        int x = random.nextInt(width);
+                        int y = random.nextInt(height);
+                        if (x != goal.xCoord || y != goal.yCoord)
+                        {
+                            map.setCellValue(x, y, random.nextBoolean()
+                                    ? ReferenceDijkstra.BLOCKED : random.nextInt(3));
+                        }
+                    }
+                    field.update();
+                    assertField(map, field, goal, random, "seed " + seed + ", edit " + edit);
+                }
+            }
+        }
+    }
+
+    @Test
+    void parallelWavesMatchReference()
+    {
+        Random random = new Random(10);
+        Map2D map = ReferenceDijkstra.randomMap(11, 640, 480, 0.2, true);
+        Location goal = ReferenceDijkstra.randomFreeLocation(random, map);
+
+        try (DistanceField field = DistanceField.compute(map, goal))
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                Location from = ReferenceDijkstra.randomFreeLocation(random, map);
+                field.update();
+                assertCell(map, field, from, goal, "cell " + i);
+            }
+        }
+    }
+
+    /** Сравнивает стоимости нескольких случайных ячеек с эталоном. **/
+    private static void assertField(Map2D map, DistanceField field, Location goal,
+                                    Random random, String message)
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            Location from = new Location(random.nextInt(map.getWidth()),
+                                         random.nextInt(map.getHeight()));
+            assertCell(map, field, from, goal, message + ", cell " + i);
+        }
+    }
+
+    /** Сравнивает стоимость ячейки и путь по полю потока из нее с эталоном. **/
+    private static void assertCell(Map2D map, DistanceField field, Location from, Location goal,
+                                   String message)
+    {
+        float expected = ReferenceDijkstra.distance(map, from, goal);
+        float actual = field.getDistance(from.xCoord, from.yCoord);
+        assertTrue(ReferenceDijkstra.sameCost(expected, actual),
+                message + ": expected " + expected + ", got " + actual);
+
+        Waypoint path = field.getPath(from);
+        ReferenceDijkstra.assertCost(expected, path, message);
+        if (path != null)
+            ReferenceDijkstra.assertValidPath(map, from, goal, path, message);
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Сравнивает пути {@link GridPathfinder} и {@link JumpPointPathfinder} с эталонным
+ * поиском Дейкстры, в том числе на компактных хранилищах ячеек.
+ **/
+class GridPathfinderTest
+{
+    @Test
+    void gridPathfinderMatchesReference()
+    {
+        Random random = new Random(3);
+        PathfinderContext ctx = null;
+        for (int seed = 0; seed < 80; seed++)
+        {
+            Map2D map = ReferenceDijkstra.randomMap(seed, 1 + random.nextInt(50),
+                    1 + random.nextInt(50), 0.1 + 0.1 * (seed % 4), seed % 2 == 0);
+            Location start = ReferenceDijkstra.randomFreeLocation(random, map);
+            Location finish = ReferenceDijkstra.randomFreeLocation(random, map);
+
+            // Контекст переиспользуется, пока размер карты не изменится.
+            if (ctx == null || !ctx.fits(map))
+                ctx = new PathfinderContext(map.getWidth(), map.getHeight());
+
+            Waypoint path = GridPathfinder.computePath(map, start, finish, ctx);
+            String message = "seed " + seed;
+            ReferenceDijkstra.assertCost(ReferenceDijkstra.distance(map, start, finish), path, message);
+            if (path != null)
+                ReferenceDijkstra.assertValidPath(map, start, finish, path, message);
+        }
+    }
+
+    @Test
+    void jumpPointSearchMatchesReference()
+    {
+        Random random = new Random(4);
+        for (int seed = 0; seed < 80; seed++)
+        {
+            // На картах с весами поиск переходит на GridPathfinder.
+            Map2D map = ReferenceDijkstra.randomMap(seed, 1 + random.nextInt(50),
+                    1 + random.nextInt(50), 0.1 + 0.1 * (seed % 4), seed % 5 == 0);
+            Location start = ReferenceDijkstra.randomFreeLocation(random, map);
+            Location finish = ReferenceDijkstra.randomFreeLocation(random, map);
+
+            Waypoint path = JumpPointPathfinder.computePath(map, start, finish,
+                    new PathfinderContext(map.getWidth(), map.getHeight()));
+            String message = "seed " + seed;
+            ReferenceDijkstra.assertCost(ReferenceDijkstra.distance(map, start, finish), path, message);
+            if (path != null)
+                ReferenceDijkstra.assertValidPath(map, start, finish, path, message);
+        }
+    }
+
+    @Test
+    void compactEncodingsMatchReference()
+    {
+        Random random = new Random(5);
+        for (int seed = 0; seed < 60; seed++)
+        {
+            int width = 1 + random.nextInt(70);
+            int height = 1 + random.nextInt(40);
+            boolean weighted = seed % 2 == 0;
+            Map2D map = ReferenceDijkstra.randomMap(seed, width, height, 0.3, weighted);
+            Location start = ReferenceDijkstra.randomFreeLocation(random, map);
+            Location finish = ReferenceDijkstra.randomFreeLocation(random, map);
+            float expected = ReferenceDijkstra.distance(map, start, finish);
+
+            CellEncoding encoding = weighted ? CellEncoding.PALETTE_4 : CellEncoding.BITMAP;
+            CellStorage[] storages = {
+                encoding.copyOf(map.getStorage()),
+                RunLengthCellStorage.compress(map)
+            };
+
+            for (CellStorage cells : storages)
+            {
+                Map2D compact = new Map2D(width, height, cells);
+                String message = "seed " + seed + ", " + cells.getClass().getSimpleName();
+                PathfinderContext ctx = new PathfinderContext(width, height);
+
+                ReferenceDijkstra.assertCost(expected,
+                        GridPathfinder.computePath(compact, start, finish, ctx), message);
+                ReferenceDijkstra.assertCost(expected,
+                        JumpPointPathfinder.computePath(compact, start, finish, ctx), message);
+                assertFalse(compact.isConnectivityBuilt(), message + ": index was built");
+            }
+        }
+    }
+
+    @Test
+    void contextPoolReusesContextsAndStaysBounded()
+    {
+        Map2D small = new Map2D(7, 5);
+        Map2D large = new Map2D(9, 5);
+
+        PathfinderContext ctx = PathfinderContext.borrow(small);
+        assertTrue(ctx.fits(small));
+        PathfinderContext.release(ctx);
+        assertSame(ctx, PathfinderContext.borrow(small));
+
+        PathfinderContext other = PathfinderContext.borrow(large);
+        assertNotSame(ctx, other);
+        assertTrue(other.fits(large));
+        PathfinderContext.release(other);
+
+        // В пул возвращается больше контекстов, чем он хранит: самый старый отбрасывается.
+        PathfinderContext.release(ctx);
+        for (int i = 0; i < PathfinderContext.MAX_IDLE_CONTEXTS; i++)
+            PathfinderContext.release(new PathfinderContext(7, 5));
+        assertNotSame(other, PathfinderContext.borrow(large), "evicted context was reused");
+    }
+}
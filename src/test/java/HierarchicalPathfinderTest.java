@@ -0,0 +1,46 @@
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Проверяет пути {@link HierarchicalPathfinder}: путь находится тогда и только тогда,
+ * когда он есть, и не дешевле кратчайшего пути эталонного поиска Дейкстры.
+ **/
+class HierarchicalPathfinderTest
+{
+    @Test
+    void findsValidPathsExactlyWhenReachable()
+    {
+        Random random = new Random(6);
+        for (int seed = 0; seed < 40; seed++)
+        {
+            Map2D map = ReferenceDijkstra.randomMap(seed, 10 + random.nextInt(60),
+                    10 + random.nextInt(60), 0.1 + 0.1 * (seed % 3), seed % 2 == 0);
+            Location[] ends = new Location[10];
+            for (int i = 0; i < ends.length; i++)
+                ends[i] = ReferenceDijkstra.randomFreeLocation(random, map);
+
+            ClusterGraph graph = ClusterGraph.build(map, 8);
+            for (int i = 0; i < ends.length; i += 2)
+            {
+                String message = "seed " + seed + ", query " + i / 2;
+                float expected = ReferenceDijkstra.distance(map, ends[i], ends[i + 1]);
+                Waypoint path = HierarchicalPathfinder.computePath(map, graph, ends[i], ends[i + 1]);
+
+                if (Float.isInfinite(expected))
+                {
+                    assertNull(path, message);
+                    continue;
+                }
+
+                ReferenceDijkstra.assertValidPath(map, ends[i], ends[i + 1], path, message);
+                assertTrue(path.getPreviousCost() >= expected * (1 - ReferenceDijkstra.TOLERANCE),
+                        message + ": path is cheaper than the shortest path");
+            }
+        }
+    }
+}
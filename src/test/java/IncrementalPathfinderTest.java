@@ -0,0 +1,63 @@
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Сравнивает пути {@link IncrementalPathfinder} после изменений ячеек и перемещений
+ * начала с эталонным поиском Дейкстры по текущему состоянию карты.
+ **/
+class IncrementalPathfinderTest
+{
+    @Test
+    void replannedPathsMatchReference()
+    {
+        Random random = new Random(13);
+        for (int seed = 0; seed < 400; seed++)
+        {
+            int width = 2 + random.nextInt(30);
+            int height = 2 + random.nextInt(30);
+            Map2D map = ReferenceDijkstra.randomMap(seed, width, height, 0.1 + 0.1 * (seed % 3),
+                                                    seed % 2 == 0);
+            Location start = ReferenceDijkstra.randomFreeLocation(random, map);
+            Location finish = ReferenceDijkstra.randomFreeLocation(random, map);
+
+            try (IncrementalPathfinder pathfinder = new IncrementalPathfinder(map, start, finish))
+            {
+                for (int round = 0; round < 4; round++)
+                {
+                    String message = "seed " + seed + ", round " + round;
+                    Waypoint path = pathfinder.computePath();
+                    ReferenceDijkstra.assertCost(ReferenceDijkstra.distance(map, start, finish),
+                                                 path, message);
+                    if (path != null)
+                        ReferenceDijkstra.assertValidPath(map, start, finish, path, message);
+
+                    // Ячейки рядом с путем и в случайных местах становятся дороже или дешевле.
+                    for (int i = 0; i < 6; i++)
+                    {
+                        int x = random.nextInt(width);
+                        int y = random.nextInt(height);
+                        if ((x != start.xCoord || y != start.yCoord) &&
+                            (x != finish.xCoord || y != finish.yCoord))
+                        {
+                            int value = random.nextInt(3) == 0 ? ReferenceDijkstra.BLOCKED
+                                                               : random.nextInt(4);
+                            map.setCellValue(x, y, value);
+                        }
+                    }
+
+                    if (round == 2 && path != null && path.getPrevious() != null)
+                    {
+                        // Агент делает шаг по пути к финишу.
+                        Waypoint next = path;
+                        while (next.getPrevious().getPrevious() != null)
+                            next = next.getPrevious();
+                        start = next.getLocation();
+                        pathfinder.setStart(start);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/** Проверяет, что {@link MapFile} сохраняет и загружает карту без изменений. **/
+class MapFileTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    void savedMapLoadsUnchanged() throws IOException
+    {
+        Random random = new Random(5);
+        for (int seed = 0; seed < 10; seed++)
+        {
+            Map2D map = ReferenceDijkstra.randomMap(seed, 1 + random.nextInt(60),
+                    1 + random.nextInt(40), 0.2, seed % 2 == 0);
+            map.setStart(ReferenceDijkstra.randomFreeLocation(random, map));
+            map.setFinish(ReferenceDijkstra.randomFreeLocation(random, map));
+
+            Path file = dir.resolve("map" + seed + ".bin");
+            MapFile.save(map, file);
+            Map2D loaded = MapFile.load(file);
+
+            String message = "seed " + seed;
+            assertEquals(map.getWidth(), loaded.getWidth(), message);
+            assertEquals(map.getHeight(), loaded.getHeight(), message);
+            assertEquals(map.getStart(), loaded.getStart(), message);
+            assertEquals(map.getFinish(), loaded.getFinish(), message);
+            assertTrue(loaded.getStorage().isOffHeap(), message);
+            for (int y = 0; y < map.getHeight(); y++)
+            {
+                for (int x = 0; x < map.getWidth(); x++)
+                    assertEquals(map.getCellValue(x, y), loaded.getCellValue(x, y), message);
+            }
+
+            ReferenceDijkstra.assertCost(
+                    ReferenceDijkstra.distance(map, map.getStart(), map.getFinish()),
+                    GridPathfinder.computePath(loaded), message);
+        }
+    }
+
+    @Test
+    void writableMapWritesThroughToTheFile() throws IOException
+    {
+        Path file = dir.resolve("map.bin");
+        MapFile.save(new Map2D(8, 6), file);
+
+        Map2D readOnly = MapFile.load(file);
+        assertThrows(ReadOnlyBufferException.class, () -> readOnly.setCellValue(3, 2, 7));
+
+        Map2D writable = MapFile.load(file, true);
+        writable.setCellValue(3, 2, 7);
+        assertEquals(7, MapFile.load(file).getCellValue(3, 2));
+    }
+
+    @Test
+    void rejectsForeignAndTruncatedFiles() throws IOException
+    {
+        Path foreign = dir.resolve("foreign.bin");
+        Files.write(foreign, new byte[MapFile.HEADER_SIZE]);
+        assertThrows(IOException.class, () -> MapFile.load(foreign));
+
+        Path truncated = dir.resolve("truncated.bin");
+        MapFile.save(new Map2D(8, 6), truncated);
+        byte[] bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> MapFile.load(truncated));
+    }
+}
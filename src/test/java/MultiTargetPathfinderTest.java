@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Сравнивает стоимости путей к k ближайшим целям {@link MultiTargetPathfinder}
+ * с отсортированными стоимостями эталонного поиска Дейкстры до каждой цели.
+ **/
+class MultiTargetPathfinderTest
+{
+    @Test
+    void kNearestMatchReference()
+    {
+        Random random = new Random(12);
+        for (int seed = 0; seed < 60; seed++)
+        {
+            int width = 2 + random.nextInt(40);
+            int height = 2 + random.nextInt(40);
+            Map2D map = ReferenceDijkstra.randomMap(seed, width, height, 0.25, seed % 2 == 0);
+            Location start = ReferenceDijkstra.randomFreeLocation(random, map);
+
+            // Цели могут быть непроходимыми и повторяться.
+            List<Location> targets = new ArrayList<>();
+            int count = 1 + random.nextInt(30);
+            for (int i = 0; i < count; i++)
+                targets.add(new Location(random.nextInt(width), random.nextInt(height)));
+            targets.add(new Location(targets.get(0).xCoord, targets.get(0).yCoord));
+
+            float[] expected = new float[count];
+            int reachable = 0;
+            for (Location target : new HashSet<>(targets))
+            {
+                float cost = ReferenceDijkstra.distance(map, start, target);
+                if (!Float.isInfinite(cost))
+                    expected[reachable++] = cost;
+            }
+            Arrays.sort(expected, 0, reachable);
+
+            int k = 1 + random.nextInt(6);
+            String message = "seed " + seed + ", k " + k;
+            List<Waypoint> paths = MultiTargetPathfinder.computePaths(map, start, targets, k);
+            assertEquals(Math.min(k, reachable), paths.size(), message);
+
+            Set<Location> found = new HashSet<>();
+            for (int i = 0; i < paths.size(); i++)
+            {
+                Waypoint path = paths.get(i);
+                ReferenceDijkstra.assertCost(expected[i], path, message + ", path " + i);
+                ReferenceDijkstra.assertValidPath(map, start, path.getLocation(), path, message);
+                assertTrue(targets.contains(path.getLocation()), message + ": not a target");
+                assertTrue(found.add(path.getLocation()), message + ": target found twice");
+            }
+
+            Waypoint nearest = MultiTargetPathfinder.computePath(map, start, targets);
+            if (reachable == 0)
+                assertNull(nearest, message);
+            else
+                ReferenceDijkstra.assertCost(expected[0], nearest, message);
+        }
+    }
+
+    @Test
+    void targetGridFindsNearestTargetFromAnyCell()
+    {
+        Random random = new Random(25);
+        for (int seed = 0; seed < 200; seed++)
+        {
+            int width = 1 + random.nextInt(200);
+            int height = 1 + random.nextInt(200);
+
+            // Цели собраны в скопление в случайном месте карты, часть целей удаляется.
+            int clusterX = random.nextInt(width);
+            int clusterY = random.nextInt(height);
+            int spread = 1 + random.nextInt(10);
+            int[] cells = new int[1 + random.nextInt(50)];
+            for (int i = 0; i < cells.length; i++)
+            {
+                int x = Math.min(width - 1, clusterX + random.nextInt(spread));
+                int y = Math.min(height - 1, clusterY + random.nextInt(spread));
+                cells[i] = y * width + x;
+            }
+
+            MultiTargetPathfinder.TargetGrid grid =
+                    new MultiTargetPathfinder.TargetGrid(width, height, cells);
+            Set<Integer> remaining = new HashSet<>();
+            for (int cell : cells)
+                remaining.add(cell);
+            for (int i = 0; i < cells.length / 2; i++)
+            {
+                if (remaining.remove(cells[i]))
+                    assertTrue(grid.remove(cells[i]), "seed " + seed);
+            }
+
+            for (int i = 0; i < 50; i++)
+            {
+                int x = random.nextInt(width);
+                int y = random.nextInt(height);
+                double expected = Double.POSITIVE_INFINITY;
+                for (int cell : remaining)
+                    expected = Math.min(expected, Math.hypot(cell % width - x, cell / width - y));
+
+                assertEquals((float) expected, grid.nearest(x, y), 1e-4f,
+                             "seed " + seed + ", cell " + x + "," + y);
+            }
+        }
+    }
+}
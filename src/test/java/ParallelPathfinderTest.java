@@ -0,0 +1,34 @@
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+/** Сравнивает пути {@link ParallelPathfinder} с эталонным поиском Дейкстры при разном числе потоков. **/
+class ParallelPathfinderTest
+{
+    @Test
+    void matchesReferenceForAnyThreadCount()
+    {
+        Random random = new Random(8);
+        for (int seed = 0; seed < 30; seed++)
+        {
+            Map2D map = ReferenceDijkstra.randomMap(seed, 10 + random.nextInt(90),
+                    10 + random.nextInt(90), 0.1 + 0.1 * (seed % 4), seed % 2 == 0);
+            for (int query = 0; query < 3; query++)
+            {
+                Location start = ReferenceDijkstra.randomFreeLocation(random, map);
+                Location finish = ReferenceDijkstra.randomFreeLocation(random, map);
+                float expected = ReferenceDijkstra.distance(map, start, finish);
+
+                for (int threads : new int[] { 1, 2, 4 })
+                {
+                    String message = "seed " + seed + ", query " + query + ", " + threads + " threads";
+                    Waypoint path = ParallelPathfinder.computePath(map, start, finish, threads);
+                    ReferenceDijkstra.assertCost(expected, path, message);
+                    if (path != null)
+                        ReferenceDijkstra.assertValidPath(map, start, finish, path, message);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Проверяет, что {@link PathCache} после изменений карты возвращает те же пути,
+ * что и эталонный поиск, и удаляет только затронутые изменением записи.
+ **/
+class PathCacheTest
+{
+    @Test
+    void cachedPathsMatchReferenceAcrossEdits()
+    {
+        Random random = new Random(12);
+        for (int seed = 0; seed < 20; seed++)
+        {
+            Map2D map = ReferenceDijkstra.randomMap(seed, 30, 20, 0.2, seed % 2 == 0);
+            Location[] starts = new Location[6];
+            Location[] finishes = new Location[starts.length];
+            for (int i = 0; i < starts.length; i++)
+            {
+                starts[i] = ReferenceDijkstra.randomFreeLocation(random, map);
+                finishes[i] = ReferenceDijkstra.randomFreeLocation(random, map);
+            }
+
+            // Записей меньше, чем запросов, поэтому старые записи вытесняются.
+            PathCache cache = new PathCache(4);
+            for (int round = 0; round < 40; round++)
+            {
+                int i = random.nextInt(starts.length);
+                String message = "seed " + seed + ", round " + round;
+                ReferenceDijkstra.assertCost(ReferenceDijkstra.distance(map, starts[i], finishes[i]),
+                        cache.computePath(map, starts[i], finishes[i]), message);
+                assertTrue(cache.size() <= 4, message + ": size " + cache.size());
+
+                // Ячейки и дорожают, и дешевеют; концы запросов остаются проходимыми.
+                int x = random.nextInt(map.getWidth());
+                int y = random.nextInt(map.getHeight());
+                if (!isEndpoint(x, y, starts) && !isEndpoint(x, y, finishes))
+                {
+                    map.setCellValue(x, y, random.nextInt(3) == 0 ?
+                            ReferenceDijkstra.BLOCKED : random.nextInt(5));
+                }
+            }
+            assertTrue(cache.getHits() > 0, "seed " + seed + ": no hits");
+        }
+    }
+
+    @Test
+    void pricierCellRemovesOnlyPathsThroughIt()
+    {
+        Map2D map = new Map2D(20, 20);
+        PathCache cache = new PathCache(10);
+
+        Waypoint top = cache.computePath(map, new Location(0, 0), new Location(19, 0));
+        Waypoint bottom = cache.computePath(map, new Location(0, 19), new Location(19, 19));
+        assertEquals(2, cache.size());
+
+        // Ячейка на верхней строке лежит на пути сверху и не лежит на пути снизу.
+        map.setCellValue(10, 0, 5);
+        assertEquals(1, cache.size());
+        assertSame(bottom, cache.computePath(map, new Location(0, 19), new Location(19, 19)));
+        assertTrue(top != cache.computePath(map, new Location(0, 0), new Location(19, 0)));
+
+        // Подешевевшая ячейка удаляет все записи карты.
+        map.setCellValue(10, 0, 0);
+        assertEquals(0, cache.size());
+    }
+
+    /** Возвращает true, если ячейка (x, y) - одно из местоположений. **/
+    private static boolean isEndpoint(int x, int y, Location[] locs)
+    {
+        for (Location loc : locs)
+        {
+            if (loc.xCoord == x && loc.yCoord == y)
+                return true;
+        }
+        return false;
+    }
+}
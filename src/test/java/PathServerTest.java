@@ -0,0 +1,200 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Проверяет ответы {@link PathServer} по эталонному поиску Дейкстры и то, что клиент,
+ * не читающий ответы, не останавливает работу с другими клиентами.
+ **/
+class PathServerTest
+{
+    @Test
+    void responsesMatchReference() throws IOException
+    {
+        Random random = new Random(24);
+        Map2D map = ReferenceDijkstra.randomMap(24, 40, 30, 0.25, true);
+        Location[] ends = new Location[20];
+        for (int i = 0; i < ends.length; i++)
+            ends[i] = ReferenceDijkstra.randomFreeLocation(random, map);
+
+        try (PathServer server = new PathServer(List.of(map), 0, 2);
+             Socket socket = connect(server, 0))
+        {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+
+            // Два запроса подряд, не дожидаясь ответа, и запрос к несуществующей карте.
+            writeRequest(out, 1, 0, ends, ends.length / 2);
+            writeRequest(out, 2, 7, ends, 1);
+            writeRequest(out, 3, 0, ends, 1);
+            out.flush();
+
+            assertEquals(1, in.readInt());
+            assertEquals(PathServer.STATUS_OK, in.readInt());
+            assertEquals(ends.length / 2, in.readInt());
+            for (int i = 0; i < ends.length; i += 2)
+            {
+                String message = "query " + i / 2;
+                float expected = ReferenceDijkstra.distance(map, ends[i], ends[i + 1]);
+                Waypoint path = readPath(in);
+                ReferenceDijkstra.assertCost(expected, path, message);
+                if (path != null)
+                    ReferenceDijkstra.assertValidPath(map, ends[i], ends[i + 1], path, message);
+            }
+
+            assertEquals(2, in.readInt());
+            assertEquals(PathServer.STATUS_BAD_REQUEST, in.readInt());
+            assertEquals(0, in.readInt());
+
+            assertEquals(3, in.readInt());
+            assertEquals(PathServer.STATUS_OK, in.readInt());
+            assertEquals(1, in.readInt());
+            ReferenceDijkstra.assertCost(ReferenceDijkstra.distance(map, ends[0], ends[1]),
+                    readPath(in), "request 3");
+        }
+    }
+
+    @Test
+    void clientThatNeverReadsDoesNotStallOthers() throws Exception
+    {
+        // Каждый ответ медленного клиента - десятки мегабайт, поэтому запись в его
+        // сокет блокируется задолго до конца первого ответа.
+        Map2D map = new Map2D(60, 1);
+        Location[] ends = new Location[2 * PathServer.MAX_QUERIES_PER_REQUEST];
+        for (int i = 0; i < ends.length; i += 2)
+        {
+            ends[i] = new Location(0, 0);
+            ends[i + 1] = new Location(map.getWidth() - 1, 0);
+        }
+        int numRequests = PathServer.MAX_QUERIES_IN_FLIGHT / PathServer.MAX_QUERIES_PER_REQUEST + 2;
+
+        try (PathServer server = new PathServer(List.of(map), 0, 2, 3000);
+             Socket stalled = connect(server, 4096))
+        {
+            Thread sender = new Thread(() ->
+            {
+                try
+                {
+                    DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(stalled.getOutputStream()));
+                    for (int id = 0; id < numRequests; id++)
+                        writeRequest(out, id, 0, ends, PathServer.MAX_QUERIES_PER_REQUEST);
+                    out.flush();
+                }
+                catch (IOException e)
+                {
+                    // Сервер закрыл соединение.
+                }
+            });
+            sender.setDaemon(true);
+            sender.start();
+
+            // Даем серверу прочитать все запросы, которые он согласится принять.
+            Thread.sleep(300);
+
+            // Ответ приходит раньше, чем истекает срок записи медленного клиента.
+            assertTimeoutPreemptively(Duration.ofSeconds(2), () ->
+            {
+                try (Socket socket = connect(server, 0))
+                {
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    writeRequest(out, 42, 0, ends, 3);
+                    out.flush();
+
+                    assertEquals(42, in.readInt());
+                    assertEquals(PathServer.STATUS_OK, in.readInt());
+                    assertEquals(3, in.readInt());
+                    for (int i = 0; i < 3; i++)
+                        ReferenceDijkstra.assertCost(map.getWidth() - 1, readPath(in), "path " + i);
+                }
+            });
+
+            // Когда истекает срок записи, сервер закрывает соединение, и медленный
+            // клиент, начав наконец читать, получает только часть ответов.
+            Thread.sleep(4000);
+            long responseBytes = 3 * Integer.BYTES + (long) PathServer.MAX_QUERIES_PER_REQUEST *
+                                 (2 + 2 * map.getWidth()) * Integer.BYTES;
+            long received = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                                                      () -> drain(stalled.getInputStream()));
+            assertTrue(received < numRequests * responseBytes,
+                       "received " + received + " of " + numRequests * responseBytes + " bytes");
+        }
+    }
+
+    /** Подключается к серверу; ненулевой размер задает буфер приема сокета. **/
+    private static Socket connect(PathServer server, int receiveBufferSize) throws IOException
+    {
+        Socket socket = new Socket();
+        if (receiveBufferSize > 0)
+            socket.setReceiveBufferSize(receiveBufferSize);
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+        return socket;
+    }
+
+    /** Записывает запрос с первыми <code>count</code> парами местоположений. **/
+    private static void writeRequest(DataOutputStream out, int requestId, int mapId,
+                                     Location[] ends, int count) throws IOException
+    {
+        out.writeInt(requestId);
+        out.writeInt(mapId);
+        out.writeInt(count);
+        for (int i = 0; i < 2 * count; i++)
+        {
+            out.writeInt(ends[i].xCoord);
+            out.writeInt(ends[i].yCoord);
+        }
+    }
+
+    /** Читает путь ответа и собирает из него цепочку путевых точек. **/
+    private static Waypoint readPath(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        float cost = in.readFloat();
+        Waypoint path = null;
+        for (int i = 0; i < length; i++)
+        {
+            path = new Waypoint(new Location(in.readInt(), in.readInt()), path);
+            path.setCosts(0, 0);
+        }
+
+        if (path != null)
+            path.setCosts(cost, 0);
+        return path;
+    }
+
+    /** Читает поток до конца или до ошибки и возвращает количество прочитанных байт. **/
+    private static long drain(InputStream in)
+    {
+        byte[] buffer = new byte[1 << 16];
+        long total = 0;
+        try
+        {
+            for (int n; (n = in.read(buffer)) >= 0; )
+                total += n;
+        }
+        catch (IOException e)
+        {
+            // Сервер сбросил соединение.
+        }
+        return total;
+    }
+}
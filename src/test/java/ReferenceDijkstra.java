@@ -0,0 +1,147 @@
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Эталонный поиск Дейкстры и вспомогательные методы тестов. Поиск намеренно
+ * простой и медленный: стоимость шага в ячейку равна длине шага плюс значение ячейки,
+ * пути не дешевле {@link AStarPathfinder#COST_LIMIT} отбрасываются, как во всех
+ * реализациях поиска.
+ **/
+final class ReferenceDijkstra
+{
+    /** Допустимая относительная погрешность стоимости пути. **/
+    static final float TOLERANCE = 1e-4f;
+
+    /** Значение непроходимой ячейки на случайных картах. **/
+    static final int BLOCKED = Integer.MAX_VALUE;
+
+
+    private ReferenceDijkstra()
+    {
+    }
+
+    /**
+     * Возвращает стоимость кратчайшего пути между указанными местоположениями
+     * или {@link Float#POSITIVE_INFINITY}, если пути нет.
+     **/
+    static float distance(Map2D map, Location start, Location finish)
+    {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        double[] dist = new double[width * height];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        dist[start.yCoord * width + start.xCoord] = 0;
+        queue.add(new double[] { 0, start.xCoord, start.yCoord });
+
+        while (!queue.isEmpty())
+        {
+            double[] entry = queue.poll();
+            int x = (int) entry[1];
+            int y = (int) entry[2];
+            if (entry[0] > dist[y * width + x])
+                continue;
+
+            for (int dy = -1; dy <= 1; dy++)
+            {
+                for (int dx = -1; dx <= 1; dx++)
+                {
+                    int nx = x + dx;
+                    int ny = y + dy;
+                    if ((dx == 0 && dy == 0) || nx < 0 || nx >= width || ny < 0 || ny >= height)
+                        continue;
+
+                    double cost = entry[0] + Math.sqrt(dx * dx + dy * dy) + map.getCellValue(nx, ny);
+                    if (cost >= AStarPathfinder.COST_LIMIT || cost >= dist[ny * width + nx])
+                        continue;
+
+                    dist[ny * width + nx] = cost;
+                    queue.add(new double[] { cost, nx, ny });
+                }
+            }
+        }
+
+        double result = dist[finish.yCoord * width + finish.xCoord];
+        return result == Double.POSITIVE_INFINITY ? Float.POSITIVE_INFINITY : (float) result;
+    }
+
+    /**
+     * Создает случайную карту: доля <code>density</code> ячеек непроходима, а на картах
+     * с весами еще около трети ячеек получают стоимость от 0 до 4.
+     **/
+    static Map2D randomMap(long seed, int width, int height, double density, boolean weighted)
+    {
+        Random random = new Random(seed);
+        Map2D map = new Map2D(width, height);
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                double v = random.nextDouble();
+                if (v < density)
+                    map.setCellValue(x, y, BLOCKED);
+                else if (weighted && v < density + 0.3)
+                    map.setCellValue(x, y, random.nextInt(5));
+            }
+        }
+        return map;
+    }
+
+    /** Возвращает случайное местоположение на карте и делает его ячейку свободной. **/
+    static Location randomFreeLocation(Random random, Map2D map)
+    {
+        Location loc = new Location(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+        map.setCellValue(loc.xCoord, loc.yCoord, 0);
+        return loc;
+    }
+
+    /** Возвращает true, если стоимости равны с учетом погрешности (бесконечности - только точно). **/
+    static boolean sameCost(float expected, float actual)
+    {
+        if (Float.isInfinite(expected) || Float.isInfinite(actual))
+            return expected == actual;
+        return Math.abs(expected - actual) <= TOLERANCE * Math.max(1, Math.abs(expected));
+    }
+
+    /** Проверяет, что стоимость пути равна ожидаемой; путь <code>null</code> имеет бесконечную стоимость. **/
+    static void assertCost(float expected, Waypoint path, String message)
+    {
+        float actual = path == null ? Float.POSITIVE_INFINITY : path.getPreviousCost();
+        assertTrue(sameCost(expected, actual), message + ": expected " + expected + ", got " + actual);
+    }
+
+    /**
+     * Проверяет, что путь идет от начала до конца соседними шагами и что его
+     * стоимость, пересчитанная по ячейкам карты, равна стоимости последней путевой точки.
+     **/
+    static void assertValidPath(Map2D map, Location start, Location finish, Waypoint path,
+                                String message)
+    {
+        assertNotNull(path, message);
+        assertEquals(finish, path.getLocation(), message + ": path must end at the finish");
+
+        double cost = 0;
+        Waypoint wp = path;
+        for (; wp.getPrevious() != null; wp = wp.getPrevious())
+        {
+            Location from = wp.getPrevious().getLocation();
+            Location to = wp.getLocation();
+            int dx = to.xCoord - from.xCoord;
+            int dy = to.yCoord - from.yCoord;
+            assertTrue(Math.abs(dx) <= 1 && Math.abs(dy) <= 1 && (dx != 0 || dy != 0),
+                    message + ": steps must go to neighbouring cells");
+            cost += Math.sqrt(dx * dx + dy * dy) + map.getCellValue(to);
+        }
+
+        assertEquals(start, wp.getLocation(), message + ": path must begin at the start");
+        assertTrue(sameCost((float) cost, path.getPreviousCost()),
+                message + ": path cost " + path.getPreviousCost() + " does not match its cells " + cost);
+    }
+}
@@ -0,0 +1,81 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Проверяет, что {@link SearchStats}, {@link SearchListener} и сводная статистика
+ * {@link SearchMetrics} согласованы между собой и с тем, что видно через JMX.
+ **/
+class SearchMetricsTest
+{
+    @Test
+    void statsListenerAndMetricsAgree() throws JMException
+    {
+        Map2D map = new Map2D(30, 20);
+
+        // Правый верхний угол отрезан стеной, поэтому второй поиск пути не находит.
+        for (int i = 0; i < 5; i++)
+        {
+            map.setCellValue(25, i, ReferenceDijkstra.BLOCKED);
+            map.setCellValue(25 + i, 5, ReferenceDijkstra.BLOCKED);
+        }
+
+        int[] generated = new int[1];
+        int[] closed = new int[1];
+        SearchListener counter = new SearchListener()
+        {
+            @Override
+            public void waypointGenerated(Waypoint wp, boolean added)
+            {
+                generated[0]++;
+            }
+
+            @Override
+            public void waypointClosed(Waypoint wp)
+            {
+                closed[0]++;
+            }
+        };
+
+        SearchMetrics metrics = SearchMetrics.getInstance();
+        metrics.reset();
+
+        SearchStats found = new SearchStats();
+        assertNotNull(AStarPathfinder.computePath(map, new Location(0, 0), new Location(29, 19),
+                SearchMode.UNIDIRECTIONAL, Heuristic.EUCLIDEAN, found, counter));
+        assertEquals(closed[0], found.getNodesExpanded());
+        assertEquals(generated[0], found.getNodesGenerated());
+        assertTrue(found.getOpenPeak() > 0);
+        assertTrue(found.getPathCost() < Float.POSITIVE_INFINITY);
+
+        SearchStats failed = new SearchStats();
+        assertNull(AStarPathfinder.computePath(map, new Location(0, 0), new Location(29, 0),
+                SearchMode.UNIDIRECTIONAL, Heuristic.EUCLIDEAN, failed, null));
+        assertEquals(Float.POSITIVE_INFINITY, failed.getPathCost());
+
+        assertEquals(2, metrics.getSearches());
+        assertEquals(1, metrics.getFailedSearches());
+        assertEquals(found.getNodesExpanded() + failed.getNodesExpanded(), metrics.getNodesExpanded());
+        assertEquals(found.getNodesGenerated() + failed.getNodesGenerated(),
+                     metrics.getNodesGenerated());
+        assertEquals(Math.max(found.getNodesExpanded(), failed.getNodesExpanded()),
+                     metrics.getMaxNodesExpanded());
+        assertEquals(Math.max(found.getOpenPeak(), failed.getOpenPeak()), metrics.getMaxOpenPeak());
+
+        Object searches = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(SearchMetrics.OBJECT_NAME), "Searches");
+        assertEquals(2L, searches);
+
+        metrics.reset();
+        assertEquals(0, metrics.getSearches());
+        assertEquals(0, metrics.getMeanNodesExpanded());
+    }
+}
@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Проверяет, что {@link TiledCellStorage} над {@link FileTileStore} хранит те же ячейки,
+ * что и обычная карта, когда плитки вытесняются и читаются заново, в том числе
+ * после повторного открытия файла.
+ **/
+class TiledCellStorageTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    void cellsSurviveEvictionAndReopening() throws IOException
+    {
+        Random random = new Random(21);
+        for (int seed = 0; seed < 10; seed++)
+        {
+            Map2D map = ReferenceDijkstra.randomMap(seed, 1 + random.nextInt(50),
+                    1 + random.nextInt(50), 0.2, seed % 2 == 0);
+            Location start = ReferenceDijkstra.randomFreeLocation(random, map);
+            Location finish = ReferenceDijkstra.randomFreeLocation(random, map);
+            String message = "seed " + seed;
+
+            // Плитки 4x4, в памяти не больше трех: почти каждое обращение вытесняет плитку.
+            Path file = dir.resolve("tiles" + seed + ".bin");
+            TiledCellStorage cells = new TiledCellStorage(
+                    FileTileStore.create(file, map.getWidth(), map.getHeight(), 2), 3);
+            Map2D tiled = new Map2D(map.getWidth(), map.getHeight(), cells);
+            for (int y = 0; y < map.getHeight(); y++)
+            {
+                for (int x = 0; x < map.getWidth(); x++)
+                    tiled.setCellValue(x, y, map.getCellValue(x, y));
+            }
+            assertSameCells(map, tiled, message);
+            assertTrue(cells.getCachedTiles() <= 3, message);
+
+            ReferenceDijkstra.assertCost(ReferenceDijkstra.distance(map, start, finish),
+                    AStarPathfinder.computePath(tiled, start, finish), message);
+            assertTrue(tiled.isReachable(start, finish), message);
+            assertFalse(tiled.isConnectivityBuilt(), message + ": index was built");
+            cells.close();
+
+            try (TiledCellStorage reopened = new TiledCellStorage(FileTileStore.open(file), 3))
+            {
+                assertSameCells(map, new Map2D(map.getWidth(), map.getHeight(), reopened),
+                                message + ", reopened");
+            }
+        }
+    }
+
+    @Test
+    void countsHitsMissesAndWriteBacks() throws IOException
+    {
+        try (TiledCellStorage cells = new TiledCellStorage(
+                FileTileStore.create(dir.resolve("tiles.bin"), 16, 16, 2), 2))
+        {
+            Map2D map = new Map2D(16, 16, cells);
+
+            // Три плитки по очереди при двух местах: третья вытесняет измененную первую.
+            map.setCellValue(0, 0, 5);
+            map.setCellValue(1, 0, 6);
+            map.setCellValue(4, 0, 7);
+            map.setCellValue(8, 0, 8);
+            assertEquals(1, cells.getTileHits());
+            assertEquals(3, cells.getTileMisses());
+            assertEquals(1, cells.getEvictions());
+            assertEquals(1, cells.getWriteBacks());
+
+            assertEquals(5, map.getCellValue(0, 0));
+            assertEquals(6, map.getCellValue(1, 0));
+        }
+    }
+
+    /** Сравнивает все ячейки двух карт одного размера. **/
+    private static void assertSameCells(Map2D expected, Map2D actual, String message)
+    {
+        for (int y = 0; y < expected.getHeight(); y++)
+        {
+            for (int x = 0; x < expected.getWidth(); x++)
+            {
+                assertEquals(expected.getCellValue(x, y), actual.getCellValue(x, y),
+                             message + ": cell (" + x + ", " + y + ")");
+            }
+        }
+    }
+}